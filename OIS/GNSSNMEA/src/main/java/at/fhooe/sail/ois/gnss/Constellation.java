@@ -0,0 +1,72 @@
+package at.fhooe.sail.ois.gnss;
+
+/**
+ * Constellation enumerates the satellite systems a GNSS receiver reports, identified by the talker id of a
+ * sentence ("GP" for GPS, ...) or by the system id field that NMEA 4.10 added to GSA and GSV sentences.
+ * Sentences with the talker "GN" combine several systems.
+ */
+public enum Constellation {
+    GPS(1, "GP"),
+    GLONASS(2, "GL"),
+    GALILEO(3, "GA"),
+    /** BeiDou; Quectel receivers use the proprietary talker "PQ" for it. */
+    BEIDOU(4, "GB", "BD", "PQ"),
+    QZSS(5, "GQ", "QZ"),
+    NAVIC(6, "GI"),
+    COMBINED(0, "GN"),
+    UNKNOWN(-1);
+
+    private static final Constellation[] sValues = values();
+
+    private final int mSystemId;
+    private final int[] mTalkers;
+
+    Constellation(int _systemId, String... _talkers) {
+        mSystemId = _systemId;
+        mTalkers = new int[_talkers.length];
+        for (int i = 0; i < _talkers.length; i++) {
+            mTalkers[i] = NMEATokenizer.pack(_talkers[i]);
+        }
+    }
+
+    /**
+     * Gets the NMEA 4.10 system id of the constellation.
+     *
+     * @return the system id, 0 for combined and -1 for unknown.
+     */
+    public int getSystemId() {
+        return mSystemId;
+    }
+
+    /**
+     * Looks up the constellation of a talker id.
+     *
+     * @param _talker the talker packed by {@link NMEATokenizer#pack(CharSequence)}, see {@link NMEATokenizer#getTalker()}.
+     * @return the constellation, or {@link #UNKNOWN}.
+     */
+    public static Constellation forTalker(int _talker) {
+        for (Constellation c : sValues) {
+            for (int talker : c.mTalkers) {
+                if (talker == _talker) {
+                    return c;
+                }
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Looks up the constellation of an NMEA 4.10 system id.
+     *
+     * @param _systemId the system id, e.g. the last field of a GSA sentence.
+     * @return the constellation, or {@link #UNKNOWN}.
+     */
+    public static Constellation forSystemId(int _systemId) {
+        for (Constellation c : sValues) {
+            if (c.mSystemId == _systemId && _systemId > 0) {
+                return c;
+            }
+        }
+        return UNKNOWN;
+    }
+}
@@ -1,6 +1,5 @@
 package at.fhooe.sail.ois.gnss;
 
-import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.control.Label;
 import javafx.scene.layout.GridPane;
@@ -18,15 +17,15 @@ public class DataView extends Pane implements IPositionUpdateListener {
     private NMEAInfo mInfo;
 
     /**
-     * Called when the position is updated. This method updates the internal NMEAInfo object and triggers
-     * the redraw of the GridPane on the JavaFX application thread.
+     * Called on the JavaFX application thread when the position is updated. This method updates the internal
+     * NMEAInfo object and redraws the GridPane.
      *
      * @param info The new NMEAInfo object containing the updated GNSS data.
      */
     @Override
     public void update(NMEAInfo info) {
         this.mInfo = info;
-        Platform.runLater(this::draw);
+        draw();
     }
 
     /**
@@ -86,7 +85,7 @@ public class DataView extends Pane implements IPositionUpdateListener {
         Label pdopValTxt = new Label(String.valueOf(mInfo.getMPDOP()));
         Label hdopValTxt = new Label(String.valueOf(mInfo.getMHDOP()));
         Label vdopValTxt = new Label(String.valueOf(mInfo.getMVDOP()));
-        Label fixTypeValTxt = new Label(mInfo.getMFixQuality());
+        Label fixTypeValTxt = new Label(String.valueOf(mInfo.getMFixQuality()));
         Label visSatValTxt = new Label(String.valueOf(mInfo.getMSatelliteCount()));
         String usedSatIds = mInfo.getMSatellites().stream()
                 .filter(SatelliteInfo::isMIsUsed)
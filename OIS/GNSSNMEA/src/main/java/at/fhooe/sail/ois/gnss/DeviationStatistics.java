@@ -0,0 +1,220 @@
+package at.fhooe.sail.ois.gnss;
+
+/**
+ * DeviationStatistics is a class that keeps statistics about the deviation of positions from the first one:
+ * maximum and mean distance, mean and standard deviation of the position, CEP, 2DRMS and the extent.
+ *
+ * Positions are projected onto a plane tangent at the first position, in meters east and north of it, which is
+ * accurate for the few kilometers a deviation plot covers. Every statistic is updated in O(1) per position with
+ * Welford's running mean and variance, so nothing has to be recomputed over the history.
+ */
+public class DeviationStatistics {
+
+    /** Mean radius of the earth in meters. */
+    private static final double EARTH_RADIUS = 6_371_008.8;
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180;
+    /** Ratio of CEP to the sum of the standard deviations, for a nearly circular error distribution. */
+    private static final double CEP_FACTOR = 0.589;
+
+    private double mRefLat;
+    private double mRefLon;
+    private double mMetersPerDegreeLon;
+
+    private long mCount;
+    private double mMeanEast;
+    private double mMeanNorth;
+    private double mM2East;
+    private double mM2North;
+    private double mMeanDistance;
+    private double mMaxDistance;
+    private double mMinEast;
+    private double mMaxEast;
+    private double mMinNorth;
+    private double mMaxNorth;
+
+    /**
+     * Adds a position. The first position becomes the reference of all others.
+     *
+     * @param _lat the latitude in degrees.
+     * @param _lon the longitude in degrees.
+     */
+    public void add(double _lat, double _lon) {
+        if (mCount == 0) {
+            mRefLat = _lat;
+            mRefLon = _lon;
+            mMetersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(_lat));
+        }
+        double east = toEast(_lon);
+        double north = toNorth(_lat);
+        double distance = Math.sqrt(east * east + north * north);
+
+        mCount++;
+        double delta = east - mMeanEast;
+        mMeanEast += delta / mCount;
+        mM2East += delta * (east - mMeanEast);
+        delta = north - mMeanNorth;
+        mMeanNorth += delta / mCount;
+        mM2North += delta * (north - mMeanNorth);
+        mMeanDistance += (distance - mMeanDistance) / mCount;
+
+        mMaxDistance = Math.max(mMaxDistance, distance);
+        mMinEast = Math.min(mMinEast, east);
+        mMaxEast = Math.max(mMaxEast, east);
+        mMinNorth = Math.min(mMinNorth, north);
+        mMaxNorth = Math.max(mMaxNorth, north);
+    }
+
+    /**
+     * Removes all positions, so the next one becomes the new reference.
+     */
+    public void reset() {
+        mCount = 0;
+        mMeanEast = 0;
+        mMeanNorth = 0;
+        mM2East = 0;
+        mM2North = 0;
+        mMeanDistance = 0;
+        mMaxDistance = 0;
+        mMinEast = 0;
+        mMaxEast = 0;
+        mMinNorth = 0;
+        mMaxNorth = 0;
+    }
+
+    /**
+     * Projects a longitude onto the plane of the reference position.
+     *
+     * @param _lon the longitude in degrees.
+     * @return the distance east of the reference in meters, 0 if there is no reference yet.
+     */
+    public double toEast(double _lon) {
+        return mCount == 0 ? 0 : (_lon - mRefLon) * mMetersPerDegreeLon;
+    }
+
+    /**
+     * Projects a latitude onto the plane of the reference position.
+     *
+     * @param _lat the latitude in degrees.
+     * @return the distance north of the reference in meters, 0 if there is no reference yet.
+     */
+    public double toNorth(double _lat) {
+        return mCount == 0 ? 0 : (_lat - mRefLat) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * Gets the number of positions added.
+     *
+     * @return the number of positions.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Gets the largest distance of a position from the reference.
+     *
+     * @return the distance in meters.
+     */
+    public double getMaxDeviation() {
+        return mMaxDistance;
+    }
+
+    /**
+     * Gets the mean distance of the positions from the reference.
+     *
+     * @return the distance in meters.
+     */
+    public double getMeanDeviation() {
+        return mMeanDistance;
+    }
+
+    /**
+     * Gets the mean position east of the reference.
+     *
+     * @return the distance in meters.
+     */
+    public double getMeanEast() {
+        return mMeanEast;
+    }
+
+    /**
+     * Gets the mean position north of the reference.
+     *
+     * @return the distance in meters.
+     */
+    public double getMeanNorth() {
+        return mMeanNorth;
+    }
+
+    /**
+     * Gets the standard deviation of the positions in east direction.
+     *
+     * @return the standard deviation in meters.
+     */
+    public double getStdEast() {
+        return mCount == 0 ? 0 : Math.sqrt(mM2East / mCount);
+    }
+
+    /**
+     * Gets the standard deviation of the positions in north direction.
+     *
+     * @return the standard deviation in meters.
+     */
+    public double getStdNorth() {
+        return mCount == 0 ? 0 : Math.sqrt(mM2North / mCount);
+    }
+
+    /**
+     * Gets the circular error probable, the radius around the mean position containing half of the positions.
+     *
+     * @return the radius in meters.
+     */
+    public double getCEP() {
+        return CEP_FACTOR * (getStdEast() + getStdNorth());
+    }
+
+    /**
+     * Gets twice the distance root mean square, the radius around the mean position containing about 95% of the positions.
+     *
+     * @return the radius in meters.
+     */
+    public double get2DRMS() {
+        return 2 * Math.sqrt(mM2East / Math.max(1, mCount) + mM2North / Math.max(1, mCount));
+    }
+
+    /**
+     * Gets the extent of the positions: the westernmost position, east of the reference.
+     *
+     * @return the distance in meters.
+     */
+    public double getMinEast() {
+        return mMinEast;
+    }
+
+    /**
+     * Gets the extent of the positions: the easternmost position, east of the reference.
+     *
+     * @return the distance in meters.
+     */
+    public double getMaxEast() {
+        return mMaxEast;
+    }
+
+    /**
+     * Gets the extent of the positions: the southernmost position, north of the reference.
+     *
+     * @return the distance in meters.
+     */
+    public double getMinNorth() {
+        return mMinNorth;
+    }
+
+    /**
+     * Gets the extent of the positions: the northernmost position, north of the reference.
+     *
+     * @return the distance in meters.
+     */
+    public double getMaxNorth() {
+        return mMaxNorth;
+    }
+}
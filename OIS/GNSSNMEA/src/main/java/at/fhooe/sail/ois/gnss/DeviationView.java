@@ -1,127 +1,190 @@
 package at.fhooe.sail.ois.gnss;
 
-import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
-import javafx.scene.shape.Line;
-
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * DeviationView is a custom Pane that implements the IPositionUpdateListener interface to visualize
  * the deviation of GNSS data points from an initial position. It displays these points within a circular area,
- * showing the path taken by drawing lines and dots.
+ * showing the path taken by drawing lines and dots. The positions are read from a {@link TrackStore}.
+ *
+ * The path is drawn on a Canvas, and every update only adds the segments of the new positions; the whole path is
+ * only redrawn when the scale changes. The scale is a step of 1, 2 or 5 times a power of ten meters, so this happens
+ * rarely. The current position and the {@link DeviationStatistics} are drawn on a second Canvas on top, which is
+ * cleared on every update. Therefore an update takes time in proportion to the new positions, not to the whole path.
  */
 public class DeviationView extends Pane implements IPositionUpdateListener {
 
     private static final double OUTER_RADIUS = 150.0;
     private static final double CENTER_X = 200.0;
     private static final double CENTER_Y = 200.0;
-
-    private List<Double> mLatitudes = new ArrayList<>();
-    private List<Double> mLongitudes = new ArrayList<>();
-    private Circle mOuterCircle;
+    private static final double DOT_RADIUS = 2.0;
+    /** The outer circle shows at least this many meters. */
+    private static final double MIN_RANGE = 1.0;
+
+    private final TrackStore mTrack;
+    private final DeviationStatistics mStatistics = new DeviationStatistics();
+    private Canvas mTrackCanvas;
+    private Canvas mOverlayCanvas;
+    /** Number of positions of the track that were added to the statistics and drawn. */
+    private int mCount = 0;
+    /** Meters shown at the outer circle. */
+    private double mRange = 0;
 
     /**
-     * Constructor for DeviationView. Initializes the view by setting up the outer circle.
+     * Constructor for DeviationView. Initializes the view by setting up the canvases and the outer circle.
+     *
+     * @param _track the history of fixes to show; it has to be filled before the view is updated.
      */
-    public DeviationView() {
+    public DeviationView(TrackStore _track) {
+        mTrack = _track;
         initializeView();
     }
 
     /**
-     * Initializes the view by creating and configuring the outer circle and adding it to the Pane.
+     * Initializes the view by creating the canvases, adding them to the Pane and drawing the outer circle.
      */
     private void initializeView() {
-        mOuterCircle = new Circle(CENTER_X, CENTER_Y, OUTER_RADIUS);
-        mOuterCircle.setFill(null);
-        mOuterCircle.setStroke(Color.BLACK);
-        getChildren().add(mOuterCircle);
+        mTrackCanvas = new Canvas(2 * CENTER_X, 2 * CENTER_Y);
+        mOverlayCanvas = new Canvas(2 * CENTER_X, 2 * CENTER_Y);
+        getChildren().addAll(mTrackCanvas, mOverlayCanvas);
+        drawOuterCircle(mTrackCanvas.getGraphicsContext2D());
     }
 
     /**
-     * Called when the position is updated. This method updates the lists of latitudes and longitudes
-     * and triggers a redraw of the view on the JavaFX application thread.
+     * Called on the JavaFX application thread when the position is updated. This method adds the positions appended
+     * to the track since the last update to the statistics and draws them.
      *
      * @param info The new NMEAInfo object containing the updated GNSS data.
      */
     @Override
     public void update(NMEAInfo info) {
-        Platform.runLater(() -> {
-            mLatitudes.add(info.getMLat());
-            mLongitudes.add(info.getMLon());
+        int first = mCount;
+        TrackStore.Cursor cursor = mTrack.cursorFrom(first);
+        while (cursor.next()) {
+            mStatistics.add(cursor.getLat(), cursor.getLon());
+            mCount++;
+        }
+        if (mCount == first) {
+            return;
+        }
+
+        if (mStatistics.getMaxDeviation() > mRange || mRange == 0) {
+            mRange = niceRange(mStatistics.getMaxDeviation());
             redraw();
-        });
+        } else {
+            drawSegments(mTrackCanvas.getGraphicsContext2D(), first);
+        }
+        drawOverlay();
     }
 
     /**
-     * Redraws the view by clearing the current children, re-adding the outer circle, and drawing the lines and dots
-     * representing the path taken.
+     * Gets the statistics of the positions shown.
+     *
+     * @return the statistics.
      */
-    private void redraw() {
-        getChildren().clear();
-        getChildren().add(mOuterCircle);
-
-        double maxDeviation = calculateMaxDeviation();
-        double scaleFactor = maxDeviation > 0 ? OUTER_RADIUS / maxDeviation : 0;
+    public DeviationStatistics getStatistics() {
+        return mStatistics;
+    }
 
-        for (int i = 1; i < mLatitudes.size(); i++) {
-            drawLineAndDot(i, scaleFactor);
-        }
-        drawLastDot(scaleFactor);
+    /**
+     * Redraws the whole path, after the scale changed.
+     */
+    private void redraw() {
+        GraphicsContext gc = mTrackCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, mTrackCanvas.getWidth(), mTrackCanvas.getHeight());
+        drawOuterCircle(gc);
+        drawSegments(gc, 0);
     }
 
     /**
-     * Draws a line and a dot for the given index, scaled appropriately.
+     * Draws the outer circle.
      *
-     * @param index The index of the current position in the list.
-     * @param scaleFactor The factor by which to scale the deviation for drawing.
+     * @param gc The GraphicsContext of the track Canvas.
      */
-    private void drawLineAndDot(int index, double scaleFactor) {
-        double x1 = CENTER_X + (mLongitudes.get(index - 1) - mLongitudes.get(0)) * scaleFactor;
-        double y1 = CENTER_Y - (mLatitudes.get(index - 1) - mLatitudes.get(0)) * scaleFactor;
-        double x2 = CENTER_X + (mLongitudes.get(index) - mLongitudes.get(0)) * scaleFactor;
-        double y2 = CENTER_Y - (mLatitudes.get(index) - mLatitudes.get(0)) * scaleFactor;
-
-        Line line = new Line(x1, y1, x2, y2);
-        line.setStroke(index == mLatitudes.size() - 1 ? Color.RED : Color.BLACK);
-        getChildren().add(line);
-
-        Circle dot = new Circle(x1, y1, 2, index == mLatitudes.size() - 1 ? Color.RED : Color.BLACK);
-        getChildren().add(dot);
+    private void drawOuterCircle(GraphicsContext gc) {
+        gc.setStroke(Color.BLACK);
+        gc.setLineWidth(1);
+        gc.strokeOval(CENTER_X - OUTER_RADIUS, CENTER_Y - OUTER_RADIUS, 2 * OUTER_RADIUS, 2 * OUTER_RADIUS);
     }
 
     /**
-     * Draws the last dot in the series, which is typically the current position.
+     * Draws the lines and dots of the path from a position up to the last position added to the statistics.
      *
-     * @param scaleFactor The factor by which to scale the deviation for drawing.
+     * @param gc The GraphicsContext of the track Canvas.
+     * @param from The index of the first new position; the line to it starts at the position before.
+     */
+    private void drawSegments(GraphicsContext gc, int from) {
+        double scaleFactor = OUTER_RADIUS / mRange;
+        gc.setStroke(Color.BLACK);
+        gc.setFill(Color.BLACK);
+        gc.setLineWidth(1);
+
+        TrackStore.Cursor cursor = mTrack.cursorFrom(from - 1);
+        boolean hasPrevious = false;
+        double previousX = 0;
+        double previousY = 0;
+        while (cursor.next() && cursor.getIndex() < mCount) {
+            double x = CENTER_X + mStatistics.toEast(cursor.getLon()) * scaleFactor;
+            double y = CENTER_Y - mStatistics.toNorth(cursor.getLat()) * scaleFactor;
+            if (hasPrevious) {
+                gc.strokeLine(previousX, previousY, x, y);
+            }
+            if (cursor.getIndex() >= from) {
+                gc.fillOval(x - DOT_RADIUS, y - DOT_RADIUS, 2 * DOT_RADIUS, 2 * DOT_RADIUS);
+            }
+            previousX = x;
+            previousY = y;
+            hasPrevious = true;
+        }
+    }
+
+    /**
+     * Draws the last segment and the current position in red, together with the statistics and the scale.
      */
-    private void drawLastDot(double scaleFactor) {
-        if (!mLatitudes.isEmpty()) {
-            double lastX = CENTER_X + (mLongitudes.get(mLongitudes.size() - 1) - mLongitudes.get(0)) * scaleFactor;
-            double lastY = CENTER_Y - (mLatitudes.get(mLatitudes.size() - 1) - mLatitudes.get(0)) * scaleFactor;
-            Circle lastDot = new Circle(lastX, lastY, 2, Color.RED);
-            getChildren().add(lastDot);
+    private void drawOverlay() {
+        GraphicsContext gc = mOverlayCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, mOverlayCanvas.getWidth(), mOverlayCanvas.getHeight());
+        double scaleFactor = OUTER_RADIUS / mRange;
+        double x = CENTER_X + mStatistics.toEast(mTrack.getLon(mCount - 1)) * scaleFactor;
+        double y = CENTER_Y - mStatistics.toNorth(mTrack.getLat(mCount - 1)) * scaleFactor;
+        gc.setStroke(Color.RED);
+        gc.setFill(Color.RED);
+        gc.setLineWidth(1);
+        if (mCount > 1) {
+            double previousX = CENTER_X + mStatistics.toEast(mTrack.getLon(mCount - 2)) * scaleFactor;
+            double previousY = CENTER_Y - mStatistics.toNorth(mTrack.getLat(mCount - 2)) * scaleFactor;
+            gc.strokeLine(previousX, previousY, x, y);
         }
+        gc.fillOval(x - DOT_RADIUS, y - DOT_RADIUS, 2 * DOT_RADIUS, 2 * DOT_RADIUS);
+
+        gc.setFill(Color.BLACK);
+        gc.fillText(String.format("Radius: %s m", formatMeters(mRange)), 10, 20);
+        gc.fillText(String.format("Max: %.2f m   Mean: %.2f m", mStatistics.getMaxDeviation(),
+                mStatistics.getMeanDeviation()), 10, 2 * CENTER_Y - 30);
+        gc.fillText(String.format("σE: %.2f m   σN: %.2f m   CEP: %.2f m   2DRMS: %.2f m", mStatistics.getStdEast(),
+                mStatistics.getStdNorth(), mStatistics.getCEP(), mStatistics.get2DRMS()), 10, 2 * CENTER_Y - 12);
     }
 
     /**
-     * Calculates the maximum deviation of the latitude and longitude points from the initial position.
+     * Rounds a deviation up to the next step of 1, 2 or 5 times a power of ten.
      *
-     * @return The maximum deviation calculated as the Euclidean distance from the initial point.
+     * @param deviation The deviation in meters.
+     * @return The range in meters to show at the outer circle.
      */
-    private double calculateMaxDeviation() {
-        double maxDeviation = 0;
-        for (int i = 0; i < mLatitudes.size(); i++) {
-            double deviationX = Math.abs(mLongitudes.get(i) - mLongitudes.get(0));
-            double deviationY = Math.abs(mLatitudes.get(i) - mLatitudes.get(0));
-            double deviation = Math.sqrt(deviationX * deviationX + deviationY * deviationY);
-            if (deviation > maxDeviation) {
-                maxDeviation = deviation;
-            }
+    private static double niceRange(double deviation) {
+        double range = MIN_RANGE;
+        while (range < deviation) {
+            double decade = Math.pow(10, Math.floor(Math.log10(range)));
+            double step = range / decade;
+            range = (step < 2 ? 2 : step < 5 ? 5 : 10) * decade;
         }
-        return maxDeviation;
+        return range;
+    }
+
+    private static String formatMeters(double meters) {
+        return meters == Math.rint(meters) ? String.valueOf((long) meters) : String.valueOf(meters);
     }
 }
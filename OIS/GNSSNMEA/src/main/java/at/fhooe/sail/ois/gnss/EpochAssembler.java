@@ -0,0 +1,431 @@
+package at.fhooe.sail.ois.gnss;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * EpochAssembler is a class that collects the sentences a receiver sends for one epoch (one time tag) and
+ * publishes them as a single immutable {@link NMEAInfo} once the epoch is complete.
+ *
+ * A receiver sends the sentences of an epoch as a cycle in a fixed order, but the order differs between receivers:
+ * some start the cycle with RMC and send GSA and GSV after it, others send GSV, GSA and VTG first and end the cycle
+ * with RMC and GGA. Only some sentences carry a time tag (GGA, RMC, GLL, GNS, ZDA), so the sentences without one
+ * cannot be assigned by their tag. Instead the assembler learns which time-tagged sentence ends a cycle: when a
+ * sentence with a new tag arrives while the epoch is still open, the last time-tagged sentence of the open epoch
+ * was the end of its cycle. From then on the epoch is published right after that sentence, so everything that
+ * follows belongs to the next epoch. Until the end is known, and whenever it is missing, the open epoch is split
+ * at its last time-tagged sentence: what came before is published, and the satellites, used satellites and DOP
+ * values that came after it are kept for the next epoch. VTG has no time tag either, so its speed and course are
+ * kept for the next time tag. {@link #flush()} publishes the open epoch at the end of the stream.
+ *
+ * The satellites of a multi-part GSV group ({@code 3,1} ... {@code 3,3}) are only added when the last part
+ * arrived; groups with missing parts are discarded. Every GGA starts a new epoch if the open one already has a
+ * position, and epochs without a GGA position are not published.
+ *
+ * Until an epoch is published, its satellites and used satellite ids are kept in reused arrays of primitives,
+ * so feeding the assembler does not allocate; the {@link SatelliteInfo} objects are only created for the snapshot.
+ *
+ * The assembler is not thread-safe and is meant to be fed by the parsing thread only; the published
+ * snapshots can be used by any thread.
+ */
+public class EpochAssembler {
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final Constellation[] CONSTELLATIONS = Constellation.values();
+
+    private final Consumer<NMEAInfo> mPublisher;
+    private final NMEAInfo.Builder mBuilder = new NMEAInfo.Builder();
+    private int mTime = -1;
+    private boolean mHasPosition = false;
+    private long mEpochDay = -1;
+    private long mEpochs = 0;
+    private long mDiscardedGroups = 0;
+
+    /** The type of the time-tagged sentence that ends a cycle, 0 until it is known. */
+    private int mCycleEnd = 0;
+    /** The type of the last time-tagged sentence of the open epoch, 0 if it has none. */
+    private int mLastTagged = 0;
+    /** True if the sentence being processed has a time tag. */
+    private boolean mSentenceTagged = false;
+
+    private final Satellites mSatellites = new Satellites();
+    private int mSatellitesInView = 0;
+    private int[] mUsedKeys = new int[32];
+    private int mUsedCount = 0;
+    private boolean mHasDOP = false;
+    private double mPDOP = 0;
+    private double mHDOP = 0;
+    private double mVDOP = 0;
+
+    // the state of the open epoch at its last time-tagged sentence, where it is split
+    private int mTaggedSatellites = 0;
+    private int mTaggedInView = 0;
+    private int mTaggedUsed = 0;
+    private boolean mTaggedHasDOP = false;
+    private double mTaggedPDOP = 0;
+    private double mTaggedHDOP = 0;
+    private double mTaggedVDOP = 0;
+    private boolean mDOPAfterTag = false;
+
+    private final Satellites mGroup = new Satellites();
+    private Constellation mGroupConstellation = null;
+    private int mGroupTalker = 0;
+    private int mGroupTotal = 0;
+    private int mGroupNext = 0;
+    private int mGroupInView = 0;
+
+    private boolean mMotionPending = false;
+    private double mPendingSpeed = 0;
+    private double mPendingCourse = Double.NaN;
+
+    /**
+     * Constructs an EpochAssembler.
+     *
+     * @param _publisher receives one snapshot per complete epoch, on the thread that feeds the assembler.
+     */
+    public EpochAssembler(Consumer<NMEAInfo> _publisher) {
+        mPublisher = _publisher;
+    }
+
+    /**
+     * Assigns the following values to the epoch of a time tag. If an epoch with another tag is open,
+     * it is split first. Pending VTG values are applied to the epoch.
+     *
+     * @param _type the packed type of the sentence, see {@link NMEATokenizer#pack(CharSequence)}.
+     * @param _timeOfDay the time tag in milliseconds since midnight, negative if the sentence had none.
+     * @return the builder of the epoch, to set the values of the sentence.
+     */
+    public NMEAInfo.Builder tag(int _type, int _timeOfDay) {
+        if (_timeOfDay >= 0) {
+            if (mTime >= 0 && mTime != _timeOfDay) {
+                split();
+            }
+            mTime = _timeOfDay;
+        }
+        if (mMotionPending) {
+            mBuilder.speed(mPendingSpeed).course(mPendingCourse);
+            mMotionPending = false;
+        }
+        mLastTagged = _type;
+        mSentenceTagged = true;
+        mTaggedSatellites = mSatellites.mCount;
+        mTaggedInView = mSatellitesInView;
+        mTaggedUsed = mUsedCount;
+        mTaggedHasDOP = mHasDOP;
+        mTaggedPDOP = mPDOP;
+        mTaggedHDOP = mHDOP;
+        mTaggedVDOP = mVDOP;
+        mDOPAfterTag = false;
+        return mBuilder;
+    }
+
+    /**
+     * Like {@link #tag(int, int)}, and marks the epoch as having a position, e.g. for a GGA sentence.
+     * As receivers without a fix send GGA sentences without a time tag, an epoch that already has
+     * a position is split first.
+     *
+     * @param _type the packed type of the sentence.
+     * @param _timeOfDay the time tag in milliseconds since midnight, negative if the sentence had none.
+     * @return the builder of the epoch.
+     */
+    public NMEAInfo.Builder position(int _type, int _timeOfDay) {
+        if (mHasPosition) {
+            split();
+        }
+        NMEAInfo.Builder builder = tag(_type, _timeOfDay);
+        mHasPosition = true;
+        return builder;
+    }
+
+    /**
+     * Ends a sentence. If it was the time-tagged sentence that ends a cycle, the open epoch is published.
+     * Has to be called after every sentence.
+     */
+    public void endSentence() {
+        if (mSentenceTagged && mLastTagged == mCycleEnd) {
+            publish(false);
+        }
+        mSentenceTagged = false;
+    }
+
+    /**
+     * Sets the DOP values of the open epoch, e.g. of a GSA sentence. They replace the HDOP of the GGA sentence.
+     *
+     * @param _pdop the position dilution of precision.
+     * @param _hdop the horizontal dilution of precision.
+     * @param _vdop the vertical dilution of precision.
+     */
+    public void dop(double _pdop, double _hdop, double _vdop) {
+        mHasDOP = true;
+        mPDOP = _pdop;
+        mHDOP = _hdop;
+        mVDOP = _vdop;
+        mDOPAfterTag = true;
+    }
+
+    /**
+     * Sets the UTC date used for the timestamps of the open and the following epochs. The sentence has to be
+     * tagged first, so a date that belongs to a new epoch is not applied to the previous one.
+     *
+     * @param _epochDay the days since 1970-01-01.
+     */
+    public void date(long _epochDay) {
+        mEpochDay = _epochDay;
+    }
+
+    /**
+     * Keeps speed and course without a time tag, e.g. of a VTG sentence, for the next time tag.
+     *
+     * @param _speed the speed over ground in m/s.
+     * @param _course the course over ground in degrees, NaN if unknown.
+     */
+    public void motion(double _speed, double _course) {
+        mMotionPending = true;
+        mPendingSpeed = _speed;
+        mPendingCourse = _course;
+    }
+
+    /**
+     * Marks a satellite as used in the solution of the open epoch, e.g. as reported by a GSA sentence.
+     *
+     * @param _constellation the constellation of the satellite.
+     * @param _id the satellite id.
+     */
+    public void used(Constellation _constellation, int _id) {
+        if (mUsedCount == mUsedKeys.length) {
+            mUsedKeys = Arrays.copyOf(mUsedKeys, mUsedCount * 2);
+        }
+        mUsedKeys[mUsedCount++] = _constellation.ordinal() << 16 | _id;
+    }
+
+    /**
+     * Starts a part of a GSV group. A new group starts with part 1; a part that does not continue
+     * the current group discards it.
+     *
+     * @param _constellation the constellation of the talker.
+     * @param _talker the packed talker of the sentence.
+     * @param _total the number of parts of the group.
+     * @param _part the number of this part, starting with 1.
+     * @param _inView the number of satellites in view reported by the group.
+     * @return true if the satellites of the part should be added, false if the part is out of sequence.
+     */
+    public boolean beginSatellites(Constellation _constellation, int _talker, int _total, int _part, int _inView) {
+        if (_part == 1) {
+            discardGroup();
+            mGroupConstellation = _constellation;
+            mGroupTalker = _talker;
+            mGroupTotal = _total;
+            mGroupInView = _inView;
+            mGroupNext = 1;
+        }
+        if (mGroupConstellation != _constellation || _part != mGroupNext || _total != mGroupTotal) {
+            discardGroup();
+            return false;
+        }
+        mGroupNext++;
+        return true;
+    }
+
+    /**
+     * Adds a satellite of the current GSV part.
+     *
+     * @param _id the satellite id (PRN).
+     * @param _verticalAngle the elevation in degrees.
+     * @param _horizontalAngle the azimuth in degrees.
+     * @param _snr the signal-to-noise ratio in dB-Hz.
+     */
+    public void addSatellite(int _id, double _verticalAngle, double _horizontalAngle, double _snr) {
+        mGroup.add(_id, _verticalAngle, _horizontalAngle, _snr, mGroupConstellation, mGroupTalker);
+    }
+
+    /**
+     * Ends the current GSV part. If it was the last part of its group, the satellites of the group are
+     * added to the open epoch.
+     */
+    public void endSatellites() {
+        if (mGroupConstellation != null && mGroupNext > mGroupTotal) {
+            mSatellites.addAll(mGroup);
+            mSatellitesInView += mGroupInView;
+            mGroup.clear();
+            mGroupConstellation = null;
+        }
+    }
+
+    /**
+     * Publishes the open epoch, e.g. at the end of the stream.
+     */
+    public void flush() {
+        publish(false);
+    }
+
+    /**
+     * Gets the number of epochs published so far.
+     *
+     * @return the number of epochs.
+     */
+    public long getEpochCount() {
+        return mEpochs;
+    }
+
+    /**
+     * Gets the number of GSV groups discarded because parts were missing.
+     *
+     * @return the number of discarded groups.
+     */
+    public long getDiscardedGroupCount() {
+        return mDiscardedGroups;
+    }
+
+    /**
+     * Splits the open epoch, which was not published at the end of its cycle. Its last time-tagged sentence
+     * ended the cycle, so the receiver ends its cycles with this type of sentence.
+     */
+    private void split() {
+        mCycleEnd = mLastTagged;
+        publish(true);
+    }
+
+    /**
+     * Publishes the open epoch if it has a position and starts the next one.
+     *
+     * @param _split true to publish only what came before the last time-tagged sentence and to keep the rest
+     *               for the next epoch, false to publish everything.
+     */
+    private void publish(boolean _split) {
+        discardGroup();
+        int satellites = _split ? mTaggedSatellites : mSatellites.mCount;
+        int used = _split ? mTaggedUsed : mUsedCount;
+        if (mHasPosition) {
+            for (int i = 0; i < satellites; i++) {
+                Constellation constellation = mSatellites.mConstellations[i];
+                int id = mSatellites.mIds[i];
+                mBuilder.addSatellite(new SatelliteInfo(id, mSatellites.mVerticalAngles[i], mSatellites.mHorizontalAngles[i],
+                        mSatellites.mSNRs[i], mSatellites.mTalkers[i], constellation, isUsed(constellation, id, used)));
+            }
+            for (int i = 0; i < used; i++) {
+                mBuilder.addUsedSatellite(mUsedKeys[i] & 0xFFFF);
+            }
+            int inView = _split ? mTaggedInView : mSatellitesInView;
+            if (inView > 0) {
+                mBuilder.satelliteCount(inView);
+            }
+            if (_split ? mTaggedHasDOP : mHasDOP) {
+                mBuilder.pdop(_split ? mTaggedPDOP : mPDOP)
+                        .hdop(_split ? mTaggedHDOP : mHDOP)
+                        .vdop(_split ? mTaggedVDOP : mVDOP);
+            }
+            if (mEpochDay >= 0 && mTime >= 0) {
+                mBuilder.timestamp(mEpochDay * MILLIS_PER_DAY + mTime);
+            }
+            NMEAInfo info = mBuilder.build();
+            mEpochs++;
+            mPublisher.accept(info);
+        }
+        mBuilder.clear();
+        mHasPosition = false;
+        mTime = -1;
+        mLastTagged = 0;
+        mSentenceTagged = false;
+        if (_split) {
+            mSatellites.removeFirst(satellites);
+            mSatellitesInView -= mTaggedInView;
+            mUsedCount -= used;
+            System.arraycopy(mUsedKeys, used, mUsedKeys, 0, mUsedCount);
+            mHasDOP = mDOPAfterTag;
+        } else {
+            mSatellites.clear();
+            mSatellitesInView = 0;
+            mUsedCount = 0;
+            mHasDOP = false;
+        }
+        mTaggedSatellites = 0;
+        mTaggedInView = 0;
+        mTaggedUsed = 0;
+        mTaggedHasDOP = false;
+        mDOPAfterTag = mHasDOP;
+    }
+
+    private void discardGroup() {
+        if (mGroupConstellation != null) {
+            mDiscardedGroups++;
+        }
+        mGroup.clear();
+        mGroupConstellation = null;
+    }
+
+    /**
+     * Tells whether a satellite was reported as used in the open epoch, by one of the first used satellite ids.
+     * If either side does not know the constellation, e.g. a GSA of the combined talker "GN" without system id,
+     * only the ids are compared.
+     */
+    private boolean isUsed(Constellation _constellation, int _id, int _usedCount) {
+        for (int i = 0; i < _usedCount; i++) {
+            int key = mUsedKeys[i];
+            if ((key & 0xFFFF) == _id) {
+                int used = key >>> 16;
+                if (used == _constellation.ordinal() || !isSpecific(_constellation) || !isSpecific(CONSTELLATIONS[used])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSpecific(Constellation _constellation) {
+        return _constellation != Constellation.COMBINED && _constellation != Constellation.UNKNOWN;
+    }
+
+    /**
+     * Satellites holds the values of satellites in columns that grow as needed and are reused.
+     */
+    private static class Satellites {
+        private int mCount = 0;
+        private int[] mIds = new int[64];
+        private double[] mVerticalAngles = new double[64];
+        private double[] mHorizontalAngles = new double[64];
+        private double[] mSNRs = new double[64];
+        private Constellation[] mConstellations = new Constellation[64];
+        private int[] mTalkers = new int[64];
+
+        void add(int _id, double _verticalAngle, double _horizontalAngle, double _snr, Constellation _constellation, int _talker) {
+            if (mCount == mIds.length) {
+                int capacity = mCount * 2;
+                mIds = Arrays.copyOf(mIds, capacity);
+                mVerticalAngles = Arrays.copyOf(mVerticalAngles, capacity);
+                mHorizontalAngles = Arrays.copyOf(mHorizontalAngles, capacity);
+                mSNRs = Arrays.copyOf(mSNRs, capacity);
+                mConstellations = Arrays.copyOf(mConstellations, capacity);
+                mTalkers = Arrays.copyOf(mTalkers, capacity);
+            }
+            mIds[mCount] = _id;
+            mVerticalAngles[mCount] = _verticalAngle;
+            mHorizontalAngles[mCount] = _horizontalAngle;
+            mSNRs[mCount] = _snr;
+            mConstellations[mCount] = _constellation;
+            mTalkers[mCount] = _talker;
+            mCount++;
+        }
+
+        void addAll(Satellites _other) {
+            for (int i = 0; i < _other.mCount; i++) {
+                add(_other.mIds[i], _other.mVerticalAngles[i], _other.mHorizontalAngles[i], _other.mSNRs[i],
+                        _other.mConstellations[i], _other.mTalkers[i]);
+            }
+        }
+
+        void removeFirst(int _count) {
+            int rest = mCount - _count;
+            System.arraycopy(mIds, _count, mIds, 0, rest);
+            System.arraycopy(mVerticalAngles, _count, mVerticalAngles, 0, rest);
+            System.arraycopy(mHorizontalAngles, _count, mHorizontalAngles, 0, rest);
+            System.arraycopy(mSNRs, _count, mSNRs, 0, rest);
+            System.arraycopy(mConstellations, _count, mConstellations, 0, rest);
+            System.arraycopy(mTalkers, _count, mTalkers, 0, rest);
+            mCount = rest;
+        }
+
+        void clear() {
+            mCount = 0;
+        }
+    }
+}
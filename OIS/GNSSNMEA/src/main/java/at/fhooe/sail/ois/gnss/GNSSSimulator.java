@@ -4,16 +4,47 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * GNSSSimulator extends BufferedReader to simulate reading GNSS data from a file.
- * It introduces a delay between lines containing a specified filter string to simulate real-time data reading.
+ *
+ * The lines are replayed in one of three ways:
+ * <ul>
+ *     <li>paced by the NMEA time tags, in real time (speed 1) or scaled (e.g. speed 10 for ten times as fast),</li>
+ *     <li>unthrottled, as fast as the reader consumes them, e.g. for bulk analysis and load tests,</li>
+ *     <li>with a fixed delay after every line that contains a filter string.</li>
+ * </ul>
+ * Pacing is done with {@link LockSupport#parkNanos(long)} against deadlines on the monotonic clock
+ * ({@link System#nanoTime()}), so the time spent by the reader does not add up to a drift.
  */
 public class GNSSSimulator  extends BufferedReader {
+
+    /** Speed that replays the file in real time. */
+    public static final double REAL_TIME = 1.0;
+    /** Speed that replays the file without any pacing. */
+    public static final double UNTHROTTLED = Double.POSITIVE_INFINITY;
+    /** Gaps in the time tags longer than this, e.g. when the receiver lost its fix, are shortened to it. */
+    public static final long MAX_GAP_MILLIS = 5_000;
+
+    private static final int GGA = NMEATokenizer.pack("GGA");
+    private static final int RMC = NMEATokenizer.pack("RMC");
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
     private String mFilename;
     private int mSleep;
     private String mFilter;
+    private final double mSpeed;
+    private final NMEATokenizer mTokenizer = new NMEATokenizer();
+
+    private long mStartNanos = -1;
+    /** Replay time in milliseconds since the first line. */
+    private long mReplayMillis = 0;
+    private int mLastTime = -1;
+    private long mLastInterval = 1_000;
 
     /**
      * Constructs a GNSSSimulator with the specified filename, sleep interval, and filter string.
@@ -28,35 +59,125 @@ public class GNSSSimulator  extends BufferedReader {
         mFilename = _filename;
         mSleep = _sleep;
         mFilter = _filter;
+        mSpeed = 0;
     }
 
     /**
-     * Reads a line from the file. If the line contains the filter string, the method sleeps for the specified
-     * interval before returning the line.
+     * Constructs a GNSSSimulator that paces the lines by their NMEA time tags.
+     *
+     * @param _filename The name of the file to read GNSS data from.
+     * @param _speed The replay speed: {@link #REAL_TIME}, a factor such as 10 for ten times as fast,
+     *               or {@link #UNTHROTTLED}.
+     * @throws FileNotFoundException If the specified file does not exist.
+     */
+    public GNSSSimulator(String _filename, double _speed) throws FileNotFoundException {
+        super(new FileReader(String.valueOf(Paths.get("GPS-Logs/" + _filename))));
+        if (!(_speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive: " + _speed);
+        }
+        mFilename = _filename;
+        mSpeed = _speed;
+    }
+
+    /**
+     * Reads a line from the file. A line with a new time tag is returned when its time has come; in filter mode,
+     * the method waits for the specified interval after a line containing the filter string.
      *
      * @return The next line from the file, or null if the end of the file has been reached.
      * @throws IOException If an I/O error occurs.
+     * @throws InterruptedIOException If the thread was interrupted while waiting.
      */
     @Override
     public String readLine() throws IOException {
         String line = super.readLine();
-        if (line != null && line.contains(mFilter)) {
-            try {
-                Thread.sleep(mSleep);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
+        if (line == null || mSpeed == UNTHROTTLED) {
+            return line;
+        }
+        if (mStartNanos < 0) {
+            mStartNanos = System.nanoTime();
         }
 
+        if (mFilter != null) {
+            if (line.contains(mFilter)) {
+                mReplayMillis += mSleep;
+                parkUntil(mStartNanos + mReplayMillis * NANOS_PER_MILLI);
+            }
+        } else if (advance(line)) {
+            parkUntil(mStartNanos + (long) (mReplayMillis * NANOS_PER_MILLI / mSpeed));
+        }
         return line;
     }
 
+    /**
+     * Advances the replay time by the time tag of a line. The line is tokenized like the {@link NMEAParser} does,
+     * so lines it rejects because of their checksum do not pace the replay either.
+     *
+     * @param _line the line.
+     * @return true if the replay time changed.
+     */
+    private boolean advance(String _line) {
+        if (!mTokenizer.tokenize(_line)) {
+            return false;
+        }
+        int type = mTokenizer.getSentenceType();
+        if (type != GGA && type != RMC) {
+            return false;
+        }
+        int time = mTokenizer.getTimeOfDay(1);
+        if (time < 0) {
+            // receivers without a fix send GGA without a time tag, keep their rhythm
+            if (type == GGA) {
+                mReplayMillis += mLastInterval;
+                return true;
+            }
+            return false;
+        }
+        if (mLastTime < 0 || time == mLastTime) {
+            mLastTime = time;
+            return false;
+        }
+        long delta = time - mLastTime;
+        if (delta < -MILLIS_PER_DAY / 2) {
+            delta += MILLIS_PER_DAY;  // midnight
+        }
+        mLastTime = time;
+        if (delta <= 0) {
+            return false;
+        }
+        delta = Math.min(delta, MAX_GAP_MILLIS);
+        mLastInterval = delta;
+        mReplayMillis += delta;
+        return true;
+    }
+
+    /**
+     * Waits until a deadline of {@link System#nanoTime()} has passed.
+     */
+    private static void parkUntil(long _deadline) throws InterruptedIOException {
+        long remaining;
+        while ((remaining = _deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Replay interrupted");
+            }
+        }
+    }
+
     /**
      * Gets the filter string used to determine which lines cause a delay.
      *
-     * @return The filter string.
+     * @return The filter string, or null if the lines are paced by their time tags.
      */
     public String getFilter() {
         return mFilter;
     }
+
+    /**
+     * Gets the replay speed.
+     *
+     * @return the speed factor, {@link #UNTHROTTLED} for no pacing, or 0 if the lines are paced by a filter.
+     */
+    public double getSpeed() {
+        return mSpeed;
+    }
 }
@@ -1,6 +1,7 @@
 package at.fhooe.sail.ois.gnss;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
@@ -18,14 +19,15 @@ public class GNSSView extends Application {
     private static final String mSimulatorFile = "NMEA-data-1--Hgb-Statisch-nur-GPS.nmea";
     //private static final String mSimulatorFile = "NMEA-data-2--Engerwitzdorf-PlusCity.nmea";
     //private static final String mSimulatorFile = "NMEA-data-3--Materl-Position-Statisch.nmea";
-    private static final int mSimulatorInterval = 1000;
-    private static final String mFilter = "$GPGGA";
+    /** Replay speed; the logs are paced by their NMEA time tags, so this works for every talker. */
+    private static final double mSimulatorSpeed = GNSSSimulator.REAL_TIME;
     private static final int mSceneWidth = 800;
     private static final int mSceneHeight = 550;
 
     private Scene mScene;
     private NMEAParser mParser;
     private GNSSSimulator mSimulator;
+    private TrackStore mTrack;
 
     /**
      * The main entry point for all JavaFX applications.
@@ -95,7 +97,7 @@ public class GNSSView extends Application {
      * @return The configured DeviationView.
      */
     private DeviationView createDeviationView(HBox root) {
-        DeviationView deviationView = new DeviationView();
+        DeviationView deviationView = new DeviationView(mTrack);
         deviationView.setStyle("-fx-background-color: #f0f0f0; -fx-padding: 10;");
         deviationView.prefWidthProperty().bind(root.widthProperty().divide(2));
         deviationView.prefHeightProperty().bind(root.heightProperty());
@@ -145,8 +147,11 @@ public class GNSSView extends Application {
      * @throws FileNotFoundException If the simulator file is not found.
      */
     private void initializeSimulatorAndParser() throws FileNotFoundException {
-        mSimulator = new GNSSSimulator(mSimulatorFile, mSimulatorInterval, mFilter);
-        mParser = new NMEAParser(mSimulator);
+        mSimulator = new GNSSSimulator(mSimulatorFile, mSimulatorSpeed);
+        mParser = new NMEAParser(mSimulator, Platform::runLater);  // one pulse on the FX thread serves all views
+        mTrack = new TrackStore();
+        mParser.addPositionUpdateListener(mTrack, ListenerDispatcher.Mode.DIRECT);
+        mParser.getDiagnostics().setLogSink(System.err::println, 100);
         mParser.start();
     }
 
@@ -3,6 +3,7 @@ package at.fhooe.sail.ois.gnss;
 /**
  * IPositionUpdateListener is an interface that defines a method to handle position updates.
  * Implementing classes should provide the logic for handling updates when new GNSS data is available.
+ * Updates are delivered by a {@link ListenerDispatcher}, on the thread of the delivery mode the listener was registered with.
  */
 public interface IPositionUpdateListener {
     /**
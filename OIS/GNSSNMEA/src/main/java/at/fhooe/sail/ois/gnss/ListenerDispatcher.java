@@ -0,0 +1,251 @@
+package at.fhooe.sail.ois.gnss;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ListenerDispatcher is a class that delivers the NMEAInfo snapshots of a parser to its listeners without
+ * letting a slow listener stall the parsing thread.
+ *
+ * Listeners are kept in a copy-on-write registry, so publishing never locks. Every listener has its own queue:
+ * <ul>
+ *     <li>{@link Mode#LATEST} listeners, e.g. views, have a slot that holds only the newest snapshot; a snapshot
+ *     that was not delivered yet is replaced and counted as dropped. All of them are served by one pulse on the
+ *     pulse executor, e.g. {@code Platform::runLater}, which is only scheduled if none is pending yet.</li>
+ *     <li>{@link Mode#LOSSLESS} listeners, e.g. recorders, have a bounded queue and a thread of their own.
+ *     If the queue is full, the publisher waits, so no snapshot is lost and the parser is slowed down instead.</li>
+ *     <li>{@link Mode#DIRECT} listeners are called on the publishing thread before the pulse is scheduled, so they
+ *     must be fast, e.g. a {@link TrackStore} that views read on the next pulse.</li>
+ * </ul>
+ */
+public class ListenerDispatcher {
+
+    /** Capacity of the queue of a lossless listener if none is given. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Mode defines how snapshots are delivered to a listener.
+     */
+    public enum Mode {
+        /** Only the newest snapshot is delivered, on the pulse executor. */
+        LATEST,
+        /** Every snapshot is delivered in order, on a thread of the listener. */
+        LOSSLESS,
+        /** Every snapshot is delivered in order, on the publishing thread. */
+        DIRECT
+    }
+
+    private final CopyOnWriteArrayList<Subscription> mSubscriptions = new CopyOnWriteArrayList<>();
+    private final Executor mPulseExecutor;
+    private final AtomicBoolean mPulsePending = new AtomicBoolean();
+    private final AtomicLong mPulses = new AtomicLong();
+
+    /**
+     * Constructs a ListenerDispatcher.
+     *
+     * @param _pulseExecutor runs the pulse that serves all {@link Mode#LATEST} listeners, e.g. {@code Platform::runLater}.
+     */
+    public ListenerDispatcher(Executor _pulseExecutor) {
+        mPulseExecutor = _pulseExecutor;
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param _listener the listener.
+     * @param _mode how snapshots are delivered to it.
+     */
+    public void addListener(IPositionUpdateListener _listener, Mode _mode) {
+        addListener(_listener, _mode, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param _listener the listener.
+     * @param _mode how snapshots are delivered to it.
+     * @param _capacity the capacity of the queue of a {@link Mode#LOSSLESS} listener.
+     */
+    public void addListener(IPositionUpdateListener _listener, Mode _mode, int _capacity) {
+        Subscription subscription = new Subscription(_listener, _mode, _capacity);
+        mSubscriptions.add(subscription);
+        if (_mode == Mode.LOSSLESS) {
+            Thread worker = new Thread(subscription::drain, "ListenerDispatcher-" + _listener.getClass().getSimpleName());
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Unregisters a listener. A lossless listener still receives the snapshots already in its queue.
+     *
+     * @param _listener the listener.
+     */
+    public void removeListener(IPositionUpdateListener _listener) {
+        Subscription subscription = find(_listener);
+        if (subscription != null) {
+            mSubscriptions.remove(subscription);
+            subscription.mRemoved = true;
+        }
+    }
+
+    /**
+     * Hands a snapshot to all listeners. Only waits if the queue of a lossless listener is full.
+     *
+     * @param _info the snapshot.
+     */
+    public void publish(NMEAInfo _info) {
+        boolean pulse = false;
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.mMode == Mode.LATEST) {
+                if (subscription.mLatest.getAndSet(_info) != null) {
+                    subscription.mDropped.incrementAndGet();
+                }
+                pulse = true;
+            } else if (subscription.mMode == Mode.DIRECT) {
+                subscription.deliver(_info);
+            } else if (!subscription.mQueue.offer(_info)) {
+                subscription.mStalls.incrementAndGet();
+                try {
+                    subscription.mQueue.put(_info);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    subscription.mDropped.incrementAndGet();
+                }
+            }
+        }
+        if (pulse && mPulsePending.compareAndSet(false, true)) {
+            mPulseExecutor.execute(this::pulse);
+        }
+    }
+
+    /**
+     * Delivers the newest snapshot of every latest-wins listener. Runs on the pulse executor.
+     */
+    private void pulse() {
+        // cleared first, so a snapshot published while delivering schedules the next pulse
+        mPulsePending.set(false);
+        mPulses.incrementAndGet();
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.mMode == Mode.LATEST) {
+                NMEAInfo info = subscription.mLatest.getAndSet(null);
+                if (info != null) {
+                    subscription.deliver(info);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of snapshots waiting for a listener.
+     *
+     * @param _listener the listener.
+     * @return the queue depth, 0 if the listener is not registered.
+     */
+    public int getQueueDepth(IPositionUpdateListener _listener) {
+        Subscription subscription = find(_listener);
+        if (subscription == null) {
+            return 0;
+        }
+        switch (subscription.mMode) {
+            case LATEST:
+                return subscription.mLatest.get() != null ? 1 : 0;
+            case LOSSLESS:
+                return subscription.mQueue.size();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Gets the number of snapshots a listener did not receive, because newer ones replaced them.
+     *
+     * @param _listener the listener.
+     * @return the number of dropped snapshots, 0 if the listener is not registered.
+     */
+    public long getDropCount(IPositionUpdateListener _listener) {
+        Subscription subscription = find(_listener);
+        return subscription == null ? 0 : subscription.mDropped.get();
+    }
+
+    /**
+     * Gets the number of times the publisher had to wait because the queue of a lossless listener was full.
+     *
+     * @param _listener the listener.
+     * @return the number of stalls, 0 if the listener is not registered.
+     */
+    public long getStallCount(IPositionUpdateListener _listener) {
+        Subscription subscription = find(_listener);
+        return subscription == null ? 0 : subscription.mStalls.get();
+    }
+
+    /**
+     * Gets the number of pulses run so far.
+     *
+     * @return the number of pulses.
+     */
+    public long getPulseCount() {
+        return mPulses.get();
+    }
+
+    private Subscription find(IPositionUpdateListener _listener) {
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.mListener == _listener) {
+                return subscription;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Subscription holds the queue and counters of one listener.
+     */
+    private static class Subscription {
+        private final IPositionUpdateListener mListener;
+        private final Mode mMode;
+        private final AtomicReference<NMEAInfo> mLatest = new AtomicReference<>();
+        private final BlockingQueue<NMEAInfo> mQueue;
+        private final AtomicLong mDropped = new AtomicLong();
+        private final AtomicLong mStalls = new AtomicLong();
+        private volatile boolean mRemoved = false;
+
+        Subscription(IPositionUpdateListener _listener, Mode _mode, int _capacity) {
+            mListener = _listener;
+            mMode = _mode;
+            mQueue = _mode == Mode.LOSSLESS ? new ArrayBlockingQueue<>(Math.max(1, _capacity)) : null;
+        }
+
+        /**
+         * Delivers the queue of a lossless listener until it was removed and the queue is empty.
+         */
+        void drain() {
+            try {
+                while (!mRemoved || !mQueue.isEmpty()) {
+                    NMEAInfo info = mQueue.poll(1, TimeUnit.SECONDS);
+                    if (info != null) {
+                        deliver(info);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Calls the listener; an exception must not stop the delivery to the other listeners.
+         */
+        void deliver(NMEAInfo _info) {
+            try {
+                mListener.update(_info);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package at.fhooe.sail.ois.gnss;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * NMEADiagnostics collects statistics about the sentences an NMEAParser has processed: the number of lines,
+ * sentences per type, checksum failures, malformed fields and sentences that are too short.
+ * The counters are updated by the parsing thread and can be read from any thread.
+ *
+ * Problems can additionally be reported to a log sink. Only every n-th problem of each kind is reported,
+ * and the messages are handed over through a bounded queue to a background thread, so a slow sink such as the
+ * console never slows down parsing; messages that do not fit into the queue are dropped and counted.
+ */
+public class NMEADiagnostics {
+
+    /** Sentence types that are counted individually; all others are counted as "other". */
+    public static final String[] SENTENCE_TYPES = {"GGA", "GSA", "GSV", "RMC", "VTG", "GLL", "ZDA", "GNS", "DTM", "TXT"};
+    /** Capacity of the queue between the parser and the log sink. */
+    public static final int LOG_QUEUE_SIZE = 256;
+
+    private static final int[] PACKED_TYPES = new int[SENTENCE_TYPES.length];
+    private static final int OTHER = SENTENCE_TYPES.length;
+
+    static {
+        for (int i = 0; i < SENTENCE_TYPES.length; i++) {
+            PACKED_TYPES[i] = NMEATokenizer.pack(SENTENCE_TYPES[i]);
+        }
+    }
+
+    private final AtomicLongArray mSentences = new AtomicLongArray(SENTENCE_TYPES.length + 1);
+    private final AtomicLong mLines = new AtomicLong();
+    private final AtomicLong mChecksumFailures = new AtomicLong();
+    private final AtomicLong mMissingChecksums = new AtomicLong();
+    private final AtomicLong mMalformedFields = new AtomicLong();
+    private final AtomicLong mShortSentences = new AtomicLong();
+    private final AtomicLong mDroppedMessages = new AtomicLong();
+
+    private volatile BlockingQueue<String> mLogQueue;
+    private volatile int mSampleInterval = 1;
+
+    /**
+     * Reports log messages to a sink on a background daemon thread. Replaces any previous sink.
+     *
+     * @param _sink receives the messages, e.g. {@code System.err::println}; null disables logging.
+     * @param _sampleInterval report only every n-th problem of each kind; 1 reports all of them.
+     */
+    public synchronized void setLogSink(Consumer<String> _sink, int _sampleInterval) {
+        mSampleInterval = Math.max(1, _sampleInterval);
+        mLogQueue = null;
+        if (_sink == null) {
+            return;
+        }
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(LOG_QUEUE_SIZE);
+        Thread writer = new Thread(() -> {
+            try {
+                // runs until a new sink replaces this queue
+                while (mLogQueue == queue || !queue.isEmpty()) {
+                    String message = queue.poll(1, TimeUnit.SECONDS);
+                    if (message != null) {
+                        _sink.accept(message);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "NMEADiagnostics-Log");
+        writer.setDaemon(true);
+        mLogQueue = queue;
+        writer.start();
+    }
+
+    /**
+     * Counts a line read from the source.
+     */
+    public void lineRead() {
+        mLines.incrementAndGet();
+    }
+
+    /**
+     * Counts a sentence with a valid checksum.
+     *
+     * @param _type the sentence type packed by {@link NMEATokenizer#pack(CharSequence)}, see {@link NMEATokenizer#getSentenceType()}.
+     */
+    public void sentence(int _type) {
+        int index = OTHER;
+        for (int i = 0; i < PACKED_TYPES.length; i++) {
+            if (PACKED_TYPES[i] == _type) {
+                index = i;
+                break;
+            }
+        }
+        mSentences.incrementAndGet(index);
+    }
+
+    /**
+     * Counts a sentence whose checksum does not match its content.
+     *
+     * @param _line the sentence.
+     */
+    public void checksumFailure(CharSequence _line) {
+        log(mChecksumFailures.incrementAndGet(), 1, "Invalid checksum: ", _line);
+    }
+
+    /**
+     * Counts a line without a checksum.
+     *
+     * @param _line the line.
+     */
+    public void missingChecksum(CharSequence _line) {
+        log(mMissingChecksums.incrementAndGet(), 1, "No checksum: ", _line);
+    }
+
+    /**
+     * Counts the fields of a sentence that could not be parsed.
+     *
+     * @param _count the number of malformed fields, nothing is counted if it is 0.
+     * @param _line the sentence.
+     */
+    public void malformedFields(int _count, CharSequence _line) {
+        if (_count > 0) {
+            log(mMalformedFields.addAndGet(_count), _count, "Malformed fields: ", _line);
+        }
+    }
+
+    /**
+     * Counts a sentence with fewer fields than its type requires.
+     *
+     * @param _line the sentence.
+     */
+    public void shortSentence(CharSequence _line) {
+        log(mShortSentences.incrementAndGet(), 1, "Sentence too short: ", _line);
+    }
+
+    /**
+     * Hands a message over to the log sink if logging is enabled and the counter crossed a multiple of
+     * the sample interval. The message is only built in that case.
+     */
+    private void log(long _count, int _added, String _prefix, CharSequence _line) {
+        BlockingQueue<String> queue = mLogQueue;
+        int interval = mSampleInterval;
+        if (queue == null || Math.floorDiv(_count - 1, interval) == Math.floorDiv(_count - 1 - _added, interval)) {
+            return;
+        }
+        if (!queue.offer(_prefix + _line)) {
+            mDroppedMessages.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of lines read.
+     *
+     * @return the number of lines.
+     */
+    public long getLineCount() {
+        return mLines.get();
+    }
+
+    /**
+     * Gets the number of valid sentences of a type.
+     *
+     * @param _type the sentence type, e.g. "GGA", or "other" for all types not in {@link #SENTENCE_TYPES}.
+     * @return the number of sentences.
+     */
+    public long getSentenceCount(String _type) {
+        for (int i = 0; i < SENTENCE_TYPES.length; i++) {
+            if (SENTENCE_TYPES[i].equals(_type)) {
+                return mSentences.get(i);
+            }
+        }
+        return "other".equals(_type) ? mSentences.get(OTHER) : 0;
+    }
+
+    /**
+     * Gets the number of sentences with an invalid checksum.
+     *
+     * @return the number of checksum failures.
+     */
+    public long getChecksumFailureCount() {
+        return mChecksumFailures.get();
+    }
+
+    /**
+     * Gets the number of lines without a checksum.
+     *
+     * @return the number of lines without a checksum.
+     */
+    public long getMissingChecksumCount() {
+        return mMissingChecksums.get();
+    }
+
+    /**
+     * Gets the number of fields that could not be parsed.
+     *
+     * @return the number of malformed fields.
+     */
+    public long getMalformedFieldCount() {
+        return mMalformedFields.get();
+    }
+
+    /**
+     * Gets the number of sentences that had too few fields.
+     *
+     * @return the number of short sentences.
+     */
+    public long getShortSentenceCount() {
+        return mShortSentences.get();
+    }
+
+    /**
+     * Gets the number of log messages dropped because the log sink could not keep up.
+     *
+     * @return the number of dropped messages.
+     */
+    public long getDroppedMessageCount() {
+        return mDroppedMessages.get();
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        for (int i = 0; i < mSentences.length(); i++) {
+            mSentences.set(i, 0);
+        }
+        mLines.set(0);
+        mChecksumFailures.set(0);
+        mMissingChecksums.set(0);
+        mMalformedFields.set(0);
+        mShortSentences.set(0);
+        mDroppedMessages.set(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("NMEADiagnostics[lines=").append(getLineCount());
+        for (int i = 0; i < SENTENCE_TYPES.length; i++) {
+            if (mSentences.get(i) > 0) {
+                sb.append(", ").append(SENTENCE_TYPES[i]).append('=').append(mSentences.get(i));
+            }
+        }
+        return sb.append(", other=").append(mSentences.get(OTHER))
+                .append(", checksumFailures=").append(getChecksumFailureCount())
+                .append(", missingChecksums=").append(getMissingChecksumCount())
+                .append(", malformedFields=").append(getMalformedFieldCount())
+                .append(", shortSentences=").append(getShortSentenceCount())
+                .append(", droppedMessages=").append(getDroppedMessageCount())
+                .append(']').toString();
+    }
+}
@@ -1,36 +1,198 @@
 package at.fhooe.sail.ois.gnss;
-import lombok.Data;
+import lombok.Getter;
+import lombok.ToString;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Vector;
 
 /**
- * NMEAInfo is a data class that holds information parsed from NMEA GNSS data sentences.
+ * NMEAInfo is an immutable data class that holds information parsed from the NMEA GNSS data sentences of one epoch.
  * It contains various fields such as latitude, longitude, satellite count, dilution of precision (DOP) values,
- * and a list of satellite information.
+ * speed and course over ground, the UTC timestamp, and a list of satellite information.
+ * Instances are created with a {@link Builder}, so they can be handed to other threads without copying.
  */
-@Data
+@Getter
+@ToString
 public class NMEAInfo {
-    private double mLat;
-    private double mLon;
-    private String mTime;
-    private int mSatelliteCount;
-    private double mPDOP;
-    private double mHDOP;
-    private double mVDOP;
-    private String mFixQuality;
-    private double mHeight;
-    private String mType;
-    private Vector<SatelliteInfo> mSatellites = new Vector<>();
-    private List<Integer> mUsedSatellites = new ArrayList<>();
+    private final double mLat;
+    private final double mLon;
+    /** UTC time of day of the fix in milliseconds since midnight, -1 if the GGA had none. */
+    private final int mTimeOfDay;
+    private final int mSatelliteCount;
+    private final double mPDOP;
+    private final double mHDOP;
+    private final double mVDOP;
+    /** GGA fix quality, 0 if there is no fix. */
+    private final int mFixQuality;
+    private final double mHeight;
+    /** Talker of the GGA sentence packed by {@link NMEATokenizer#pack(CharSequence)}, e.g. {@code pack("GP")}. */
+    private final int mTalker;
+    /** Speed over ground in m/s, from RMC or VTG. */
+    private final double mSpeed;
+    /** Course over ground in degrees from true north, NaN if unknown (e.g. when standing still). */
+    private final double mCourse;
+    /** UTC time of the fix in milliseconds since 1970-01-01, 0 if no RMC date was received yet. */
+    private final long mTimestamp;
+    private final List<SatelliteInfo> mSatellites;
+    private final List<Integer> mUsedSatellites;
+
+    private NMEAInfo(Builder _builder) {
+        mLat = _builder.mLat;
+        mLon = _builder.mLon;
+        mTimeOfDay = _builder.mTimeOfDay;
+        mSatelliteCount = _builder.mSatelliteCount;
+        mPDOP = _builder.mPDOP;
+        mHDOP = _builder.mHDOP;
+        mVDOP = _builder.mVDOP;
+        mFixQuality = _builder.mFixQuality;
+        mHeight = _builder.mHeight;
+        mTalker = _builder.mTalker;
+        mSpeed = _builder.mSpeed;
+        mCourse = _builder.mCourse;
+        mTimestamp = _builder.mTimestamp;
+        mSatellites = Collections.unmodifiableList(new ArrayList<>(_builder.mSatellites));
+        mUsedSatellites = Collections.unmodifiableList(new ArrayList<>(_builder.mUsedSatellites));
+    }
 
     /**
-     * Adds a SatelliteInfo object to the list of satellites.
-     *
-     * @param satelliteInfo The SatelliteInfo object to be added.
+     * Builder collects the values of an NMEAInfo. It is not thread-safe and can be reused after {@link #build()}.
      */
-    public void addSatellite(SatelliteInfo satelliteInfo) {
-        mSatellites.add(satelliteInfo);
+    public static class Builder {
+        private double mLat;
+        private double mLon;
+        private int mTimeOfDay = -1;
+        private int mSatelliteCount;
+        private double mPDOP;
+        private double mHDOP;
+        private double mVDOP;
+        private int mFixQuality;
+        private double mHeight;
+        private int mTalker;
+        private double mSpeed;
+        private double mCourse = Double.NaN;
+        private long mTimestamp;
+        private final List<SatelliteInfo> mSatellites = new ArrayList<>();
+        private final List<Integer> mUsedSatellites = new ArrayList<>();
+
+        public Builder lat(double _lat) {
+            mLat = _lat;
+            return this;
+        }
+
+        public Builder lon(double _lon) {
+            mLon = _lon;
+            return this;
+        }
+
+        public Builder timeOfDay(int _timeOfDay) {
+            mTimeOfDay = _timeOfDay;
+            return this;
+        }
+
+        public Builder satelliteCount(int _satelliteCount) {
+            mSatelliteCount = _satelliteCount;
+            return this;
+        }
+
+        public Builder pdop(double _pdop) {
+            mPDOP = _pdop;
+            return this;
+        }
+
+        public Builder hdop(double _hdop) {
+            mHDOP = _hdop;
+            return this;
+        }
+
+        public Builder vdop(double _vdop) {
+            mVDOP = _vdop;
+            return this;
+        }
+
+        public Builder fixQuality(int _fixQuality) {
+            mFixQuality = _fixQuality;
+            return this;
+        }
+
+        public Builder height(double _height) {
+            mHeight = _height;
+            return this;
+        }
+
+        public Builder talker(int _talker) {
+            mTalker = _talker;
+            return this;
+        }
+
+        public Builder speed(double _speed) {
+            mSpeed = _speed;
+            return this;
+        }
+
+        public Builder course(double _course) {
+            mCourse = _course;
+            return this;
+        }
+
+        public Builder timestamp(long _timestamp) {
+            mTimestamp = _timestamp;
+            return this;
+        }
+
+        /**
+         * Adds a satellite to the list of satellites.
+         *
+         * @param _satellite the satellite to add.
+         * @return this builder.
+         */
+        public Builder addSatellite(SatelliteInfo _satellite) {
+            mSatellites.add(_satellite);
+            return this;
+        }
+
+        /**
+         * Adds the id of a satellite used in the solution.
+         *
+         * @param _id the satellite id.
+         * @return this builder.
+         */
+        public Builder addUsedSatellite(int _id) {
+            mUsedSatellites.add(_id);
+            return this;
+        }
+
+        /**
+         * Creates an NMEAInfo of the current values.
+         *
+         * @return the new NMEAInfo.
+         */
+        public NMEAInfo build() {
+            return new NMEAInfo(this);
+        }
+
+        /**
+         * Resets all values to their defaults, so the builder can collect the next epoch.
+         *
+         * @return this builder.
+         */
+        public Builder clear() {
+            mLat = 0;
+            mLon = 0;
+            mTimeOfDay = -1;
+            mSatelliteCount = 0;
+            mPDOP = 0;
+            mHDOP = 0;
+            mVDOP = 0;
+            mFixQuality = 0;
+            mHeight = 0;
+            mTalker = 0;
+            mSpeed = 0;
+            mCourse = Double.NaN;
+            mTimestamp = 0;
+            mSatellites.clear();
+            mUsedSatellites.clear();
+            return this;
+        }
     }
 }
@@ -0,0 +1,251 @@
+package at.fhooe.sail.ois.gnss;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * NMEALogReader is a class that reads a whole NMEA log offline, e.g. to compute track statistics or build indexes.
+ *
+ * Unlike {@link GNSSSimulator}, which decodes the file line by line on one thread, the log is split into chunks
+ * that are parsed in parallel on a ForkJoinPool, directly from the ASCII bytes. Each chunk is read with a positional
+ * read into a buffer that is reused by the following chunks, so only as many buffers exist as chunks are parsed at
+ * the same time, and the bytes are copied once, from the file into the buffer. Every chunk is
+ * parsed together with {@link #OVERLAP} bytes before and after it, so its parser has seen complete epochs before
+ * the first epoch it reports, and can finish its last one. A chunk reports the epochs that are published while
+ * parsing a line that starts within it; as the parser of every chunk has learned the cycle of the receiver in the
+ * overlap before, each epoch is published by the same line as in a sequential parse, so every epoch is reported
+ * exactly once, no matter where the chunk boundaries fall within lines.
+ * As the chunks are disjoint and in file order, their results are merged by concatenating them, which keeps
+ * the epochs in timestamp order without sorting.
+ */
+public class NMEALogReader {
+
+    /** Size of the chunks if none is given. */
+    public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+    /** Bytes parsed before and after a chunk; has to hold a few epochs. */
+    public static final int OVERLAP = 64 << 10;
+
+    private final Path mPath;
+    private final ForkJoinPool mPool;
+    private final int mChunkSize;
+    private final ConcurrentLinkedQueue<byte[]> mBuffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructs an NMEALogReader that parses on the common pool.
+     *
+     * @param _path the log file.
+     */
+    public NMEALogReader(Path _path) {
+        this(_path, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs an NMEALogReader.
+     *
+     * @param _path the log file.
+     * @param _pool the pool that parses the chunks.
+     * @param _chunkSize the number of bytes per chunk.
+     */
+    public NMEALogReader(Path _path, ForkJoinPool _pool, int _chunkSize) {
+        if (_chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + _chunkSize);
+        }
+        mPath = _path;
+        mPool = _pool;
+        mChunkSize = _chunkSize;
+    }
+
+    /**
+     * Reads all epochs of the log into a list.
+     *
+     * @return the epochs in the order of the log.
+     * @throws IOException if the log cannot be read.
+     */
+    public List<NMEAInfo> readAll() throws IOException {
+        List<NMEAInfo> epochs = new ArrayList<>();
+        read(epochs::add);
+        return epochs;
+    }
+
+    /**
+     * Reads all epochs of the log and passes them to a consumer in the order of the log, on the calling thread.
+     * Only a few chunks ahead of the consumer are parsed, so the memory needed does not depend on the size of the log.
+     *
+     * @param _consumer receives the epochs.
+     * @return the number of epochs.
+     * @throws IOException if the log cannot be read.
+     */
+    public long read(Consumer<NMEAInfo> _consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(mPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunks = (size + mChunkSize - 1) / mChunkSize;
+            int window = Math.max(2, mPool.getParallelism() * 2);
+            Deque<ForkJoinTask<List<NMEAInfo>>> pending = new ArrayDeque<>();
+            long count = 0;
+            for (long i = 0; i < chunks; i++) {
+                long start = i * mChunkSize;
+                long end = Math.min(size, start + mChunkSize);
+                pending.add(mPool.submit(() -> parseChunk(channel, size, start, end)));
+                if (pending.size() >= window) {
+                    count += deliver(pending.poll(), _consumer);
+                }
+            }
+            while (!pending.isEmpty()) {
+                count += deliver(pending.poll(), _consumer);
+            }
+            return count;
+        } finally {
+            mBuffers.clear();
+        }
+    }
+
+    /**
+     * Parses a chunk of the log.
+     *
+     * @param _channel the log.
+     * @param _size the size of the log.
+     * @param _start the first byte of the chunk.
+     * @param _end the byte after the chunk.
+     * @return the epochs published by lines that start within the chunk.
+     * @throws IOException if the chunk cannot be read.
+     */
+    private List<NMEAInfo> parseChunk(FileChannel _channel, long _size, long _start, long _end) throws IOException {
+        long from = Math.max(0, _start - OVERLAP);
+        long to = Math.min(_size, _end + OVERLAP);
+        int length = (int) (to - from);
+        byte[] data = mBuffers.poll();
+        if (data == null || data.length < length) {
+            data = new byte[(int) Math.min(_size, mChunkSize + 2L * OVERLAP)];
+        }
+        try {
+            readFully(_channel, data, length, from);
+            Chunk chunk = new Chunk(_start, _end);
+            chunk.parse(data, length, from, to < _size);
+            return chunk.mEpochs;
+        } finally {
+            mBuffers.offer(data);
+        }
+    }
+
+    /**
+     * Reads a range of the log into a buffer. Positional reads do not change the position of the channel,
+     * so the chunks can be read concurrently.
+     */
+    private static void readFully(FileChannel _channel, byte[] _data, int _length, long _position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(_data, 0, _length);
+        while (buffer.hasRemaining()) {
+            if (_channel.read(buffer, _position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at " + (_position + buffer.position()));
+            }
+        }
+    }
+
+    private static int indexOf(byte[] _data, int _length, char _c, int _from) {
+        for (int i = _from; i < _length; i++) {
+            if (_data[i] == _c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Waits for the result of a chunk and passes its epochs to the consumer.
+     *
+     * @return the number of epochs.
+     */
+    private static int deliver(ForkJoinTask<List<NMEAInfo>> _task, Consumer<NMEAInfo> _consumer) throws IOException {
+        List<NMEAInfo> epochs;
+        try {
+            epochs = _task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+        epochs.forEach(_consumer);
+        return epochs.size();
+    }
+
+    /**
+     * Chunk holds the state of parsing one chunk: it keeps the epochs published by lines that start within the chunk.
+     */
+    private static class Chunk implements Consumer<NMEAInfo> {
+        private final long mStart;
+        private final long mEnd;
+        private final List<NMEAInfo> mEpochs = new ArrayList<>();
+        private final NMEAParser mParser = new NMEAParser(this);
+        /** Offset in the log of the line being parsed. */
+        private long mLineOffset = -1;
+
+        Chunk(long _start, long _end) {
+            mStart = _start;
+            mEnd = _end;
+        }
+
+        /**
+         * Parses the lines of the chunk and its overlap.
+         *
+         * @param _data the bytes of the chunk and its overlap.
+         * @param _length the number of bytes.
+         * @param _from the offset of the first byte in the log.
+         * @param _truncated true if the data ends before the end of the log, so its last line may be incomplete.
+         */
+        void parse(byte[] _data, int _length, long _from, boolean _truncated) {
+            int pos = 0;
+            if (_from > 0) {
+                pos = indexOf(_data, _length, '\n', 0) + 1;  // the first line is incomplete
+                if (pos == 0) {
+                    return;
+                }
+            }
+            while (pos < _length) {
+                int lineEnd = indexOf(_data, _length, '\n', pos);
+                if (lineEnd < 0) {
+                    if (_truncated) {
+                        return;  // incomplete line at the end of the overlap
+                    }
+                    lineEnd = _length;
+                }
+                int length = lineEnd - pos;
+                if (length > 0 && _data[lineEnd - 1] == '\r') {
+                    length--;
+                }
+                mLineOffset = _from + pos;
+                if (mLineOffset >= mEnd) {
+                    return;  // the following epochs are published by the next chunk
+                }
+                if (length > 0) {
+                    mParser.parse(_data, pos, length);
+                }
+                pos = lineEnd + 1;
+            }
+            mLineOffset = mEnd - 1;  // the end of the log publishes the last epoch
+            mParser.flush();
+        }
+
+        @Override
+        public void accept(NMEAInfo _info) {
+            if (mLineOffset >= mStart && mLineOffset < mEnd) {
+                mEpochs.add(_info);
+            }
+        }
+    }
+}
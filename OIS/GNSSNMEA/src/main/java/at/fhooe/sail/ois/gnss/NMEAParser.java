@@ -1,255 +1,348 @@
 package at.fhooe.sail.ois.gnss;
 
 import java.io.IOException;
-import java.util.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * NMEAParser is a class that implements the Runnable interface to parse NMEA sentences from a GNSSSimulator.
- * It processes different types of NMEA sentences (GPGGA, GPGSA, GPGSV) and notifies registered listeners
- * of position updates.
+ * It processes GGA, GSA, GSV, RMC and VTG sentences of all talkers (GPS, GLONASS, Galileo, BeiDou, QZSS and
+ * combined), dispatching on the sentence type and tagging satellites with their {@link Constellation}.
+ * Of GLL, GNS and ZDA sentences only the time tag is used, to find the end of the receiver's cycle.
+ *
+ * Every line is scanned once by an {@link NMEATokenizer}, which parses the fields in place. The sentences of
+ * an epoch are collected by an {@link EpochAssembler} into one immutable {@link NMEAInfo}, which a
+ * {@link ListenerDispatcher} hands to the listeners, so a slow listener does not stall parsing.
+ * Nothing is written to the console while parsing; problems are counted by the {@link NMEADiagnostics}.
  */
 public class NMEAParser implements Runnable {
 
+    private static final int GGA = 'G' << 16 | 'G' << 8 | 'A';
+    private static final int GSA = 'G' << 16 | 'S' << 8 | 'A';
+    private static final int GSV = 'G' << 16 | 'S' << 8 | 'V';
+    private static final int RMC = 'R' << 16 | 'M' << 8 | 'C';
+    private static final int VTG = 'V' << 16 | 'T' << 8 | 'G';
+    private static final int GLL = 'G' << 16 | 'L' << 8 | 'L';
+    private static final int GNS = 'G' << 16 | 'N' << 8 | 'S';
+    private static final int ZDA = 'Z' << 16 | 'D' << 8 | 'A';
+    private static final double KNOTS_TO_MPS = 1852.0 / 3600.0;
+    private static final double KMH_TO_MPS = 1 / 3.6;
+
     private GNSSSimulator mSimulator;
     private Thread mParsingThread;
-    private Vector<IPositionUpdateListener> mListeners = new Vector<>();
-    private NMEAInfo mCurrentInfo = new NMEAInfo();
+    private final ListenerDispatcher mDispatcher;
+    private final NMEATokenizer mTokenizer = new NMEATokenizer();
+    private final NMEADiagnostics mDiagnostics = new NMEADiagnostics();
+    private final EpochAssembler mAssembler;
+    private final ByteLine mByteLine = new ByteLine();
 
     /**
-     * Constructs an NMEAParser with the specified GNSSSimulator.
+     * Constructs an NMEAParser with the specified GNSSSimulator. The pulse executor has to be given explicitly:
+     * views change the scene graph in their update method, so they need {@code Platform::runLater}.
      *
      * @param simulator The GNSSSimulator to read NMEA sentences from.
+     * @param _pulseExecutor serves all latest-wins listeners, e.g. {@code Platform::runLater} for views.
      */
-    public NMEAParser(GNSSSimulator simulator) {
+    public NMEAParser(GNSSSimulator simulator, Executor _pulseExecutor) {
         this.mSimulator = simulator;
+        mDispatcher = new ListenerDispatcher(_pulseExecutor);
+        mAssembler = new EpochAssembler(mDispatcher::publish);
+    }
+
+    /**
+     * Constructs an NMEAParser without a simulator, which parses the lines handed to {@link #parse(CharSequence)}
+     * or {@link #parse(byte[], int, int)} on the calling thread and passes every epoch to a consumer instead of
+     * the listeners, e.g. for offline ingest.
+     *
+     * @param _sink receives one snapshot per epoch.
+     */
+    public NMEAParser(Consumer<NMEAInfo> _sink) {
+        mDispatcher = new ListenerDispatcher(Runnable::run);
+        mAssembler = new EpochAssembler(_sink);
     }
 
     /**
      * The main run method of the parser thread. It reads lines from the GNSSSimulator,
-     * processes them based on their type, and notifies listeners of updates.
+     * processes them based on their type, and notifies listeners once per complete epoch.
      */
     @Override
     public void run() {
         try {
             String line;
             while ((line = mSimulator.readLine()) != null) {
-                boolean updated = false;
-
-                if (validateChecksum(line)) {
-                    if (line.startsWith("$GPGGA")) {
-                        mCurrentInfo = new NMEAInfo();  // Reset currentInfo for each new GGA message
-                        processGPGGA(line);
-                        updated = true;
-                    } else if (line.startsWith("$GPGSA")) {
-                        processGPGSA(line);
-                        updated = true;
-                    } else if (line.startsWith("$GPGSV")) {
-                        processGPGSV(line);
-                        updated = true;
-                    }
-                }
-
-                if (updated) {
-                    notifyListeners();
-                }
+                parse(line);
             }
+            flush();
+            System.out.println(mDiagnostics);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Processes a GPGGA sentence and updates the current NMEAInfo object with the extracted data.
+     * Parses one line.
      *
-     * @param line The GPGGA sentence to process.
+     * @param _line the line, starting with '$'.
+     * @return the type of the sentence packed by {@link NMEATokenizer#pack(CharSequence)}, or 0 if its checksum is invalid.
      */
-    private void processGPGGA(String line) {
-        String[] split = line.split(",");
-        if (split.length < 10) {
-            System.err.println("GGA line too short, skipping: " + line);
-            return;
-        }
-
-        String time = split[1];
-        String latitude = split[2];
-        String latitudeDirection = split[3];
-        String longitude = split[4];
-        String longitudeDirection = split[5];
-        String fixQuality = !split[6].isEmpty() ? split[6] : "0";
-        int satellites = !split[7].isEmpty() ? Integer.parseInt(split[7]) : 0;
-        double hdop = !split[8].isEmpty() ? Double.parseDouble(split[8]) : 0.0;
-        double height = !split[9].isEmpty() ? Double.parseDouble(split[9]) : 0.0;
-
-        double latitudeDecimal = convertToDecimalDegrees(latitude, latitudeDirection, true);
-        double longitudeDecimal = convertToDecimalDegrees(longitude, longitudeDirection, false);
-
-        mCurrentInfo.setMTime(time);
-        mCurrentInfo.setMLat(latitudeDecimal);
-        mCurrentInfo.setMLon(longitudeDecimal);
-        mCurrentInfo.setMFixQuality(fixQuality);
-        mCurrentInfo.setMSatelliteCount(satellites);
-        mCurrentInfo.setMHDOP(hdop);
-        mCurrentInfo.setMHeight(height);
-        mCurrentInfo.setMType("GPGGA");
-
-        System.out.println(mCurrentInfo);
+    public int parse(CharSequence _line) {
+        mDiagnostics.lineRead();
+        return process(mTokenizer.tokenize(_line), _line);
     }
 
     /**
-     * Processes a GPGSA sentence and updates the current NMEAInfo object with the extracted data.
+     * Parses one line given as ASCII bytes, without decoding it to characters.
      *
-     * @param line The GPGSA sentence to process.
+     * @param _data the buffer containing the line.
+     * @param _offset the position of the line within the buffer.
+     * @param _length the length of the line.
+     * @return the type of the sentence packed by {@link NMEATokenizer#pack(CharSequence)}, or 0 if its checksum is invalid.
+     */
+    public int parse(byte[] _data, int _offset, int _length) {
+        mDiagnostics.lineRead();
+        mByteLine.set(_data, _offset, _length);
+        return process(mTokenizer.tokenize(_data, _offset, _length), mByteLine);
+    }
+
+    /**
+     * Publishes the open epoch, e.g. at the end of the input.
      */
-    private void processGPGSA(String line) {
-        String[] split = line.split(",");
-        if (split.length < 18) {
-            System.err.println("GSA line too short, skipping: " + line);
-            return;
+    public void flush() {
+        mAssembler.flush();
+    }
+
+    /**
+     * Counts a tokenized line and processes it based on its type.
+     */
+    private int process(boolean _valid, CharSequence line) {
+        if (!validateChecksum(_valid, line)) {
+            return 0;
+        }
+        boolean processed = false;
+        switch (mTokenizer.getSentenceType()) {
+            case GGA:
+                processed = processGGA(line);
+                break;
+            case GSA:
+                processed = processGSA(line);
+                break;
+            case GSV:
+                processed = processGSV(line);
+                break;
+            case RMC:
+                processed = processRMC(line);
+                break;
+            case VTG:
+                processed = processVTG(line);
+                break;
+            case GLL:
+                processed = processTimeTag(line, 5);
+                break;
+            case GNS:
+            case ZDA:
+                processed = processTimeTag(line, 1);
+                break;
+            default:
+                break;
         }
+        mAssembler.endSentence();
 
-        List<Integer> usedSatellites = new ArrayList<>();
-        for (int i = 3; i <= 14; i++) {
-            if (!split[i].isEmpty()) {
-                usedSatellites.add(Integer.parseInt(split[i]));
-            }
+        if (processed) {
+            mDiagnostics.malformedFields(mTokenizer.getMalformedCount(), line);
         }
+        return mTokenizer.getSentenceType();
+    }
 
-        double pdop = !split[15].isEmpty() ? Double.parseDouble(split[15]) : 0.0;
-        double hdop = !split[16].isEmpty() ? Double.parseDouble(split[16]) : 0.0;
-        double vdop = !split[17].split("\\*")[0].isEmpty() ? Double.parseDouble(split[17].split("\\*")[0]) : 0.0;
+    /**
+     * Processes a GGA sentence of any talker and sets the position of its epoch.
+     * The sentence has to be tokenized already.
+     *
+     * @param line The GGA sentence to process.
+     * @return true if the sentence was processed.
+     */
+    private boolean processGGA(CharSequence line) {
+        NMEATokenizer t = mTokenizer;
+        if (t.getFieldCount() < 10) {
+            mDiagnostics.shortSentence(line);
+            return false;
+        }
 
-        mCurrentInfo.setMPDOP(pdop);
-        mCurrentInfo.setMHDOP(hdop);
-        mCurrentInfo.setMVDOP(vdop);
-        mCurrentInfo.setMUsedSatellites(usedSatellites);
-        mCurrentInfo.setMType("GPGSA");
-        System.out.println(mCurrentInfo);
+        int timeOfDay = t.getTimeOfDay(1);
+        mAssembler.position(GGA, timeOfDay)
+                .timeOfDay(timeOfDay)
+                .lat(t.getCoordinate(2, 3, 0.0))
+                .lon(t.getCoordinate(4, 5, 0.0))
+                .fixQuality(t.getInt(6, 0))
+                .satelliteCount(t.getInt(7, 0))
+                .hdop(t.getDouble(8, 0.0))
+                .height(t.getDouble(9, 0.0))
+                .talker(t.getTalker());
+        return true;
     }
 
     /**
-     * Processes a GPGSV sentence and updates the current NMEAInfo object with the extracted data.
+     * Processes an RMC sentence of any talker: it provides the date, speed and course over ground of its epoch.
+     * The sentence has to be tokenized already.
      *
-     * @param line The GPGSV sentence to process.
+     * @param line The RMC sentence to process.
+     * @return true if the sentence was processed.
      */
-    private void processGPGSV(String line) {
-        String[] split = line.split(",");
-        if (split.length < 4) {
-            System.err.println("GSV line too short, skipping: " + line);
-            return;
+    private boolean processRMC(CharSequence line) {
+        NMEATokenizer t = mTokenizer;
+        if (t.getFieldCount() < 10) {
+            mDiagnostics.shortSentence(line);
+            return false;
         }
 
-        int satellitesInView = Integer.parseInt(split[3]);
-        mCurrentInfo.setMSatelliteCount(satellitesInView);
-
-        for (int i = 4; i + 3 < split.length; i += 4) {
-            try {
-                String satelliteIdStr = split[i];
-                String elevationStr = split[i + 1];
-                String azimuthStr = split[i + 2];
-                String snrStr = split[i + 3].contains("*") ? split[i + 3].split("\\*")[0] : split[i + 3];
-
-                SatelliteInfo satelliteInfo = new SatelliteInfo();
-
-                if (!satelliteIdStr.isEmpty()) {
-                    satelliteInfo.setMId(Integer.parseInt(satelliteIdStr));
-                }
-
-                if (!elevationStr.isEmpty()) {
-                    satelliteInfo.setMVerticalAngle(Double.parseDouble(elevationStr));
-                } else {
-                    satelliteInfo.setMVerticalAngle(0); // Set default value
-                }
-
-                if (!azimuthStr.isEmpty()) {
-                    satelliteInfo.setMHorizontalAngle(Double.parseDouble(azimuthStr));
-                } else {
-                    satelliteInfo.setMHorizontalAngle(0); // Set default value
-                }
-
-                if (!snrStr.isEmpty()) {
-                    satelliteInfo.setMSNR(Double.parseDouble(snrStr));
-                } else {
-                    satelliteInfo.setMSNR(0); // Set default value
-                }
-
-                satelliteInfo.setMIsUsed(mCurrentInfo.getMUsedSatellites().contains(satelliteInfo.getMId()));
-                satelliteInfo.setMType("GPGSV");
-                mCurrentInfo.addSatellite(satelliteInfo);
-                System.out.println(satelliteInfo);
-
-            } catch (NumberFormatException e) {
-                System.err.println("Skipping invalid GSV data: " + line);
-            }
+        // tagged first: a new time tag publishes the previous epoch, which must keep its own date
+        NMEAInfo.Builder epoch = mAssembler.tag(RMC, t.getTimeOfDay(1));
+        long day = t.getEpochDay(9);
+        if (day >= 0) {
+            mAssembler.date(day);
         }
+        if (t.getChar(2, 'V') == 'A') {  // otherwise no valid fix, only the date is used
+            epoch.speed(t.getDouble(7, 0.0) * KNOTS_TO_MPS).course(t.getDouble(8, Double.NaN));
+        }
+        return true;
     }
 
     /**
-     * Validates the checksum of an NMEA sentence.
+     * Processes a VTG sentence of any talker: it provides speed and course over ground, but no time tag,
+     * so the values are applied with the next time tag. The sentence has to be tokenized already.
      *
-     * @param line the NMEA sentence to validate
-     * @return true if the checksum is valid, false otherwise
+     * @param line The VTG sentence to process.
+     * @return true if the sentence was processed.
      */
-    private boolean validateChecksum(String line) {
-        int checksumIndex = line.indexOf("*");
-        if (checksumIndex != -1) {
-            String checksum = line.substring(checksumIndex + 1);
-            line = line.substring(1, checksumIndex);
-            int checksumValue = Integer.parseInt(checksum, 16);
-            int computedChecksum = 0;
-            for (int i = 0; i < line.length(); i++) {
-                computedChecksum ^= line.charAt(i);
-            }
-            if (computedChecksum == checksumValue) {
-                System.out.println("Valid checksum: " + line);
-                return true;
-            } else {
-                System.out.println("Invalid checksum: " + line);
-                return false;
-            }
-        } else {
-            System.out.println("No checksum: " + line);
+    private boolean processVTG(CharSequence line) {
+        NMEATokenizer t = mTokenizer;
+        if (t.getFieldCount() < 8) {
+            mDiagnostics.shortSentence(line);
             return false;
         }
+
+        double speed = t.isEmpty(7) ? t.getDouble(5, 0.0) * KNOTS_TO_MPS : t.getDouble(7, 0.0) * KMH_TO_MPS;
+        mAssembler.motion(speed, t.getDouble(1, Double.NaN));
+        return true;
     }
 
     /**
-     * Converts a coordinate in NMEA format to decimal degrees.
+     * Processes a GSA sentence of any talker: it provides the used satellites and the DOP values of the open epoch.
+     * A receiver tracking several constellations sends one GSA per constellation, so the used satellites
+     * are accumulated. The sentence has to be tokenized already.
      *
-     * @param coordinate The coordinate in NMEA format.
-     * @param direction The direction (N, S, E, W) of the coordinate.
-     * @param isLatitude True if the coordinate is a latitude, false if it is a longitude.
-     * @return The coordinate in decimal degrees.
+     * @param line The GSA sentence to process.
+     * @return true if the sentence was processed.
      */
-    private double convertToDecimalDegrees(String coordinate, String direction, boolean isLatitude) {
-        if (coordinate.isEmpty() || direction.isEmpty()) {
-            return 0.0;
+    private boolean processGSA(CharSequence line) {
+        NMEATokenizer t = mTokenizer;
+        if (t.getFieldCount() < 18) {
+            mDiagnostics.shortSentence(line);
+            return false;
         }
 
-        try {
-            double degrees;
-            double minutes;
-
-            if (isLatitude) {
-                degrees = Double.parseDouble(coordinate.substring(0, 2));
-                minutes = Double.parseDouble(coordinate.substring(2));
-            } else {
-                degrees = Double.parseDouble(coordinate.substring(0, 3));
-                minutes = Double.parseDouble(coordinate.substring(3));
+        // NMEA 4.10 names the constellation in field 18, older receivers only in the talker
+        Constellation constellation = Constellation.forSystemId(t.getInt(18, -1));
+        if (constellation == Constellation.UNKNOWN) {
+            constellation = Constellation.forTalker(t.getTalker());
+        }
+        for (int i = 3; i <= 14; i++) {
+            int id = t.getInt(i, -1);
+            if (id >= 0) {
+                mAssembler.used(constellation, id);
             }
+        }
+
+        mAssembler.dop(t.getDouble(15, 0.0), t.getDouble(16, 0.0), t.getDouble(17, 0.0));
+        return true;
+    }
+
+    /**
+     * Processes a sentence of which only the time tag is used, e.g. GLL, GNS or ZDA, so the epoch is
+     * published if the sentence ends the cycle of the receiver. The sentence has to be tokenized already.
+     *
+     * @param line The sentence to process.
+     * @param _field the index of the field holding the time.
+     * @return true if the sentence was processed.
+     */
+    private boolean processTimeTag(CharSequence line, int _field) {
+        NMEATokenizer t = mTokenizer;
+        if (t.getFieldCount() <= _field) {
+            mDiagnostics.shortSentence(line);
+            return false;
+        }
+
+        int timeOfDay = t.getTimeOfDay(_field);
+        if (timeOfDay >= 0) {
+            mAssembler.tag(t.getSentenceType(), timeOfDay);
+        }
+        return true;
+    }
 
-            double decimal = degrees + (minutes / 60.0);
+    /**
+     * Processes a part of a GSV group of any talker and adds its satellites, tagged with the constellation of the
+     * talker, to the open epoch. The satellites in view are summed up over all constellations.
+     * The sentence has to be tokenized already.
+     *
+     * @param line The GSV sentence to process.
+     * @return true if the sentence was processed.
+     */
+    private boolean processGSV(CharSequence line) {
+        NMEATokenizer t = mTokenizer;
+        if (t.getFieldCount() < 4) {
+            mDiagnostics.shortSentence(line);
+            return false;
+        }
 
-            if (direction.equals("S") || direction.equals("W")) {
-                decimal = -decimal;
+        Constellation constellation = Constellation.forTalker(t.getTalker());
+        if (!mAssembler.beginSatellites(constellation, t.getTalker(), t.getInt(1, 1), t.getInt(2, 1), t.getInt(3, 0))) {
+            return true;
+        }
+        for (int i = 4; i + 3 < t.getFieldCount(); i += 4) {
+            int malformed = t.getMalformedCount();
+            int id = t.getInt(i, 0);
+            double verticalAngle = t.getDouble(i + 1, 0);
+            double horizontalAngle = t.getDouble(i + 2, 0);
+            double snr = t.getDouble(i + 3, 0);
+            if (t.getMalformedCount() != malformed) {
+                continue;  // counted with the malformed fields of the sentence
             }
+            mAssembler.addSatellite(id, verticalAngle, horizontalAngle, snr);
+        }
+        mAssembler.endSatellites();
+        return true;
+    }
 
-            return decimal;
-        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
-            System.err.println("Error: " + coordinate + " Direction: " + direction);
-            return 0.0;
+    /**
+     * Counts a tokenized NMEA sentence by the result of its checksum validation.
+     *
+     * @param _valid the result of the tokenizer.
+     * @param line the NMEA sentence to validate
+     * @return true if the checksum is valid, false otherwise
+     */
+    private boolean validateChecksum(boolean _valid, CharSequence line) {
+        if (_valid) {
+            mDiagnostics.sentence(mTokenizer.getSentenceType());
+            return true;
+        } else if (mTokenizer.hasChecksum()) {
+            mDiagnostics.checksumFailure(line);
+            return false;
+        } else {
+            mDiagnostics.missingChecksum(line);
+            return false;
         }
     }
 
+    /**
+     * Gets the diagnostics of this parser, e.g. to enable logging of problems with
+     * {@link NMEADiagnostics#setLogSink(java.util.function.Consumer, int)}.
+     *
+     * @return the diagnostics.
+     */
+    public NMEADiagnostics getDiagnostics() {
+        return mDiagnostics;
+    }
+
     /**
      * Starts the parser thread to begin reading and processing NMEA sentences.
      */
@@ -259,20 +352,75 @@ public class NMEAParser implements Runnable {
     }
 
     /**
-     * Adds a listener to be notified of position updates.
+     * Adds a listener to be notified of position updates. It only receives the newest snapshot on the pulse executor,
+     * which suits views.
      *
      * @param listener The listener to add.
      */
     public void addPositionUpdateListener(IPositionUpdateListener listener) {
-        mListeners.add(listener);
+        mDispatcher.addListener(listener, ListenerDispatcher.Mode.LATEST);
     }
 
     /**
-     * Notifies all registered listeners of a position update.
+     * Adds a listener to be notified of position updates.
+     *
+     * @param _listener The listener to add.
+     * @param _mode how snapshots are delivered, {@link ListenerDispatcher.Mode#LOSSLESS} e.g. for recorders.
+     */
+    public void addPositionUpdateListener(IPositionUpdateListener _listener, ListenerDispatcher.Mode _mode) {
+        mDispatcher.addListener(_listener, _mode);
+    }
+
+    /**
+     * Gets the dispatcher that delivers the snapshots to the listeners, e.g. to read its queue depths and drop counts.
+     *
+     * @return the dispatcher.
+     */
+    public ListenerDispatcher getDispatcher() {
+        return mDispatcher;
+    }
+
+    /**
+     * Gets the epoch assembler of this parser, e.g. to read its statistics.
+     *
+     * @return the epoch assembler.
      */
-    private void notifyListeners() {
-        for (IPositionUpdateListener listener : mListeners) {
-            listener.update(mCurrentInfo);
+    public EpochAssembler getEpochAssembler() {
+        return mAssembler;
+    }
+
+    /**
+     * ByteLine shows a line of ASCII bytes as characters without copying it, so problems with it can be reported.
+     */
+    private static class ByteLine implements CharSequence {
+        private byte[] mData;
+        private int mOffset;
+        private int mLength;
+
+        void set(byte[] _data, int _offset, int _length) {
+            mData = _data;
+            mOffset = _offset;
+            mLength = _length;
+        }
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(int _index) {
+            return (char) (mData[mOffset + _index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int _start, int _end) {
+            return toString().substring(_start, _end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(mData, mOffset, mLength, StandardCharsets.US_ASCII);
         }
     }
-}
\ No newline at end of file
+}
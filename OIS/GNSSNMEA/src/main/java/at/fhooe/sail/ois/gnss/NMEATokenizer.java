@@ -0,0 +1,429 @@
+package at.fhooe.sail.ois.gnss;
+
+/**
+ * NMEATokenizer splits an NMEA sentence into its fields without creating any objects.
+ * A sentence is scanned once: the offsets of all fields are recorded and the checksum is computed on the way.
+ * Numbers, coordinates and times are then parsed straight from the characters of the sentence, which can be
+ * given as a CharSequence or as ASCII bytes. An instance is reused for every sentence and is not thread-safe.
+ *
+ * Field 0 is the address, e.g. "GPGGA", the checksum is not part of any field. Empty fields yield the
+ * default value passed to the getters; fields that cannot be parsed yield it as well and are counted as malformed.
+ */
+public class NMEATokenizer {
+
+    /** Maximum number of fields of a sentence; further fields are ignored and counted as malformed. */
+    public static final int MAX_FIELDS = 64;
+
+    private static final long MANTISSA_LIMIT = 100_000_000_000_000_000L;
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final int[] mStart = new int[MAX_FIELDS];
+    private final int[] mEnd = new int[MAX_FIELDS];
+    private CharSequence mChars;
+    private byte[] mBytes;
+    private int mFieldCount;
+    private boolean mHasChecksum;
+    private boolean mChecksumValid;
+    private int mMalformedCount;
+
+    // scratch results of parseNumber, kept in fields so parsing does not allocate
+    private long mMantissa;
+    private int mFractionDigits;
+
+    /**
+     * Tokenizes a sentence given as characters.
+     *
+     * @param _line the sentence, starting with '$' and optionally ending with a line break.
+     * @return true if the sentence has a valid checksum.
+     */
+    public boolean tokenize(CharSequence _line) {
+        mChars = _line;
+        mBytes = null;
+        return scan(0, _line.length());
+    }
+
+    /**
+     * Tokenizes a sentence given as ASCII bytes, e.g. a chunk of a log read by {@link NMEALogReader}.
+     *
+     * @param _data the buffer containing the sentence.
+     * @param _offset the position of the sentence within the buffer.
+     * @param _length the length of the sentence.
+     * @return true if the sentence has a valid checksum.
+     */
+    public boolean tokenize(byte[] _data, int _offset, int _length) {
+        mChars = null;
+        mBytes = _data;
+        return scan(_offset, _offset + _length);
+    }
+
+    /**
+     * Scans a sentence once, recording the field offsets and verifying the checksum.
+     */
+    private boolean scan(int _from, int _to) {
+        mFieldCount = 0;
+        mHasChecksum = false;
+        mChecksumValid = false;
+        mMalformedCount = 0;
+
+        int i = _from;
+        while (i < _to && charAt(i) != '$') {
+            i++;
+        }
+        if (i == _to) {
+            return false;
+        }
+        int checksum = 0;
+        int start = ++i;
+        for (; i < _to; i++) {
+            char c = charAt(i);
+            if (c == '*' || c == '\r' || c == '\n') {
+                break;
+            }
+            checksum ^= c;
+            if (c == ',') {
+                addField(start, i);
+                start = i + 1;
+            }
+        }
+        addField(start, i);
+
+        if (i < _to && charAt(i) == '*') {
+            mHasChecksum = true;
+            int high = i + 1 < _to ? Character.digit(charAt(i + 1), 16) : -1;
+            int low = i + 2 < _to ? Character.digit(charAt(i + 2), 16) : -1;
+            mChecksumValid = high >= 0 && low >= 0 && (high << 4 | low) == checksum;
+        }
+        return mChecksumValid;
+    }
+
+    private void addField(int _start, int _end) {
+        if (mFieldCount == MAX_FIELDS) {
+            mMalformedCount++;
+            return;
+        }
+        mStart[mFieldCount] = _start;
+        mEnd[mFieldCount] = _end;
+        mFieldCount++;
+    }
+
+    private char charAt(int _index) {
+        return mBytes != null ? (char) (mBytes[_index] & 0xFF) : mChars.charAt(_index);
+    }
+
+    /**
+     * Gets the number of fields of the current sentence, including the address.
+     *
+     * @return the number of fields.
+     */
+    public int getFieldCount() {
+        return mFieldCount;
+    }
+
+    /**
+     * Tells whether the current sentence ends with a checksum.
+     *
+     * @return true if a '*' was found.
+     */
+    public boolean hasChecksum() {
+        return mHasChecksum;
+    }
+
+    /**
+     * Tells whether the checksum of the current sentence matches its content.
+     *
+     * @return true if the checksum is valid.
+     */
+    public boolean isChecksumValid() {
+        return mChecksumValid;
+    }
+
+    /**
+     * Gets the number of fields of the current sentence that could not be parsed so far.
+     *
+     * @return the number of malformed fields.
+     */
+    public int getMalformedCount() {
+        return mMalformedCount;
+    }
+
+    /**
+     * Tells whether a field is missing or empty.
+     *
+     * @param _field the index of the field.
+     * @return true if the field has no content.
+     */
+    public boolean isEmpty(int _field) {
+        return _field >= mFieldCount || mStart[_field] == mEnd[_field];
+    }
+
+    /**
+     * Compares a field with a string without creating a String.
+     *
+     * @param _field the index of the field.
+     * @param _value the expected content.
+     * @return true if the field has exactly the given content.
+     */
+    public boolean fieldEquals(int _field, CharSequence _value) {
+        if (_field >= mFieldCount || mEnd[_field] - mStart[_field] != _value.length()) {
+            return false;
+        }
+        for (int i = 0; i < _value.length(); i++) {
+            if (charAt(mStart[_field] + i) != _value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the type of the current sentence, i.e. the last three characters of its address, packed into an int.
+     * For "GPGGA" this is {@code pack("GGA")}.
+     *
+     * @return the packed sentence type, or 0 if the address is shorter than three characters.
+     */
+    public int getSentenceType() {
+        if (mFieldCount == 0 || mEnd[0] - mStart[0] < 3) {
+            return 0;
+        }
+        int end = mEnd[0];
+        return charAt(end - 3) << 16 | charAt(end - 2) << 8 | charAt(end - 1);
+    }
+
+    /**
+     * Gets the talker of the current sentence, i.e. the first two characters of its address, packed into an int.
+     * For "GPGGA" this is {@code pack("GP")}, for the proprietary "PQGSV" it is {@code pack("PQ")}.
+     *
+     * @return the packed talker, or 0 if the address is shorter than five characters.
+     */
+    public int getTalker() {
+        if (mFieldCount == 0 || mEnd[0] - mStart[0] < 5) {
+            return 0;
+        }
+        return charAt(mStart[0]) << 8 | charAt(mStart[0] + 1);
+    }
+
+    /**
+     * Packs up to three ASCII characters into an int, the way {@link #getSentenceType()} does.
+     *
+     * @param _chars the characters, e.g. "GGA".
+     * @return the packed characters.
+     */
+    public static int pack(CharSequence _chars) {
+        int packed = 0;
+        for (int i = 0; i < _chars.length(); i++) {
+            packed = packed << 8 | _chars.charAt(i);
+        }
+        return packed;
+    }
+
+    /**
+     * Gets the first character of a field, e.g. a direction or status flag.
+     *
+     * @param _field the index of the field.
+     * @param _default the value returned for an empty field.
+     * @return the first character.
+     */
+    public char getChar(int _field, char _default) {
+        return isEmpty(_field) ? _default : charAt(mStart[_field]);
+    }
+
+    /**
+     * Gets a field as String. This allocates and is meant for fields that are kept as text.
+     *
+     * @param _field the index of the field.
+     * @return the content of the field, or an empty string if it is missing.
+     */
+    public String getString(int _field) {
+        if (isEmpty(_field)) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(mEnd[_field] - mStart[_field]);
+        for (int i = mStart[_field]; i < mEnd[_field]; i++) {
+            sb.append(charAt(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses a field as integer.
+     *
+     * @param _field the index of the field.
+     * @param _default the value returned for an empty or malformed field.
+     * @return the parsed value.
+     */
+    public int getInt(int _field, int _default) {
+        if (isEmpty(_field)) {
+            return _default;
+        }
+        int i = mStart[_field];
+        int end = mEnd[_field];
+        boolean negative = charAt(i) == '-';
+        if (negative || charAt(i) == '+') {
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            mMalformedCount++;
+            return _default;
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int d = charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                mMalformedCount++;
+                return _default;
+            }
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a field as decimal number. Exponents are not part of NMEA and are not supported.
+     *
+     * @param _field the index of the field.
+     * @param _default the value returned for an empty or malformed field.
+     * @return the parsed value.
+     */
+    public double getDouble(int _field, double _default) {
+        if (isEmpty(_field)) {
+            return _default;
+        }
+        int i = mStart[_field];
+        boolean negative = charAt(i) == '-';
+        if (negative || charAt(i) == '+') {
+            i++;
+        }
+        if (!parseNumber(i, mEnd[_field])) {
+            mMalformedCount++;
+            return _default;
+        }
+        double value = mFractionDigits <= 0 ? mMantissa * pow10(-mFractionDigits) : mMantissa / pow10(mFractionDigits);
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a latitude or longitude in the NMEA format (d)ddmm.mmmm with its direction field
+     * into decimal degrees. The degrees and minutes are separated on the integer digits, so the
+     * minutes are exact up to the precision of the field.
+     *
+     * @param _field the index of the coordinate field.
+     * @param _directionField the index of the direction field (N, S, E or W).
+     * @param _default the value returned for an empty or malformed field.
+     * @return the coordinate in decimal degrees, negative for south and west.
+     */
+    public double getCoordinate(int _field, int _directionField, double _default) {
+        if (isEmpty(_field) || isEmpty(_directionField)) {
+            return _default;
+        }
+        if (!parseNumber(mStart[_field], mEnd[_field]) || mFractionDigits < 0) {
+            mMalformedCount++;
+            return _default;
+        }
+        long scale = (long) POW10[mFractionDigits];
+        long degrees = mMantissa / scale / 100;
+        double minutes = (mMantissa - degrees * 100 * scale) / (double) scale;
+        double value = degrees + minutes / 60.0;
+        char direction = charAt(mStart[_directionField]);
+        return direction == 'S' || direction == 'W' ? -value : value;
+    }
+
+    /**
+     * Parses a UTC time in the NMEA format hhmmss.ss into milliseconds since midnight.
+     *
+     * @param _field the index of the time field.
+     * @return the time of day in milliseconds, or -1 if the field is empty or malformed.
+     */
+    public int getTimeOfDay(int _field) {
+        if (isEmpty(_field)) {
+            return -1;
+        }
+        if (!parseNumber(mStart[_field], mEnd[_field]) || mFractionDigits < 0) {
+            mMalformedCount++;
+            return -1;
+        }
+        long scale = (long) POW10[mFractionDigits];
+        long hhmmss = mMantissa / scale;
+        int millis = (int) ((mMantissa - hhmmss * scale) * 1000 / scale);
+        int hours = (int) (hhmmss / 10000);
+        int minutes = (int) (hhmmss / 100 % 100);
+        int seconds = (int) (hhmmss % 100);
+        if (hours > 23 || minutes > 59 || seconds > 60) {
+            mMalformedCount++;
+            return -1;
+        }
+        return ((hours * 60 + minutes) * 60 + seconds) * 1000 + millis;
+    }
+
+    /**
+     * Parses a UTC date in the NMEA format ddmmyy into days since 1970-01-01. Two-digit years from 80 on
+     * are taken as 19xx, all others as 20xx.
+     *
+     * @param _field the index of the date field.
+     * @return the epoch day, or -1 if the field is empty or malformed.
+     */
+    public long getEpochDay(int _field) {
+        int ddmmyy = getInt(_field, -1);
+        if (ddmmyy < 0) {
+            return -1;
+        }
+        int day = ddmmyy / 10000;
+        int month = ddmmyy / 100 % 100;
+        int year = ddmmyy % 100;
+        year += year >= 80 ? 1900 : 2000;
+        if (day < 1 || day > 31 || month < 1 || month > 12) {
+            mMalformedCount++;
+            return -1;
+        }
+        // days from civil, see http://howardhinnant.github.io/date_algorithms.html
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * Parses unsigned digits with an optional decimal point into {@link #mMantissa} and {@link #mFractionDigits}.
+     * Digits beyond the precision of a long are dropped; dropped integer digits are reported as a negative
+     * number of fraction digits.
+     *
+     * @return false if the range contains anything else than digits and one decimal point.
+     */
+    private boolean parseNumber(int _from, int _to) {
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        boolean digits = false;
+        for (int i = _from; i < _to; i++) {
+            char c = charAt(i);
+            if (c == '.' && !point) {
+                point = true;
+                continue;
+            }
+            int d = c - '0';
+            if (d < 0 || d > 9) {
+                return false;
+            }
+            digits = true;
+            if (mantissa < MANTISSA_LIMIT) {
+                mantissa = mantissa * 10 + d;
+                if (point) {
+                    fractionDigits++;
+                }
+            } else if (!point) {
+                fractionDigits--;
+            }
+        }
+        mMantissa = mantissa;
+        mFractionDigits = fractionDigits;
+        return digits;
+    }
+
+    private static double pow10(int _exponent) {
+        return _exponent < POW10.length ? POW10[_exponent] : Math.pow(10, _exponent);
+    }
+}
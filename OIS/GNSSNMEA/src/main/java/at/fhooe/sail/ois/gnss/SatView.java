@@ -1,6 +1,5 @@
 package at.fhooe.sail.ois.gnss;
 
-import javafx.application.Platform;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.layout.Pane;
@@ -40,15 +39,15 @@ public class SatView extends Pane implements IPositionUpdateListener {
     }
 
     /**
-     * Called when the position is updated. This method updates the internal NMEAInfo object
-     * and triggers a redraw of the Canvas on the JavaFX application thread.
+     * Called on the JavaFX application thread when the position is updated. This method updates the internal
+     * NMEAInfo object and redraws the Canvas.
      *
      * @param info The new NMEAInfo object containing the updated GNSS data.
      */
     @Override
     public void update(NMEAInfo info) {
         this.mInfo = info;
-        Platform.runLater(this::draw);
+        draw();
     }
 
     /**
@@ -147,12 +146,12 @@ public class SatView extends Pane implements IPositionUpdateListener {
      * @param posY The Y coordinate for the satellite position.
      */
     private void drawSatelliteShape(GraphicsContext gc, SatelliteInfo satInfo, double posX, double posY) {
-        switch (satInfo.getMType()) {
-            case "GPGSV" -> drawGPS(gc, posX, posY); //GP GPGSV
-            case "GAGSV" -> drawGalileo(gc, posX, posY); //GA GPGGA
-            case "GN" -> drawGNSS(gc, posX, posY);
-            case "PQGSV" -> drawBeidou(gc, posX, posY);
-            case "GLGSV" -> drawGLONASS(gc, posX, posY);
+        switch (satInfo.getMConstellation()) {
+            case GPS -> drawGPS(gc, posX, posY);
+            case GALILEO -> drawGalileo(gc, posX, posY);
+            case COMBINED -> drawGNSS(gc, posX, posY);
+            case BEIDOU -> drawBeidou(gc, posX, posY);
+            case GLONASS -> drawGLONASS(gc, posX, posY);
             default -> drawDefault(gc, posX, posY);
         }
     }
@@ -1,18 +1,44 @@
 package at.fhooe.sail.ois.gnss;
 
-import lombok.Data;
+import lombok.Getter;
+import lombok.ToString;
 
 /**
- * SatelliteInfo is a data class that holds information about a GNSS satellite.
+ * SatelliteInfo is an immutable data class that holds information about a GNSS satellite.
  * It contains fields such as satellite ID, vertical angle, horizontal angle, signal-to-noise ratio (SNR),
- * type of NMEA sentence, and whether the satellite is used in the current solution.
+ * talker of the NMEA sentence, constellation, and whether the satellite is used in the current solution.
  */
-@Data
+@Getter
+@ToString
 public class SatelliteInfo {
-    private int mId;
-    private double mVerticalAngle;
-    private double mHorizontalAngle;
-    private double mSNR;
-    private String mType;
-    private boolean mIsUsed;
+    private final int mId;
+    private final double mVerticalAngle;
+    private final double mHorizontalAngle;
+    private final double mSNR;
+    /** Talker of the GSV sentence packed by {@link NMEATokenizer#pack(CharSequence)}, e.g. {@code pack("GP")}. */
+    private final int mTalker;
+    private final Constellation mConstellation;
+    private final boolean mIsUsed;
+
+    /**
+     * Constructs a SatelliteInfo.
+     *
+     * @param _id the satellite id (PRN).
+     * @param _verticalAngle the elevation in degrees.
+     * @param _horizontalAngle the azimuth in degrees.
+     * @param _snr the signal-to-noise ratio in dB-Hz, 0 if the satellite is not tracked.
+     * @param _talker the packed talker of the sentence that reported the satellite, e.g. {@code pack("GP")}.
+     * @param _constellation the constellation of the satellite, null for unknown.
+     * @param _isUsed true if the satellite is used in the current solution.
+     */
+    public SatelliteInfo(int _id, double _verticalAngle, double _horizontalAngle, double _snr, int _talker,
+                         Constellation _constellation, boolean _isUsed) {
+        mId = _id;
+        mVerticalAngle = _verticalAngle;
+        mHorizontalAngle = _horizontalAngle;
+        mSNR = _snr;
+        mTalker = _talker;
+        mConstellation = _constellation == null ? Constellation.UNKNOWN : _constellation;
+        mIsUsed = _isUsed;
+    }
 }
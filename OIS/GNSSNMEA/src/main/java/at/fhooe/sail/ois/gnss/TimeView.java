@@ -1,5 +1,4 @@
 package at.fhooe.sail.ois.gnss;
-import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
 import javafx.scene.layout.Pane;
@@ -49,15 +48,15 @@ public class TimeView extends Pane implements IPositionUpdateListener {
     }
 
     /**
-     * Called when the position is updated. This method updates the internal NMEAInfo object
-     * and triggers an update of the time Label on the JavaFX application thread.
+     * Called on the JavaFX application thread when the position is updated. This method updates the internal
+     * NMEAInfo object and the time Label.
      *
      * @param info The new NMEAInfo object containing the updated GNSS data.
      */
     @Override
     public void update(NMEAInfo info) {
         this.mInfo = info;
-        Platform.runLater(this::updateTimeLabel);
+        updateTimeLabel();
     }
 
 
@@ -65,12 +64,10 @@ public class TimeView extends Pane implements IPositionUpdateListener {
      * Updates the time Label with the formatted time from the NMEAInfo object.
      */
     private void updateTimeLabel() {
-        if (mInfo != null && mInfo.getMTime() != null) {
-            String time = mInfo.getMTime();
-            if (time.length() >= 6) {
-                String formattedTime = String.format("%s:%s:%s", time.substring(0, 2), time.substring(2, 4), time.substring(4, 6));
-                mTimeLabel.setText(formattedTime);
-            }
+        if (mInfo != null && mInfo.getMTimeOfDay() >= 0) {
+            int seconds = mInfo.getMTimeOfDay() / 1000;
+            String formattedTime = String.format("%02d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+            mTimeLabel.setText(formattedTime);
         }
     }
 }
@@ -0,0 +1,404 @@
+package at.fhooe.sail.ois.gnss;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TrackStore is a class that keeps the history of fixes in columns of primitive values: time, latitude, longitude,
+ * height, HDOP, satellite count and speed, 38 bytes per fix. A track of several hours at one fix per second
+ * therefore needs less than a megabyte.
+ *
+ * The fixes are stored in chunks of {@link #CHUNK_SIZE} rows, each holding one region per column, so the store grows
+ * without copying the fixes and iterating over a column reads consecutive memory. The chunks live on the heap or,
+ * optionally, in direct buffers outside of it.
+ *
+ * One thread may append while others read: a fix becomes visible to readers only after all of its columns have been
+ * written. The times are expected in append order, as produced by a log, so ranges of time can be found by binary search.
+ *
+ * All times of a track have the same unit, which the first date decides. Normally the time of a fix is its UTC time
+ * in milliseconds since 1970-01-01. Fixes without a date, e.g. a GGA before the first RMC, are held back until the
+ * first date arrives and are then dated back from it; later fixes without a date get the date of the previous fix.
+ * If the first {@link #MAX_UNDATED_FIXES} fixes bring no date, the receiver is taken to send none: the track then
+ * stores times of day, in milliseconds since midnight of the day it started, counting on past midnight so the
+ * times keep increasing, and ignores dates that arrive later. Range queries take times of day for such a track.
+ */
+public class TrackStore implements IPositionUpdateListener {
+
+    /** Number of fixes per chunk. */
+    public static final int CHUNK_SIZE = 4096;
+    /** Number of fixes without a date that are held back before a track is taken to have no dates. */
+    public static final int MAX_UNDATED_FIXES = 60;
+
+    private static final int TIME = 0;
+    private static final int LAT = TIME + CHUNK_SIZE * Long.BYTES;
+    private static final int LON = LAT + CHUNK_SIZE * Double.BYTES;
+    private static final int HEIGHT = LON + CHUNK_SIZE * Double.BYTES;
+    private static final int HDOP = HEIGHT + CHUNK_SIZE * Float.BYTES;
+    private static final int SPEED = HDOP + CHUNK_SIZE * Float.BYTES;
+    private static final int SATELLITES = SPEED + CHUNK_SIZE * Float.BYTES;
+    private static final int CHUNK_BYTES = SATELLITES + CHUNK_SIZE * Short.BYTES;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final boolean mOffHeap;
+    private volatile ByteBuffer[] mChunks = new ByteBuffer[0];
+    private volatile int mSize = 0;
+    private long mLastTime = 0;
+    /** Whether the track stores UTC times or times of day, null until the first date or {@link #MAX_UNDATED_FIXES}. */
+    private Boolean mDated = null;
+    /** The time of the midnight that times of day count from. */
+    private long mMidnight = 0;
+    /** Fixes held back until the unit of the times is known. */
+    private final List<NMEAInfo> mUndated = new ArrayList<>();
+
+    /**
+     * Constructs a TrackStore on the heap.
+     */
+    public TrackStore() {
+        this(false);
+    }
+
+    /**
+     * Constructs a TrackStore.
+     *
+     * @param _offHeap true to keep the fixes in direct buffers outside of the heap.
+     */
+    public TrackStore(boolean _offHeap) {
+        mOffHeap = _offHeap;
+    }
+
+    /**
+     * Appends the fix of an epoch. Epochs without a fix are ignored. Fixes without a date are held back until the
+     * unit of the times is known, see the class comment, and fixes without any time tag get the time of the previous
+     * fix, so the times do not decrease.
+     *
+     * @param _info the snapshot of the epoch.
+     */
+    @Override
+    public void update(NMEAInfo _info) {
+        if (_info.getMFixQuality() == 0) {
+            return;
+        }
+        boolean hasDate = _info.getMTimestamp() != 0;
+        if (mDated == null) {
+            if (!hasDate) {
+                if (_info.getMTimeOfDay() >= 0 || !mUndated.isEmpty()) {  // a first fix without any time is dropped
+                    mUndated.add(_info);
+                }
+                if (mUndated.size() > MAX_UNDATED_FIXES) {
+                    mDated = false;
+                    appendUndated();
+                }
+                return;
+            }
+            mDated = true;
+            long date = _info.getMTimestamp();
+            mMidnight = date - date % MILLIS_PER_DAY;
+            if (!mUndated.isEmpty() && mMidnight + mUndated.get(0).getMTimeOfDay() > date) {
+                mMidnight -= MILLIS_PER_DAY;  // the held fixes started on the day before
+            }
+            appendUndated();
+        }
+        long time;
+        if (hasDate && mDated) {
+            time = _info.getMTimestamp();
+            mMidnight = time - time % MILLIS_PER_DAY;
+        } else if (hasDate) {
+            time = toTime((int) (_info.getMTimestamp() % MILLIS_PER_DAY));
+        } else if (_info.getMTimeOfDay() >= 0) {
+            time = toTime(_info.getMTimeOfDay());
+        } else {
+            time = mLastTime;
+        }
+        append(time, _info);
+    }
+
+    /**
+     * Appends the fixes held back while the unit of the times was unknown, counting their times of day from
+     * {@link #mMidnight}.
+     */
+    private void appendUndated() {
+        for (NMEAInfo info : mUndated) {
+            append(info.getMTimeOfDay() >= 0 ? toTime(info.getMTimeOfDay()) : mLastTime, info);
+        }
+        mUndated.clear();
+    }
+
+    /**
+     * Converts a time of day to the time of a fix, counting on past midnight.
+     */
+    private long toTime(int _timeOfDay) {
+        long time = mMidnight + _timeOfDay;
+        if (time < mLastTime - MILLIS_PER_DAY / 2) {
+            mMidnight += MILLIS_PER_DAY;
+            time += MILLIS_PER_DAY;
+        }
+        return time;
+    }
+
+    private void append(long _time, NMEAInfo _info) {
+        append(_time, _info.getMLat(), _info.getMLon(), _info.getMHeight(), _info.getMHDOP(),
+                _info.getMSatelliteCount(), _info.getMSpeed());
+    }
+
+    /**
+     * Appends a fix. Must only be called by one thread at a time.
+     *
+     * @param _time the UTC time in milliseconds since 1970-01-01, or the time of day of a track without dates.
+     * @param _lat the latitude in degrees.
+     * @param _lon the longitude in degrees.
+     * @param _height the height above mean sea level in meters.
+     * @param _hdop the horizontal dilution of precision.
+     * @param _satellites the number of satellites.
+     * @param _speed the speed over ground in m/s.
+     */
+    public void append(long _time, double _lat, double _lon, double _height, double _hdop, int _satellites, double _speed) {
+        int size = mSize;
+        int row = size % CHUNK_SIZE;
+        ByteBuffer[] chunks = mChunks;
+        if (row == 0 && size / CHUNK_SIZE == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = (mOffHeap ? ByteBuffer.allocateDirect(CHUNK_BYTES) : ByteBuffer.allocate(CHUNK_BYTES))
+                    .order(ByteOrder.nativeOrder());
+            mChunks = chunks;
+        }
+        ByteBuffer chunk = chunks[size / CHUNK_SIZE];
+        chunk.putLong(TIME + row * Long.BYTES, _time);
+        chunk.putDouble(LAT + row * Double.BYTES, _lat);
+        chunk.putDouble(LON + row * Double.BYTES, _lon);
+        chunk.putFloat(HEIGHT + row * Float.BYTES, (float) _height);
+        chunk.putFloat(HDOP + row * Float.BYTES, (float) _hdop);
+        chunk.putFloat(SPEED + row * Float.BYTES, (float) _speed);
+        chunk.putShort(SATELLITES + row * Short.BYTES, (short) _satellites);
+        mLastTime = _time;
+        mSize = size + 1;  // publishes the row
+    }
+
+    /**
+     * Gets the number of fixes.
+     *
+     * @return the number of fixes.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Gets the number of bytes allocated for the fixes.
+     *
+     * @return the allocated bytes.
+     */
+    public long getMemoryUsage() {
+        return (long) mChunks.length * CHUNK_BYTES;
+    }
+
+    /**
+     * Tells whether the fixes are kept outside of the heap.
+     *
+     * @return true if the chunks are direct buffers.
+     */
+    public boolean isOffHeap() {
+        return mOffHeap;
+    }
+
+    /**
+     * Gets the time in milliseconds of a fix, see {@link TrackStore} for its meaning without date.
+     *
+     * @param _index the index of the fix.
+     * @return the time.
+     */
+    public long getTime(int _index) {
+        return chunk(_index).getLong(TIME + _index % CHUNK_SIZE * Long.BYTES);
+    }
+
+    /**
+     * Gets the latitude in degrees of a fix.
+     *
+     * @param _index the index of the fix.
+     * @return the latitude.
+     */
+    public double getLat(int _index) {
+        return chunk(_index).getDouble(LAT + _index % CHUNK_SIZE * Double.BYTES);
+    }
+
+    /**
+     * Gets the longitude in degrees of a fix.
+     *
+     * @param _index the index of the fix.
+     * @return the longitude.
+     */
+    public double getLon(int _index) {
+        return chunk(_index).getDouble(LON + _index % CHUNK_SIZE * Double.BYTES);
+    }
+
+    /**
+     * Gets the height in meters of a fix.
+     *
+     * @param _index the index of the fix.
+     * @return the height.
+     */
+    public double getHeight(int _index) {
+        return chunk(_index).getFloat(HEIGHT + _index % CHUNK_SIZE * Float.BYTES);
+    }
+
+    /**
+     * Gets the horizontal dilution of precision of a fix.
+     *
+     * @param _index the index of the fix.
+     * @return the horizontal dilution of precision.
+     */
+    public double getHDOP(int _index) {
+        return chunk(_index).getFloat(HDOP + _index % CHUNK_SIZE * Float.BYTES);
+    }
+
+    /**
+     * Gets the number of satellites of a fix.
+     *
+     * @param _index the index of the fix.
+     * @return the number of satellites.
+     */
+    public int getSatelliteCount(int _index) {
+        return chunk(_index).getShort(SATELLITES + _index % CHUNK_SIZE * Short.BYTES);
+    }
+
+    /**
+     * Gets the speed over ground in m/s of a fix.
+     *
+     * @param _index the index of the fix.
+     * @return the speed over ground.
+     */
+    public double getSpeed(int _index) {
+        return chunk(_index).getFloat(SPEED + _index % CHUNK_SIZE * Float.BYTES);
+    }
+
+    /**
+     * Finds the first fix at or after a time.
+     *
+     * @param _time the time in milliseconds, as stored.
+     * @return the index of the fix, or {@link #size()} if all fixes are older.
+     */
+    public int indexOf(long _time) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getTime(mid) < _time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Creates a cursor over all fixes stored so far.
+     *
+     * @return the cursor, positioned before the first fix.
+     */
+    public Cursor cursor() {
+        return new Cursor(0, mSize);
+    }
+
+    /**
+     * Creates a cursor over the fixes of a time range.
+     *
+     * @param _from the first time, inclusive.
+     * @param _to the last time, exclusive.
+     * @return the cursor, positioned before the first fix of the range.
+     */
+    public Cursor cursor(long _from, long _to) {
+        return new Cursor(indexOf(_from), indexOf(_to));
+    }
+
+    /**
+     * Creates a cursor over the fixes from an index on, e.g. over the fixes appended since the last visit.
+     *
+     * @param _index the first index.
+     * @return the cursor, positioned before the fix at the index.
+     */
+    public Cursor cursorFrom(int _index) {
+        return new Cursor(Math.max(0, _index), mSize);
+    }
+
+    private ByteBuffer chunk(int _index) {
+        if (_index < 0 || _index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + _index + ", size " + mSize);
+        }
+        return mChunks[_index / CHUNK_SIZE];
+    }
+
+    /**
+     * Cursor iterates over a range of fixes without creating an object per fix.
+     */
+    public class Cursor {
+        private final int mEnd;
+        private int mIndex;
+        private ByteBuffer mChunk;
+        private int mRow;
+
+        private Cursor(int _from, int _to) {
+            mIndex = _from - 1;
+            mEnd = _to;
+        }
+
+        /**
+         * Moves to the next fix.
+         *
+         * @return false if there are no more fixes in the range.
+         */
+        public boolean next() {
+            if (mIndex + 1 >= mEnd) {
+                return false;
+            }
+            mIndex++;
+            mRow = mIndex % CHUNK_SIZE;
+            if (mRow == 0 || mChunk == null) {
+                mChunk = mChunks[mIndex / CHUNK_SIZE];
+            }
+            return true;
+        }
+
+        /** Gets the index of the current fix. */
+        public int getIndex() {
+            return mIndex;
+        }
+
+        /** Gets the time in milliseconds of the current fix. */
+        public long getTime() {
+            return mChunk.getLong(TIME + mRow * Long.BYTES);
+        }
+
+        /** Gets the latitude in degrees of the current fix. */
+        public double getLat() {
+            return mChunk.getDouble(LAT + mRow * Double.BYTES);
+        }
+
+        /** Gets the longitude in degrees of the current fix. */
+        public double getLon() {
+            return mChunk.getDouble(LON + mRow * Double.BYTES);
+        }
+
+        /** Gets the height in meters of the current fix. */
+        public double getHeight() {
+            return mChunk.getFloat(HEIGHT + mRow * Float.BYTES);
+        }
+
+        /** Gets the horizontal dilution of precision of the current fix. */
+        public double getHDOP() {
+            return mChunk.getFloat(HDOP + mRow * Float.BYTES);
+        }
+
+        /** Gets the number of satellites of the current fix. */
+        public int getSatelliteCount() {
+            return mChunk.getShort(SATELLITES + mRow * Short.BYTES);
+        }
+
+        /** Gets the speed over ground in m/s of the current fix. */
+        public double getSpeed() {
+            return mChunk.getFloat(SPEED + mRow * Float.BYTES);
+        }
+    }
+}
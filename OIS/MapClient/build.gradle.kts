@@ -12,6 +12,7 @@ repositories {
 dependencies {
     implementation("net.postgis:postgis-jdbc:2021.1.0")
     implementation("net.postgis:postgis-geometry:2021.1.0")
+    implementation("org.postgresql:postgresql:42.6.0")
     implementation(files("${rootProject.projectDir.absolutePath}/libs/DummyGIS.jar"))
 }
 javafx {
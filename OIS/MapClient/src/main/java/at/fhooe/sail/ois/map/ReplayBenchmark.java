@@ -0,0 +1,117 @@
+package at.fhooe.sail.ois.map;
+
+import at.fhooe.sail.ois.map.server.APostGISDataSource;
+import at.fhooe.sail.ois.map.server.GeoDataException;
+import at.fhooe.sail.ois.map.server.GeoQuery;
+import at.fhooe.sail.ois.map.server.IGeoDataSource;
+import at.fhooe.sail.ois.map.server.OSMServer;
+import at.fhooe.sail.ois.map.server.VerwaltungsgrenzenServer;
+import at.fhooe.sail.ois.map.server.replay.ReplayDataSource;
+import at.fhooe.sail.ois.map.server.replay.ReplayRecorder;
+import at.fhooe.sail.ois.map.server.snapshot.SnapshotServer;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Benchmarks the load path against recorded result sets instead of a live database.
+ *
+ * Called with "record" as first argument, the full extent of the local PostGIS databases is recorded into
+ * the directory given as second argument (default "replays" in the working directory). Otherwise the
+ * recordings in that directory are replayed with different simulated connections, so the results are
+ * reproducible and independent of the state of the database.
+ */
+public class ReplayBenchmark {
+
+    private static final int RUNS = 5;
+    private static final String OSM_FILE = "osm_hagenberg_3857.replay";
+    private static final String VERWALTUNGSGRENZEN_FILE = "osm_verwaltungsgrenzen_3857.replay";
+
+    /** Simulated connections: name, latency in ms and bandwidth in bytes per second (0 for unlimited). */
+    private static final Object[][] CONNECTIONS = {
+            {"local", 0L, 0L},
+            {"lan", 1L, 100_000_000L},
+            {"wan", 30L, 5_000_000L},
+    };
+
+    /**
+     * The main method to run the benchmark.
+     *
+     * @param args the command line arguments; "record" records instead of replaying, the optional last argument is the directory.
+     * @throws IOException if a replay file cannot be written.
+     * @throws GeoDataException if a data set cannot be loaded.
+     */
+    public static void main(String[] args) throws IOException, GeoDataException {
+        boolean record = args.length > 0 && args[0].equals("record");
+        int dirArg = record ? 1 : 0;
+        File dir = new File(args.length > dirArg ? args[dirArg] : "replays");
+
+        if (record) {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create directory " + dir);
+            }
+            record(new File(dir, OSM_FILE), SnapshotServer.CONTEXT_OSM, new OSMServer());
+            record(new File(dir, VERWALTUNGSGRENZEN_FILE), SnapshotServer.CONTEXT_VERWALTUNGSGRENZEN,
+                    new VerwaltungsgrenzenServer());
+            return;
+        }
+
+        for (String name : Arrays.asList(OSM_FILE, VERWALTUNGSGRENZEN_FILE)) {
+            File file = new File(dir, name);
+            if (!file.isFile()) {
+                System.out.println("Missing " + file + ", run with \"record\" first");
+                continue;
+            }
+            for (Object[] connection : CONNECTIONS) {
+                IGeoDataSource source = new ReplayDataSource(name, file, (Long) connection[1], (Long) connection[2]);
+                Rectangle2D extent = source.getExtent();
+                benchmark(source, connection[0] + " full", GeoQuery.ALL);
+                if (extent != null) {
+                    Rectangle2D center = new Rectangle2D.Double(extent.getCenterX() - extent.getWidth() / 8,
+                            extent.getCenterY() - extent.getHeight() / 8, extent.getWidth() / 4, extent.getHeight() / 4);
+                    benchmark(source, connection[0] + " center", new GeoQuery(center, 1000));
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the full extent of one data source into a replay file and reports its size.
+     *
+     * @param _file the file to write.
+     * @param _context the name of the drawing context of the data.
+     * @param _source the data source to record.
+     * @throws IOException if the file cannot be written.
+     * @throws GeoDataException if the data cannot be loaded.
+     */
+    private static void record(File _file, String _context, APostGISDataSource _source) throws IOException, GeoDataException {
+        long start = System.nanoTime();
+        int rows = ReplayRecorder.record(_file, _context, _source, Collections.singletonList(GeoQuery.ALL));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Recorded " + rows + " rows of " + _source.getName() + " to " + _file
+                + " (" + _file.length() / 1024 + " KiB, " + millis + " ms)");
+    }
+
+    /**
+     * Runs a query several times and prints the median duration.
+     *
+     * @param _source the data source to query.
+     * @param _label the label of the measurement.
+     * @param _query the query to run.
+     * @throws GeoDataException if the query fails.
+     */
+    private static void benchmark(IGeoDataSource _source, String _label, GeoQuery _query) throws GeoDataException {
+        long[] millis = new long[RUNS];
+        int count = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            count = _source.query(_query).size();
+            millis[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(millis);
+        System.out.printf("%-32s %-12s %8d features %8d ms%n", _source.getName(), _label, count, millis[RUNS / 2]);
+    }
+}
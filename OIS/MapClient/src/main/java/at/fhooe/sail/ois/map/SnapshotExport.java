@@ -0,0 +1,59 @@
+package at.fhooe.sail.ois.map;
+
+import at.fhooe.sail.ois.map.server.GeoDataException;
+import at.fhooe.sail.ois.map.server.GeoQuery;
+import at.fhooe.sail.ois.map.server.IGeoDataSource;
+import at.fhooe.sail.ois.map.server.OSMServer;
+import at.fhooe.sail.ois.map.server.VerwaltungsgrenzenServer;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+import at.fhooe.sail.ois.map.server.snapshot.SnapshotServer;
+import at.fhooe.sail.ois.map.server.snapshot.SnapshotWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * Exports the data sets of the local PostGIS databases into snapshot files.
+ *
+ * The snapshots are written into the directory given as first argument (default "snapshots" in the
+ * working directory) and can afterwards be loaded by the client without a running database.
+ */
+public class SnapshotExport {
+
+    /**
+     * The main method to run the export.
+     *
+     * @param args the command line arguments; the optional first argument is the target directory.
+     * @throws IOException if a snapshot file cannot be written.
+     * @throws GeoDataException if a data set cannot be loaded.
+     */
+    public static void main(String[] args) throws IOException, GeoDataException {
+        File dir = new File(args.length > 0 ? args[0] : "snapshots");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+
+        export(new File(dir, "osm_hagenberg_3857.snapshot"), SnapshotServer.CONTEXT_OSM, new OSMServer());
+        export(new File(dir, "osm_verwaltungsgrenzen_3857.snapshot"), SnapshotServer.CONTEXT_VERWALTUNGSGRENZEN,
+                new VerwaltungsgrenzenServer());
+    }
+
+    /**
+     * Writes the full extent of one data source into a snapshot file and reports its size.
+     *
+     * @param _file the file to write.
+     * @param _context the name of the drawing context of the data.
+     * @param _source the data source to export.
+     * @throws IOException if the file cannot be written.
+     * @throws GeoDataException if the data cannot be loaded.
+     */
+    private static void export(File _file, String _context, IGeoDataSource _source) throws IOException, GeoDataException {
+        long start = System.nanoTime();
+        Vector<GeoObject> data = _source.query(GeoQuery.ALL);
+        SnapshotWriter.write(_file, _context, data);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Exported " + data.size() + " features of " + _source.getName() + " to " + _file
+                + " (" + _file.length() / 1024 + " KiB, " + millis + " ms)");
+    }
+}
@@ -0,0 +1,80 @@
+package at.fhooe.sail.ois.map;
+
+import at.fhooe.sail.ois.map.server.transform.CoordinateTransforms;
+import at.fhooe.sail.ois.map.server.transform.ICoordinateTransform;
+
+import java.util.Random;
+
+/**
+ * A benchmark for the coordinate transforms used while loading data.
+ *
+ * This class measures the throughput of the EPSG:4326 to EPSG:3857 reprojection and its inverse
+ * on batches of random points covering Austria, and checks the round-trip error.
+ */
+public class TransformBenchmark {
+    private static final int POINTS = 1_000_000;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int ROUNDS = 20;
+
+    /**
+     * The main method to run the transform benchmark.
+     *
+     * @param args the command line arguments.
+     */
+    public static void main(String[] args) {
+        double[] lonLat = createPoints(POINTS);
+        double[] coords = new double[lonLat.length];
+        ICoordinateTransform forward = CoordinateTransforms.forSrid(CoordinateTransforms.EPSG_4326);
+        ICoordinateTransform inverse = forward.inverse();
+
+        benchmark("4326 -> 3857", forward, lonLat, coords);
+        forward.transform(lonLat, 0, coords, 0, POINTS);
+        double[] mercator = coords.clone();
+        benchmark("3857 -> 4326", inverse, mercator, coords);
+
+        inverse.transform(mercator, 0, coords, 0, POINTS);
+        double maxError = 0;
+        for (int i = 0; i < coords.length; i++) {
+            maxError = Math.max(maxError, Math.abs(coords[i] - lonLat[i]));
+        }
+        System.out.println("Max round-trip error: " + maxError + " degrees");
+    }
+
+    /**
+     * Measures the throughput of a transform in millions of points per second.
+     *
+     * @param _name the name printed with the result.
+     * @param _transform the transform to measure.
+     * @param _src the source coordinates.
+     * @param _dst the array receiving the transformed coordinates.
+     */
+    private static void benchmark(String _name, ICoordinateTransform _transform, double[] _src, double[] _dst) {
+        int numPoints = _src.length / 2;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            _transform.transform(_src, 0, _dst, 0, numPoints);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            _transform.transform(_src, 0, _dst, 0, numPoints);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double pointsPerSecond = (double) numPoints * ROUNDS / seconds;
+        System.out.printf("%s: %.1f million points/s%n", _name, pointsPerSecond / 1e6);
+    }
+
+    /**
+     * Creates random longitude/latitude pairs within the bounds of Austria.
+     *
+     * @param _numPoints the number of points to create.
+     * @return the interleaved longitude/latitude pairs.
+     */
+    private static double[] createPoints(int _numPoints) {
+        Random rand = new Random(42);
+        double[] coords = new double[_numPoints * 2];
+        for (int i = 0; i < _numPoints; i++) {
+            coords[2 * i] = 9.5 + rand.nextDouble() * 7.5;
+            coords[2 * i + 1] = 46.4 + rand.nextDouble() * 2.6;
+        }
+        return coords;
+    }
+}
@@ -2,6 +2,7 @@ package at.fhooe.sail.ois.map.client;
 
 import javafx.scene.paint.Color;
 import java.util.Hashtable;
+import java.util.Map;
 
 /**
  * Abstract base class for defining drawing contexts with presentation schemas.
@@ -16,6 +17,13 @@ public abstract class ADrawingContext {
      */
     protected Hashtable<Integer, PresentationSchema> mContext;
 
+    /**
+     * Schemas indexed directly by type identifier, so the render loop neither boxes the type nor
+     * allocates a default schema for every lookup.
+     */
+    private PresentationSchema[] mSchemaTable;
+    private final PresentationSchema mDefaultSchema = new PresentationSchema(Color.BLACK, Color.WHITE, 1.0f);
+
     /**
      * Constructor for the ADrawingContext class.
      * Initializes the hashtable and calls the abstract method to initialize the schemas.
@@ -23,6 +31,16 @@ public abstract class ADrawingContext {
     public ADrawingContext() {
         mContext = new Hashtable<>();
         initSchemata();
+        int maxType = 0;
+        for (int type : mContext.keySet()) {
+            maxType = Math.max(maxType, type);
+        }
+        mSchemaTable = new PresentationSchema[maxType + 1];
+        mContext.forEach((type, schema) -> {
+            if (type >= 0) {
+                mSchemaTable[type] = schema;
+            }
+        });
     }
 
     /**
@@ -32,7 +50,11 @@ public abstract class ADrawingContext {
      * @return the presentation schema associated with the given type, or the default schema if not found.
      */
     public PresentationSchema getSchema(int _type) {
-        return mContext.getOrDefault(_type, getDefaultSchema());
+        if (_type >= 0 && _type < mSchemaTable.length) {
+            PresentationSchema schema = mSchemaTable[_type];
+            return schema != null ? schema : mDefaultSchema;
+        }
+        return mContext.getOrDefault(_type, mDefaultSchema);
     }
 
     /**
@@ -41,7 +63,50 @@ public abstract class ADrawingContext {
      * @return the default presentation schema.
      */
     public PresentationSchema getDefaultSchema() {
-        return new PresentationSchema(Color.BLACK, Color.WHITE, 1.0f);
+        return mDefaultSchema;
+    }
+
+    /**
+     * Gets the types that are drawn at a map scale, so data sources only need to load these.
+     *
+     * @param _scale the scale denominator, or 0 for all scales.
+     * @return the visible types in ascending order, or null if objects of any type are drawn
+     * because unknown types fall back to the default schema.
+     */
+    public int[] getVisibleTypes(int _scale) {
+        if (drawsUnknownTypes()) {
+            return null;
+        }
+        return mContext.entrySet().stream()
+                .filter(_e -> _e.getValue().isVisibleAt(_scale))
+                .mapToInt(Map.Entry::getKey)
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * Tells whether objects of types without a schema of their own are drawn with the default schema.
+     * Contexts whose schemas cover every type worth drawing return false, so other types are not loaded.
+     *
+     * @return true if unknown types are drawn.
+     */
+    protected boolean drawsUnknownTypes() {
+        return true;
+    }
+
+    /**
+     * Sets the maximum scale of all schemas within a range of types.
+     *
+     * @param _firstType the first type of the range.
+     * @param _lastType the last type of the range, inclusive.
+     * @param _maxScale the maximum scale denominator, see {@link PresentationSchema#setMaxScale(int)}.
+     */
+    protected void setMaxScale(int _firstType, int _lastType, int _maxScale) {
+        mContext.forEach((type, schema) -> {
+            if (type >= _firstType && type <= _lastType) {
+                schema.setMaxScale(_maxScale);
+            }
+        });
     }
 
     /**
@@ -1,5 +1,6 @@
 package at.fhooe.sail.ois.map.client;
 
+import javafx.animation.PauseTransition;
 import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.event.ActionEvent;
@@ -9,6 +10,7 @@ import javafx.scene.Cursor;
 import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
 import javafx.scene.input.*;
+import javafx.util.Duration;
 
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
@@ -21,6 +23,9 @@ import java.util.List;
  * This controller handles action events, changes in properties, and mouse interactions.
  */
 public class GISController {
+    /** Time without pan or zoom after which the viewport counts as settled and missing data is loaded. */
+    private static final int VIEWPORT_SETTLE_MILLIS = 250;
+
     private final GISModel mModel;
     private final GISView mView;
     private ActionHandler mActionHandler;
@@ -32,6 +37,7 @@ public class GISController {
     private Rectangle mZoomRect = null;
     private List<Point> mSelectedPoints = new ArrayList<>();
     private KeyEventHandler mKeyEventHandler;
+    private final PauseTransition mViewportPause = new PauseTransition(Duration.millis(VIEWPORT_SETTLE_MILLIS));
 
     /**
      * Constructs a GISController with a specified GISModel and GISView.
@@ -41,6 +47,17 @@ public class GISController {
     public GISController(GISModel _model, GISView _view) {
         mModel = _model;
         mView = _view;
+        mViewportPause.setOnFinished(_e -> mModel.updateViewport());
+    }
+
+    /**
+     * Signals that the visible area of the map changed. In sticky mode the missing data is loaded
+     * once the viewport has not changed for {@link #VIEWPORT_SETTLE_MILLIS} milliseconds.
+     */
+    private void viewportChanged() {
+        if (mModel.isStickyModeOn()) {
+            mViewportPause.playFromStart();
+        }
     }
 
     /**
@@ -129,36 +146,48 @@ public class GISController {
                     System.out.println("ZoomToFit button clicked");
                     mModel.zoomToFit();
                     mModel.calculateScale();
+                    viewportChanged();
                     break;
                 case "ZoomIn":
                     System.out.println("ZoomIn button clicked");
                     mModel.zoom(1.3);
                     mModel.calculateScale();
+                    viewportChanged();
                     break;
                 case "ZoomOut":
                     System.out.println("ZoomOut button clicked");
                     mModel.zoom(1 / 1.3);
                     mModel.calculateScale();
+                    viewportChanged();
                     break;
                 case "ScrollUp":
                     System.out.println("ScrollUp button clicked");
                     mModel.scrollVertical(20);
+                    mModel.trackPan(0, 20);
+                    viewportChanged();
                     break;
                 case "ScrollDown":
                     System.out.println("ScrollDown button clicked");
                     mModel.scrollVertical(-20);
+                    mModel.trackPan(0, -20);
+                    viewportChanged();
                     break;
                 case "ScrollLeft":
                     System.out.println("ScrollLeft button clicked");
                     mModel.scrollHorizontal(20);
+                    mModel.trackPan(20, 0);
+                    viewportChanged();
                     break;
                 case "ScrollRight":
                     System.out.println("ScrollRight button clicked");
                     mModel.scrollHorizontal(-20);
+                    mModel.trackPan(-20, 0);
+                    viewportChanged();
                     break;
                 case "Rotate":
                     System.out.println("Rotate button clicked");
                     mModel.rotate(15);
+                    viewportChanged();
                     break;
                 case "POI":
                     System.out.println("POI button clicked");
@@ -171,9 +200,6 @@ public class GISController {
                 case "Sticky":
                     System.out.println("Sticky button clicked");
                     mModel.toggleStickyMode();
-                    if (mModel.isStickyModeOn()) {
-                        mModel.setStickyBBox(mView.getVisibleArea());
-                    }
                     mModel.loadData(mView.getSelectedServer());
                     break;
                 default:
@@ -209,6 +235,7 @@ public class GISController {
                 } else if (name.equalsIgnoreCase("height")) {
                     mModel.setHeight(val);
                 }
+                viewportChanged();
             }
         }
     }
@@ -259,6 +286,7 @@ public class GISController {
                         if (mZoomRect.getWidth() > 10 && mZoomRect.getHeight() > 10) { // Prevent too small rectangles
                             mModel.zoomRect(mZoomRect.getBounds());
                             mModel.calculateScale();
+                            viewportChanged();
                         }
                         mZoomRect = null;
                         break;
@@ -275,6 +303,7 @@ public class GISController {
                     case "MOUSE_DRAGGED":
                         int x = (int) _e.getX();
                         int y = (int) _e.getY();
+                        mModel.trackPan(x - mStartX - mDeltaX, y - mStartY - mDeltaY);
                         mDeltaX = x - mStartX;
                         mDeltaY = y - mStartY;
                         mView.translate(mDeltaX, mDeltaY);
@@ -283,6 +312,7 @@ public class GISController {
                         mView.mScene.setCursor(Cursor.DEFAULT);
                         mModel.scrollHorizontal((int) mDeltaX);
                         mModel.scrollVertical((int) mDeltaY);
+                        viewportChanged();
                         break;
                 }
             }
@@ -315,7 +345,9 @@ public class GISController {
                 zoomFactor = 1 / 1.1;
             }
             mModel.zoom(zoomPoint, zoomFactor);
+            mModel.trackZoom(zoomFactor);
             mModel.calculateScale();
+            viewportChanged();
         }
     }
 
@@ -387,5 +419,6 @@ public class GISController {
      */
     public void zoomToScale(int _scale) {
         mModel.zoomToScale(_scale);
+        viewportChanged();
     }
 }
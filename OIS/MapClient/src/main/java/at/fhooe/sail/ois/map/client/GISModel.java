@@ -1,26 +1,39 @@
 package at.fhooe.sail.ois.map.client;
 
-import at.fhooe.sail.ois.map.server.DummyGIS;
-import at.fhooe.sail.ois.map.server.OSMServer;
-import at.fhooe.sail.ois.map.server.VerwaltungsgrenzenServer;
+import at.fhooe.sail.ois.map.server.GeoDataException;
+import at.fhooe.sail.ois.map.server.GeoDataSourceRegistry;
+import at.fhooe.sail.ois.map.server.GeoLayer;
+import at.fhooe.sail.ois.map.server.GeoQuery;
+import at.fhooe.sail.ois.map.server.GeoQueryCancelledException;
+import at.fhooe.sail.ois.map.server.IGeoDataSource;
+import at.fhooe.sail.ois.map.server.IQueryProgressListener;
+import at.fhooe.sail.ois.map.server.QueryMonitor;
 import at.fhooe.sail.ois.map.server.feature.*;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.Point;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This class represents a geographic information system (GIS) model
  * that manages and displays graphical elements like polygons on a map.
  */
 public class GISModel {
+    /** Maximum duration of the query of a single layer before the layer is skipped. */
+    public static final int LOAD_TIMEOUT_SECONDS = 30;
+
     private IDataObserver mObserver;
     private BufferedImage mImage;
     private int mWidth = 640;
@@ -33,7 +46,34 @@ public class GISModel {
     private boolean mShowPOIs = true;
     private int mStoredImagesCounter = 0;
     private boolean mIsStickyModeOn = false;
-    private Rectangle mStickyBBox = null;
+    private ViewportLoader mViewportLoader = null;
+    private TilePrefetcher mPrefetcher = null;
+    private long mLoaderVersion = -1;
+    private long mLastPrefetchNanos = 0;
+    private Executor mUiExecutor = Runnable::run;
+    private QueryMonitor mLoadMonitor = null;
+    private final ExecutorService mLoadExecutor = Executors.newSingleThreadExecutor(_r -> {
+        Thread t = new Thread(_r, "GISModel-Loader");
+        t.setDaemon(true);
+        return t;
+    });
+    private final IQueryProgressListener mProgressListener = new IQueryProgressListener() {
+        @Override
+        public void layerStarted(GeoLayer _layer) {
+            System.out.println("Loading layer " + _layer + " ...");
+        }
+
+        @Override
+        public void layerFinished(GeoLayer _layer, int _count) {
+            System.out.println("Loaded layer " + _layer + ": " + _count + " objects");
+        }
+
+        @Override
+        public void layerFailed(GeoLayer _layer, GeoDataException _e) {
+            System.out.println("Skipped layer " + _layer + ": " + _e.getMessage());
+        }
+    };
+    private final GeoDataSourceRegistry mRegistry = GeoDataSourceRegistry.createDefault();
 
     /**
      * Constructor for the GISModel class.
@@ -55,14 +95,17 @@ public class GISModel {
         g.fillRect(0, 0, mImage.getWidth(), mImage.getHeight());
         g.setColor(Color.BLACK);
 
-        for (GeoObject obj : mData) {
+        for (int i = 0; i < mData.size(); i++) {
+            GeoObject obj = mData.get(i);
             PresentationSchema schema = mDrawingContext.getSchema(obj.getmType());
-            schema.paint(g, obj, mTransformationMatrix);
+            if (schema.isVisibleAt(mScale)) {
+                schema.paint(g, obj, mTransformationMatrix);
+            }
         }
 
         if (mShowPOIs) {
-            for (POIObject poi : mPois) {
-                poi.draw(g, mTransformationMatrix, null);
+            for (int i = 0; i < mPois.size(); i++) {
+                mPois.get(i).draw(g, mTransformationMatrix, null);
             }
         }
 
@@ -203,7 +246,7 @@ public class GISModel {
         if (mData.isEmpty()) {
             return;
         }
-        Rectangle bounds = getMapBounds(new Vector<>(mData));
+        Rectangle2D bounds = getMapBounds(new Vector<>(mData));
         mTransformationMatrix = Matrix.zoomToFit(bounds, new Rectangle(0, 0, mWidth, mHeight));
         repaint();
     }
@@ -238,10 +281,11 @@ public class GISModel {
      * @param _poly The polygons to calculate the bounding box for.
      * @return The bounding box.
      */
-    public Rectangle getMapBounds(Vector<GeoObject> _poly) {
-        Rectangle rect = _poly.firstElement().getBounds();
+    public Rectangle2D getMapBounds(Vector<GeoObject> _poly) {
+        Rectangle2D.Double rect = new Rectangle2D.Double();
+        rect.setRect(_poly.firstElement().getBounds());
         for (GeoObject obj : _poly) {
-            rect = rect.union(obj.getBounds());
+            rect.add(obj.getBounds());
         }
         return rect;
     }
@@ -285,38 +329,249 @@ public class GISModel {
 
     /**
      * Loads data from the specified server.
-     * @param _server The server to load data from.
+     * @param _server The name of the registered data source to load data from.
      */
     public void loadData(String _server) {
-        switch (_server) {
-            case "DummyGIS":
-                loadGISData();
-                break;
-            case "Verwaltungsgrenzen-3857":
-                loadGeoData();
-                break;
-            case "OSM-Server-HGB":
-                loadOSMData();
-                break;
-            default:
-                System.out.println("Unknown server type: " + _server);
+        IGeoDataSource source = mRegistry.get(_server);
+        if (source == null) {
+            System.out.println("Unknown server type: " + _server);
+            return;
+        }
+        loadData(source);
+    }
+
+    /**
+     * Loads data from the given data source and replaces the displayed data with it.
+     * The data is loaded on a background thread; a new load or viewport update aborts a load still in flight.
+     * Layers that fail or exceed {@link #LOAD_TIMEOUT_SECONDS} are skipped, the remaining layers are shown.
+     * In sticky mode the data is loaded incrementally for the visible area by a {@link ViewportLoader};
+     * if nothing is displayed yet, the map is zoomed to the extent of the source first.
+     * @param _source The data source to load the data from.
+     */
+    public void loadData(IGeoDataSource _source) {
+        stopViewportLoading();
+        QueryMonitor monitor = startLoad(mProgressListener);
+        boolean sticky = mIsStickyModeOn;
+        boolean empty = mData.isEmpty();
+        mLoadExecutor.execute(() -> {
+            if (monitor.isCancelled()) {
+                return;
+            }
+            if (sticky) {
+                Rectangle2D extent = null;
+                try {
+                    extent = _source.getExtent();
+                } catch (GeoDataException e) {
+                    System.out.println("Error: " + e.getMessage());
+                }
+                if (!empty || extent != null) {
+                    Rectangle2D bounds = extent;
+                    mUiExecutor.execute(() -> startViewportLoading(_source, bounds, monitor));
+                    return;
+                }
+            }
+
+            Vector<GeoObject> geoObjects = new Vector<>();
+            List<GeoLayer> failed;
+            try {
+                failed = _source.query(GeoQuery.ALL, geoObjects::add, monitor);
+            } catch (GeoQueryCancelledException e) {
+                return;
+            }
+            if (!failed.isEmpty()) {
+                System.out.println("Incomplete data of " + _source.getName() + ", missing layers: " + failed);
+            }
+            mUiExecutor.execute(() -> showLoadedData(_source, geoObjects, monitor));
+        });
+    }
+
+    /**
+     * Called on the UI thread when a full load finished. The result is dropped if a newer load was started meanwhile.
+     * @param _source The data source the data was loaded from.
+     * @param _data The loaded geo objects.
+     * @param _monitor The monitor of the load.
+     */
+    private void showLoadedData(IGeoDataSource _source, Vector<GeoObject> _data, QueryMonitor _monitor) {
+        if (_monitor != mLoadMonitor || _monitor.isCancelled()) {
+            return;
+        }
+        mDrawingContext = _source.getDrawingContext();
+        mData.clear();
+        mData.addAll(_data);
+        zoomToFit();
+        repaint();
+    }
+
+    /**
+     * Called on the UI thread to switch to incremental loading of the visible area in sticky mode.
+     * @param _source The data source to load the data from.
+     * @param _extent The extent of the source, or null if it is unknown.
+     * @param _monitor The monitor of the load that requested sticky loading.
+     */
+    private void startViewportLoading(IGeoDataSource _source, Rectangle2D _extent, QueryMonitor _monitor) {
+        if (_monitor != mLoadMonitor || _monitor.isCancelled()) {
+            return;
+        }
+        if (mData.isEmpty() && _extent != null) {
+            mTransformationMatrix = Matrix.zoomToFit(_extent, new Rectangle(0, 0, mWidth, mHeight));
         }
+        mDrawingContext = _source.getDrawingContext();
+        ViewportLoader loader = new ViewportLoader(_source);
+        loader.setClipping(true);
+        mViewportLoader = loader;
+        mPrefetcher = new TilePrefetcher(loader, _bounds -> mUiExecutor.execute(() -> onPrefetched(loader, _bounds)));
+        mData.clear();
+        updateViewport();
     }
 
     /**
-     * Loads data from the DummyGIS server and adds it to the mData list.
+     * Loads the data missing for the visible area in sticky mode on a background thread and repaints the map
+     * once it arrived. A viewport update still in flight is aborted, the runs it loaded so far are kept.
+     * Afterwards the regions the viewport is expected to move into are prefetched in the background.
+     * Does nothing if sticky mode is off.
      */
-    public void loadGISData() {
-        DummyGIS mDummyGIS = new DummyGIS();
-        if (mDummyGIS.init()) {
-            mDrawingContext = mDummyGIS.getDrawingContext();
-            Vector<GeoObject> geoObjects = mDummyGIS.extractData("SELECT * FROM data WHERE type in (233, 931, 932, 933, 934, 1101)");
-            if (geoObjects != null) {
-                mData.clear();
-                mData.addAll(geoObjects);
-                repaint();
+    public void updateViewport() {
+        if (mViewportLoader == null) {
+            return;
+        }
+        ViewportLoader loader = mViewportLoader;
+        Rectangle2D visible = getVisibleArea();
+        int scale = mScale;
+        QueryMonitor monitor = startLoad(null);
+        mLoadExecutor.execute(() -> {
+            try {
+                loader.update(visible, scale, monitor);
+            } catch (GeoQueryCancelledException e) {
+                // superseded by a newer viewport, the next update refreshes the map
+                return;
+            } catch (GeoDataException e) {
+                System.out.println("Error: " + e.getMessage());
             }
+            mUiExecutor.execute(() -> {
+                if (loader == mViewportLoader) {
+                    refreshFromLoader();
+                }
+            });
+        });
+        mPrefetcher.prefetch(visible);
+        mLastPrefetchNanos = System.nanoTime();
+    }
+
+    /**
+     * Aborts the load in flight and creates the monitor of a new one.
+     * @param _listener Receives the progress of the new load, may be null.
+     * @return The monitor of the new load.
+     */
+    private QueryMonitor startLoad(IQueryProgressListener _listener) {
+        if (mLoadMonitor != null) {
+            mLoadMonitor.cancel();
         }
+        mLoadMonitor = new QueryMonitor(LOAD_TIMEOUT_SECONDS, _listener);
+        return mLoadMonitor;
+    }
+
+    /**
+     * Replaces the displayed data with the data of the viewport loader if it changed since the last call.
+     */
+    private void refreshFromLoader() {
+        long version = mViewportLoader.getVersion();
+        if (version != mLoaderVersion) {
+            mLoaderVersion = version;
+            mData.clear();
+            mData.addAll(mViewportLoader.getObjects());
+            repaint();
+        }
+    }
+
+    /**
+     * Called on the UI thread after a prefetched run was merged. The map is only repainted if the run is visible,
+     * otherwise the data is picked up by the next viewport update.
+     * @param _loader The loader the run was merged into.
+     * @param _bounds The bounds of the run in world coordinates.
+     */
+    private void onPrefetched(ViewportLoader _loader, Rectangle2D _bounds) {
+        if (_loader == mViewportLoader && _bounds.intersects(getVisibleArea())) {
+            refreshFromLoader();
+        }
+    }
+
+    /**
+     * Reports a pan step to the prefetcher. The prefetch is restarted at most every 100 ms during a drag.
+     * @param _dx The movement of the map content in x direction in pixels.
+     * @param _dy The movement of the map content in y direction in pixels.
+     */
+    public void trackPan(double _dx, double _dy) {
+        if (mPrefetcher == null) {
+            return;
+        }
+        // the viewport moves opposite to the content
+        Point2D.Double world = mTransformationMatrix.invers().cleanTranslation().multiply(new Point2D.Double(-_dx, -_dy));
+        mPrefetcher.addMotion(world.x, world.y);
+        long now = System.nanoTime();
+        if (now - mLastPrefetchNanos > 100_000_000L) {
+            mLastPrefetchNanos = now;
+            mPrefetcher.prefetch(getVisibleArea());
+        }
+    }
+
+    /**
+     * Reports a zoom step to the prefetcher.
+     * @param _factor The zoom factor; values below 1 zoom out.
+     */
+    public void trackZoom(double _factor) {
+        if (mPrefetcher != null) {
+            mPrefetcher.addZoom(_factor);
+        }
+    }
+
+    /**
+     * Stops the incremental loading of sticky mode and cancels the load in flight and all prefetches.
+     */
+    private void stopViewportLoading() {
+        if (mLoadMonitor != null) {
+            mLoadMonitor.cancel();
+        }
+        if (mPrefetcher != null) {
+            mPrefetcher.shutdown();
+        }
+        mPrefetcher = null;
+        mViewportLoader = null;
+        mLoaderVersion = -1;
+    }
+
+    /**
+     * Sets the executor used to hand results of background work over to the UI thread.
+     * @param _executor The UI executor, e.g. {@code Platform::runLater}.
+     */
+    public void setUiExecutor(Executor _executor) {
+        mUiExecutor = _executor;
+    }
+
+    /**
+     * Calculates the area of the map that is currently visible.
+     * @return The visible area in world coordinates.
+     */
+    public Rectangle2D getVisibleArea() {
+        Matrix inverse = mTransformationMatrix.invers();
+        Rectangle2D.Double area = new Rectangle2D.Double();
+        double[][] corners = {{0, 0}, {mWidth, 0}, {0, mHeight}, {mWidth, mHeight}};
+        for (int i = 0; i < corners.length; i++) {
+            Point2D.Double pt = inverse.multiply(new Point2D.Double(corners[i][0], corners[i][1]));
+            if (i == 0) {
+                area.setRect(pt.x, pt.y, 0, 0);
+            } else {
+                area.add(pt);
+            }
+        }
+        return area;
+    }
+
+    /**
+     * Gets the registry of all data sources the model can load data from.
+     * @return The data source registry.
+     */
+    public GeoDataSourceRegistry getDataSourceRegistry() {
+        return mRegistry;
     }
 
     /**
@@ -357,51 +612,15 @@ public class GISModel {
         repaint();
     }
 
-    /**
-     * Loads data from the Verwaltungsgrenzen server.
-     */
-    public void loadGeoData() {
-        VerwaltungsgrenzenServer server = new VerwaltungsgrenzenServer();
-        mDrawingContext = server.getVerwaltungsgrenzenDrawingContext();
-        Vector<GeoObject> geoObjects;
-        if (mIsStickyModeOn && mStickyBBox != null) {
-            geoObjects = server.loadGeoDataWithinBBox(mStickyBBox);
-        } else {
-            geoObjects = server.extractData();
-        }
-        if (geoObjects != null) {
-            mData.clear();
-            mData.addAll(geoObjects);
-            zoomToFit();
-            repaint();
-        }
-    }
-
-    /**
-     * Loads data from the OSM server.
-     */
-    public void loadOSMData() {
-        OSMServer osmServer = new OSMServer();
-        mDrawingContext = osmServer.getOSMDrawingContext();
-        mData.clear();
-        if (mIsStickyModeOn && mStickyBBox != null) {
-            mData.addAll(osmServer.loadOSMDataWithinBBox(mStickyBBox));
-        } else {
-            mData.addAll(osmServer.loadOSMData());
-        }
-        zoomToFit();
-        repaint();
-    }
-
     /**
      * Loads points of interest (POI) data.
      */
     public void loadPOI() {
-        mPois.add((new POIObject("apartment.png", new Point(1615569, 6167042))));
-        mPois.add((new POIObject("aquarium.png", new Point(1616258,6166449))));
-        mPois.add((new POIObject("art-museum.png", new Point(1617627,6165262))));
-        mPois.add((new POIObject("augenarzt.png", new Point(1614780,6165312))));
-        mPois.add((new POIObject("badminton.png", new Point(1617110,6165448))));
+        mPois.add((new POIObject("apartment.png", 1615569, 6167042)));
+        mPois.add((new POIObject("aquarium.png", 1616258, 6166449)));
+        mPois.add((new POIObject("art-museum.png", 1617627, 6165262)));
+        mPois.add((new POIObject("augenarzt.png", 1614780, 6165312)));
+        mPois.add((new POIObject("badminton.png", 1617110, 6165448)));
     }
 
     /**
@@ -435,12 +654,13 @@ public class GISModel {
     }
 
     /**
-     * Toggles the sticky mode.
+     * Toggles the sticky mode. In sticky mode data is loaded for the visible area only,
+     * following every pan and zoom; turning it off stops the incremental loading.
      */
     public void toggleStickyMode() {
         mIsStickyModeOn = !mIsStickyModeOn;
         if (!mIsStickyModeOn) {
-            mStickyBBox = null;
+            stopViewportLoading();
         }
     }
 
@@ -451,16 +671,4 @@ public class GISModel {
     public boolean isStickyModeOn() {
         return mIsStickyModeOn;
     }
-
-    /**
-     * Sets the sticky bounding box.
-     * @param bbox The bounding box to set.
-     */
-    public void setStickyBBox(Rectangle bbox) {
-        var mapPoint1 = getMapPoint(new Point(bbox.x, bbox.y));
-        var mapPoint2 = getMapPoint(new Point(bbox.x + bbox.width, bbox.y + bbox.height));
-        var rect = new Rectangle(mapPoint1);
-        rect.add(mapPoint2);
-        mStickyBBox = rect;
-    }
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package at.fhooe.sail.ois.map.client;
 
+import at.fhooe.sail.ois.map.server.DummyGIS;
+import at.fhooe.sail.ois.map.server.VerwaltungsgrenzenServer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
@@ -38,6 +41,7 @@ public class GISView extends Application implements IDataObserver {
     @Override
     public void start(Stage primaryStage) {
         GISModel model = new GISModel();
+        model.setUiExecutor(Platform::runLater);
         mController = new GISController(model, this);
         model.addMapObserver(this);
 
@@ -54,20 +58,15 @@ public class GISView extends Application implements IDataObserver {
 
         Menu menuB = new Menu("B");
         menuB.setStyle("-fx-background-color: lightgrey;");
-        RadioMenuItem itemB = new RadioMenuItem("DummyGIS");
-        RadioMenuItem itemB2 = new RadioMenuItem("Verwaltungsgrenzen-3857");
-        RadioMenuItem itemB3 = new RadioMenuItem("OSM-Server-HGB");
-        itemB.setStyle("-fx-text-fill: black;");
-        itemB2.setStyle("-fx-text-fill: black;");
-        itemB3.setStyle("-fx-text-fill: black;");
-        menuB.getItems().addAll(itemB, itemB2, itemB3);
-
         mMenuBGroup = new ToggleGroup();
-        itemB.setToggleGroup(mMenuBGroup);
-        itemB2.setToggleGroup(mMenuBGroup);
-        itemB3.setToggleGroup(mMenuBGroup);
-        itemB.setDisable(true);
-        itemB2.setSelected(true);
+        for (String name : model.getDataSourceRegistry().getNames()) {
+            RadioMenuItem item = new RadioMenuItem(name);
+            item.setStyle("-fx-text-fill: black;");
+            item.setToggleGroup(mMenuBGroup);
+            item.setDisable(DummyGIS.NAME.equals(name));
+            item.setSelected(VerwaltungsgrenzenServer.NAME_3857.equals(name));
+            menuB.getItems().add(item);
+        }
 
         menuBar.getMenus().addAll(menuA, menuB);
         root.setTop(menuBar);
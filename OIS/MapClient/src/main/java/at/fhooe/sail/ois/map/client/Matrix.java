@@ -2,6 +2,7 @@ package at.fhooe.sail.ois.map.client;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 
 /**
  * This class represents a 3x3 transformation matrix for performing various geometric transformations
@@ -133,7 +134,54 @@ public class Matrix {
         double newX = mMatrix[0][0] * _pt.getX() + mMatrix[0][1] * _pt.getY() + mMatrix[0][2] * 1;
         double newY = mMatrix[1][0] * _pt.getX() + mMatrix[1][1] * _pt.getY() + mMatrix[1][2] * 1;
 
-        return new Point((int) newX, (int) newY);
+        return new Point((int) Math.round(newX), (int) Math.round(newY));
+    }
+
+    /**
+     * Transforms the x-coordinate of a world point without allocating a point object.
+     *
+     * @param _x The x-coordinate of the point.
+     * @param _y The y-coordinate of the point.
+     * @return The transformed x-coordinate.
+     */
+    public double transformX(double _x, double _y) {
+        return mMatrix[0][0] * _x + mMatrix[0][1] * _y + mMatrix[0][2];
+    }
+
+    /**
+     * Transforms the y-coordinate of a world point without allocating a point object.
+     *
+     * @param _x The x-coordinate of the point.
+     * @param _y The y-coordinate of the point.
+     * @return The transformed y-coordinate.
+     */
+    public double transformY(double _x, double _y) {
+        return mMatrix[1][0] * _x + mMatrix[1][1] * _y + mMatrix[1][2];
+    }
+
+    /**
+     * Transforms a packed array of world coordinates into device coordinates.
+     * The source array stores the points interleaved as x0, y0, x1, y1, ... and
+     * the results are rounded to the nearest pixel only at this final stage.
+     *
+     * @param _src The interleaved world coordinates.
+     * @param _numPoints The number of points to transform.
+     * @param _dstX The array receiving the device x-coordinates.
+     * @param _dstY The array receiving the device y-coordinates.
+     */
+    public void transform(double[] _src, int _numPoints, int[] _dstX, int[] _dstY) {
+        double m11 = mMatrix[0][0];
+        double m12 = mMatrix[0][1];
+        double m13 = mMatrix[0][2];
+        double m21 = mMatrix[1][0];
+        double m22 = mMatrix[1][1];
+        double m23 = mMatrix[1][2];
+        for (int i = 0, j = 0; i < _numPoints; i++, j += 2) {
+            double x = _src[j];
+            double y = _src[j + 1];
+            _dstX[i] = (int) Math.round(m11 * x + m12 * y + m13);
+            _dstY[i] = (int) Math.round(m21 * x + m22 * y + m23);
+        }
     }
 
     /**
@@ -243,10 +291,10 @@ public class Matrix {
      * @param _world The rectangle in world coordinates.
      * @param _win The rectangle in screen coordinates.
      * @return The scaling factor.
-     * @see java.awt.Rectangle
+     * @see java.awt.geom.Rectangle2D
      */
-    public static double getZoomFactorX(Rectangle _world, Rectangle _win) {
-        return (double) _win.width / _world.width;
+    public static double getZoomFactorX(Rectangle2D _world, Rectangle _win) {
+        return _win.width / _world.getWidth();
     }
 
     /**
@@ -255,10 +303,10 @@ public class Matrix {
      * @param _world The rectangle in world coordinates.
      * @param _win The rectangle in screen coordinates.
      * @return The scaling factor.
-     * @see java.awt.Rectangle
+     * @see java.awt.geom.Rectangle2D
      */
-    public static double getZoomFactorY(Rectangle _world, Rectangle _win) {
-        return (double) _win.height / _world.height;
+    public static double getZoomFactorY(Rectangle2D _world, Rectangle _win) {
+        return _win.height / _world.getHeight();
     }
 
     /**
@@ -268,10 +316,10 @@ public class Matrix {
      * @param _world The rectangle in world coordinates.
      * @param _win The rectangle in screen coordinates.
      * @return The transformation matrix.
-     * @see java.awt.Rectangle
+     * @see java.awt.geom.Rectangle2D
      */
-    public static Matrix zoomToFit(Rectangle _world, Rectangle _win) {
-        Matrix translateToOrigin = translate(-_world.x, -_world.y);
+    public static Matrix zoomToFit(Rectangle2D _world, Rectangle _win) {
+        Matrix translateToOrigin = translate(-_world.getX(), -_world.getY());
 
         double zoomX = getZoomFactorX(_world, _win);
         double zoomY = getZoomFactorY(_world, _win);
@@ -280,16 +328,19 @@ public class Matrix {
 
         Matrix mirrorX = mirrorX();
         Matrix transform = mirrorX.multiply(scale).multiply(translateToOrigin);
-        Rectangle transformedBounds = transform.multiply(_world);
 
-        double transX = (double) (_win.width - transformedBounds.width) / 2 - transformedBounds.x;
-        double transY = (double) (_win.height - transformedBounds.height) / 2 - transformedBounds.y;
+        double x1 = transform.transformX(_world.getMinX(), _world.getMinY());
+        double y1 = transform.transformY(_world.getMinX(), _world.getMinY());
+        double x2 = transform.transformX(_world.getMaxX(), _world.getMaxY());
+        double y2 = transform.transformY(_world.getMaxX(), _world.getMaxY());
+
+        double transX = (_win.width - (x2 - x1)) / 2 - x1;
+        double transY = (_win.height - (y2 - y1)) / 2 - y1;
         Matrix translateToCenter = translate(transX, transY);
 
         return translateToCenter.multiply(transform);
     }
 
-
     /**
      * Returns a matrix that extends an existing transformation
      * matrix to zoom in or out at a specific point.
@@ -175,5 +175,20 @@ public class OSMDrawingContext extends ADrawingContext {
         mContext.put(10024, new PresentationSchema(Color.LIGHTYELLOW, null, 1f)); // Toiletten
         mContext.put(10025, new PresentationSchema(Color.KHAKI, null, 1f)); // Unterstand
         mContext.put(10026, new PresentationSchema(Color.ROSYBROWN, null, 1f)); // Lagerung
+
+        // Small features are only drawn when zoomed in
+        setMaxScale(1110, 1130, 250); // Feldwege, Pfade, Gehwege
+        setMaxScale(9001, 9028, 150); // Gebäude
+        setMaxScale(10001, 10026, 150); // Einrichtungen
+    }
+
+    /**
+     * OSM objects of types without a schema are not drawn and therefore not loaded.
+     *
+     * @return false.
+     */
+    @Override
+    protected boolean drawsUnknownTypes() {
+        return false;
     }
 }
@@ -1,8 +1,10 @@
 package at.fhooe.sail.ois.map.client;
 
 import at.fhooe.sail.ois.map.server.feature.GeoObject;
+import at.fhooe.sail.ois.map.server.feature.GeoObjectPart;
 
 import java.awt.*;
+import java.util.Vector;
 import javafx.scene.paint.Color;
 
 /**
@@ -14,6 +16,10 @@ public class PresentationSchema {
     private Color mLineColor = null;
     private Color mFillColor = null;
     private float mLineWidth = -1.0f;
+    private java.awt.Color mAwtLineColor = null;
+    private java.awt.Color mAwtFillColor = null;
+    private BasicStroke mStroke = null;
+    private int mMaxScale = 0;
 
     /**
      * Constructs a PresentationSchema with the specified line color, fill color, and line width.
@@ -26,6 +32,20 @@ public class PresentationSchema {
         mLineColor = _lineColor;
         mFillColor = _fillColor;
         mLineWidth = _lineWidth;
+        mAwtLineColor = toAwtColor(_lineColor);
+        mAwtFillColor = toAwtColor(_fillColor);
+        mStroke = new BasicStroke(_lineWidth);
+    }
+
+    /**
+     * Converts a JavaFX color into a java.awt.Color object.
+     *
+     * @param _color the JavaFX color to convert.
+     * @return the converted color, or null if no color is given.
+     */
+    private static java.awt.Color toAwtColor(Color _color) {
+        if (_color == null) return null;
+        return new java.awt.Color((float) _color.getRed(), (float) _color.getGreen(), (float) _color.getBlue(), (float) _color.getOpacity());
     }
 
     /**
@@ -36,8 +56,10 @@ public class PresentationSchema {
      * @param _m the transformation matrix to apply to the GeoObject's polygon.
      */
     public void paint(Graphics2D _g, GeoObject _obj, Matrix _m) {
-
-        _obj.getGeoObjectParts().forEach(geoObjectPart -> geoObjectPart.draw(_g, _m, this));
+        Vector<GeoObjectPart> parts = _obj.getGeoObjectParts();
+        for (int i = 0; i < parts.size(); i++) {
+            parts.get(i).draw(_g, _m, this);
+        }
     }
 
     /**
@@ -46,8 +68,7 @@ public class PresentationSchema {
      * @return the line color, or null if no line color is set.
      */
     public java.awt.Color getLineColor() {
-        if(mLineColor == null) return null;
-        return new java.awt.Color((float) mLineColor.getRed(), (float) mLineColor.getGreen(), (float) mLineColor.getBlue(), (float) mLineColor.getOpacity());
+        return mAwtLineColor;
     }
 
     /**
@@ -56,8 +77,7 @@ public class PresentationSchema {
      * @return the fill color, or null if no fill color is set.
      */
     public java.awt.Color getFillColor() {
-        if(mFillColor == null) return null;
-        return new java.awt.Color((float) mFillColor.getRed(), (float) mFillColor.getGreen(), (float) mFillColor.getBlue(), (float) mFillColor.getOpacity());
+        return mAwtFillColor;
     }
 
     /**
@@ -68,4 +88,42 @@ public class PresentationSchema {
     public float getLineWidth() {
         return mLineWidth;
     }
+
+    /**
+     * Gets the stroke matching the line width.
+     *
+     * @return the stroke used to draw the lines of the shape.
+     */
+    public BasicStroke getStroke() {
+        return mStroke;
+    }
+
+    /**
+     * Gets the largest map scale the objects are drawn at.
+     *
+     * @return the maximum scale denominator, or 0 if the objects are drawn at every scale.
+     */
+    public int getMaxScale() {
+        return mMaxScale;
+    }
+
+    /**
+     * Sets the largest map scale the objects are drawn at; when zoomed out further they are hidden
+     * and not loaded at all.
+     *
+     * @param _maxScale the maximum scale denominator as shown in the view, or 0 to draw at every scale.
+     */
+    public void setMaxScale(int _maxScale) {
+        mMaxScale = _maxScale;
+    }
+
+    /**
+     * Checks whether the objects are drawn at a map scale.
+     *
+     * @param _scale the scale denominator, or 0 if it is not known.
+     * @return true if the objects are drawn at the scale.
+     */
+    public boolean isVisibleAt(int _scale) {
+        return mMaxScale <= 0 || _scale <= 0 || _scale <= mMaxScale;
+    }
 }
@@ -0,0 +1,202 @@
+package at.fhooe.sail.ois.map.client;
+
+import at.fhooe.sail.ois.map.server.GeoDataException;
+import at.fhooe.sail.ois.map.server.GeoQueryCancelledException;
+import at.fhooe.sail.ois.map.server.QueryMonitor;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+/**
+ * Speculatively loads the tiles the viewport is about to move into.
+ *
+ * The pan velocity is estimated from the motion samples reported by the controller and smoothed with an
+ * exponential moving average. The predicted region is the viewport shifted by the distance covered within
+ * {@link #LOOKAHEAD_SECONDS}, widened by half a tile, and enlarged when the user zooms out. Missing runs of
+ * that region outside of the viewport, whose tiles the foreground update loads, are loaded on low-priority
+ * background threads and merged into the {@link ViewportLoader}; runs that are no longer part of the predicted
+ * region are cancelled.
+ */
+public class TilePrefetcher {
+
+    /** How far ahead the motion is extrapolated. */
+    public static final double LOOKAHEAD_SECONDS = 1.0;
+    /** Maximum number of runs loaded speculatively at the same time. */
+    public static final int MAX_RUNS = 8;
+    /** Maximum duration of a single layer query of a prefetch. */
+    public static final int TIMEOUT_SECONDS = 20;
+
+    private static final double SMOOTHING = 0.3;
+    private static final long STALE_NANOS = 500_000_000L;
+    private static final double ZOOM_OUT_GROWTH = 1.5;
+
+    private final ViewportLoader mLoader;
+    private final Consumer<Rectangle2D> mOnLoaded;
+    private final ExecutorService mExecutor;
+    private final Map<ViewportLoader.TileRun, Future<?>> mInFlight = new ConcurrentHashMap<>();
+
+    private double mVelocityX = 0;
+    private double mVelocityY = 0;
+    private long mLastSampleNanos = 0;
+    private long mLastZoomOutNanos = 0;
+
+    /**
+     * Constructs a TilePrefetcher.
+     *
+     * @param _loader the loader the prefetched data is merged into.
+     * @param _onLoaded called on a background thread with the bounds of every run that was merged.
+     */
+    public TilePrefetcher(ViewportLoader _loader, Consumer<Rectangle2D> _onLoaded) {
+        mLoader = _loader;
+        mOnLoaded = _onLoaded;
+        mExecutor = Executors.newFixedThreadPool(2, _r -> {
+            Thread t = new Thread(_r, "TilePrefetcher");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Reports a movement of the viewport, e.g. one step of a drag.
+     *
+     * @param _dx the movement of the viewport in x direction in world units.
+     * @param _dy the movement of the viewport in y direction in world units.
+     */
+    public synchronized void addMotion(double _dx, double _dy) {
+        long now = System.nanoTime();
+        double seconds = (now - mLastSampleNanos) / 1e9;
+        if (mLastSampleNanos == 0 || now - mLastSampleNanos > STALE_NANOS) {
+            // first sample of a new gesture, no time base yet
+            mVelocityX = 0;
+            mVelocityY = 0;
+        } else if (seconds > 0) {
+            mVelocityX += SMOOTHING * (_dx / seconds - mVelocityX);
+            mVelocityY += SMOOTHING * (_dy / seconds - mVelocityY);
+        }
+        mLastSampleNanos = now;
+    }
+
+    /**
+     * Reports a zoom step, e.g. one scroll event.
+     *
+     * @param _factor the zoom factor; values below 1 zoom out.
+     */
+    public synchronized void addZoom(double _factor) {
+        if (_factor < 1) {
+            mLastZoomOutNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Calculates the region the viewport is expected to cover next.
+     *
+     * @param _viewport the current viewport in world coordinates.
+     * @return the predicted region in world coordinates.
+     */
+    public synchronized Rectangle2D predict(Rectangle2D _viewport) {
+        long now = System.nanoTime();
+        double vx = now - mLastSampleNanos > STALE_NANOS ? 0 : mVelocityX;
+        double vy = now - mLastSampleNanos > STALE_NANOS ? 0 : mVelocityY;
+        double width = _viewport.getWidth();
+        double height = _viewport.getHeight();
+        if (now - mLastZoomOutNanos <= STALE_NANOS) {
+            width *= ZOOM_OUT_GROWTH;
+            height *= ZOOM_OUT_GROWTH;
+        }
+        double margin = ViewportLoader.tileSize(ViewportLoader.levelFor(_viewport)) / 2;
+        Rectangle2D.Double region = new Rectangle2D.Double(
+                _viewport.getCenterX() - width / 2 - margin, _viewport.getCenterY() - height / 2 - margin,
+                width + 2 * margin, height + 2 * margin);
+        region.add(new Rectangle2D.Double(region.x + vx * LOOKAHEAD_SECONDS, region.y + vy * LOOKAHEAD_SECONDS,
+                region.width, region.height));
+        return region;
+    }
+
+    /**
+     * Starts loading the missing runs of the predicted region and cancels running prefetches outside of it.
+     *
+     * @param _viewport the current viewport in world coordinates.
+     */
+    public void prefetch(Rectangle2D _viewport) {
+        Rectangle2D region = predict(_viewport);
+        int level = ViewportLoader.levelFor(_viewport);
+
+        for (Map.Entry<ViewportLoader.TileRun, Future<?>> e : mInFlight.entrySet()) {
+            if (e.getKey().getLevel() != level || !region.intersects(e.getKey().getBounds())) {
+                e.getValue().cancel(true);
+                mInFlight.remove(e.getKey(), e.getValue());
+            }
+        }
+
+        // the tiles of the viewport itself are loaded by the foreground update
+        List<ViewportLoader.TileRun> runs = mLoader.getMissingRuns(region, _viewport, level);
+        for (ViewportLoader.TileRun run : runs) {
+            if (mInFlight.size() >= MAX_RUNS) {
+                break;
+            }
+            if (mInFlight.containsKey(run)) {
+                continue;
+            }
+            // register before starting, so the task always finds itself in the map;
+            // cancelling the task also aborts its database query, which ignores thread interrupts
+            QueryMonitor monitor = new QueryMonitor(TIMEOUT_SECONDS, null);
+            FutureTask<Void> task = new FutureTask<>(() -> load(run, monitor), null) {
+                @Override
+                public boolean cancel(boolean _mayInterruptIfRunning) {
+                    monitor.cancel();
+                    return super.cancel(_mayInterruptIfRunning);
+                }
+            };
+            mInFlight.put(run, task);
+            mExecutor.execute(task);
+        }
+    }
+
+    /**
+     * Cancels all running prefetches and stops the background threads.
+     */
+    public void shutdown() {
+        for (Future<?> future : mInFlight.values()) {
+            future.cancel(true);
+        }
+        mInFlight.clear();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the number of runs currently being prefetched.
+     *
+     * @return the number of runs in flight.
+     */
+    public int getInFlightCount() {
+        return mInFlight.size();
+    }
+
+    /**
+     * Loads one run on a background thread and merges it, unless the prefetch was cancelled meanwhile.
+     */
+    private void load(ViewportLoader.TileRun _run, QueryMonitor _monitor) {
+        try {
+            List<GeoObject>[] result = mLoader.fetch(_run, _monitor);
+            if (!Thread.currentThread().isInterrupted() && mInFlight.containsKey(_run)) {
+                mLoader.merge(_run, result);
+                mOnLoaded.accept(_run.getBounds());
+            }
+        } catch (GeoQueryCancelledException e) {
+            // superseded by a newer prefetch
+        } catch (GeoDataException e) {
+            System.out.println("Prefetch of " + _run + " failed: " + e.getMessage());
+        } finally {
+            mInFlight.remove(_run);
+        }
+    }
+}
@@ -0,0 +1,599 @@
+package at.fhooe.sail.ois.map.client;
+
+import at.fhooe.sail.ois.map.server.GeoDataException;
+import at.fhooe.sail.ois.map.server.GeoLayer;
+import at.fhooe.sail.ois.map.server.GeoQuery;
+import at.fhooe.sail.ois.map.server.GeoQueryCancelledException;
+import at.fhooe.sail.ois.map.server.IGeoDataSource;
+import at.fhooe.sail.ois.map.server.QueryMonitor;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+import at.fhooe.sail.ois.map.server.transform.WebMercatorTransform;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the data of a source incrementally as the visible area of the map changes.
+ *
+ * The world is divided into a quadtree of square tiles. For every viewport the finest tile level is chosen
+ * that covers the viewport with at most {@link #MAX_TILES_PER_VIEW} tiles; only tiles that are neither loaded
+ * themselves nor covered by a loaded coarser tile are queried. Missing tiles of the same row are merged into
+ * runs, so each run costs one query per layer. The results are merged into an in-memory index that removes
+ * duplicates by id, type and clip rectangle, so the pieces of a clipped geometry are kept apart. Tiles far
+ * away from the viewport are evicted once the estimated size of the loaded data exceeds the memory cap.
+ *
+ * All methods are thread-safe, the queries themselves run without holding the lock.
+ */
+public class ViewportLoader {
+
+    /** Maximum number of tiles loaded for one viewport; larger viewports use a coarser tile level. */
+    public static final int MAX_TILES_PER_VIEW = 16;
+    /** Finest tile level. */
+    public static final int MAX_LEVEL = 24;
+    /** Default upper bound for the estimated size of the loaded data. */
+    public static final long DEFAULT_MEMORY_CAP = 256L * 1024 * 1024;
+
+    private static final double WORLD_SIZE = 2 * WebMercatorTransform.ORIGIN_SHIFT;
+    private static final double WORLD_ORIGIN = -WebMercatorTransform.ORIGIN_SHIFT;
+
+    /**
+     * A horizontal run of adjacent tiles of the same level and row, loaded with one query per layer.
+     */
+    public static final class TileRun {
+        final int mLevel;
+        final long mRow;
+        final long mFirstColumn;
+        final long mLastColumn;
+
+        TileRun(int _level, long _row, long _firstColumn, long _lastColumn) {
+            mLevel = _level;
+            mRow = _row;
+            mFirstColumn = _firstColumn;
+            mLastColumn = _lastColumn;
+        }
+
+        /**
+         * Gets the area covered by the run in world coordinates.
+         *
+         * @return the bounds of the run.
+         */
+        public Rectangle2D getBounds() {
+            double size = tileSize(mLevel);
+            return new Rectangle2D.Double(WORLD_ORIGIN + mFirstColumn * size, WORLD_ORIGIN + mRow * size,
+                    (mLastColumn - mFirstColumn + 1) * size, size);
+        }
+
+        /**
+         * Gets the tile level of the run.
+         *
+         * @return the tile level.
+         */
+        public int getLevel() {
+            return mLevel;
+        }
+
+        /**
+         * Gets the number of tiles in the run.
+         *
+         * @return the number of tiles.
+         */
+        public int getTileCount() {
+            return (int) (mLastColumn - mFirstColumn + 1);
+        }
+
+        @Override
+        public boolean equals(Object _o) {
+            if (!(_o instanceof TileRun)) {
+                return false;
+            }
+            TileRun r = (TileRun) _o;
+            return mLevel == r.mLevel && mRow == r.mRow && mFirstColumn == r.mFirstColumn && mLastColumn == r.mLastColumn;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (((31 * mLevel + mRow) * 31 + mFirstColumn) * 31 + mLastColumn);
+        }
+
+        public String toString() {
+            return "TileRun{level=" + mLevel + ", row=" + mRow + ", columns=" + mFirstColumn + ".." + mLastColumn + "}";
+        }
+    }
+
+    /** A loaded geo object together with the number of tiles referencing it. */
+    private static final class LoadedObject {
+        final GeoObject mObject;
+        final long mBytes;
+        int mRefs;
+
+        LoadedObject(GeoObject _object) {
+            mObject = _object;
+            mBytes = _object.getEstimatedBytes();
+        }
+    }
+
+    /** A loaded tile and the objects it references. */
+    private static final class Tile {
+        final int mLevel;
+        final long mColumn;
+        final long mRow;
+        final List<LoadedObject> mEntries = new ArrayList<>();
+
+        Tile(int _level, long _column, long _row) {
+            mLevel = _level;
+            mColumn = _column;
+            mRow = _row;
+        }
+    }
+
+    private final IGeoDataSource mSource;
+    private final List<GeoLayer> mLayers;
+    private final long mMemoryCap;
+    private final HashMap<TileKey, Tile> mTiles = new HashMap<>();
+    private final LinkedHashMap<String, LoadedObject>[] mEntries;
+    private final int[] mLevelScales = new int[MAX_LEVEL + 1];
+    private volatile boolean mClipping = false;
+    private long mEstimatedBytes = 0;
+    private long mVersion = 0;
+    private Rectangle2D mViewport;
+    private List<GeoObject> mObjects;
+
+    /**
+     * Constructs a ViewportLoader with the default memory cap.
+     *
+     * @param _source the data source to load from.
+     */
+    public ViewportLoader(IGeoDataSource _source) {
+        this(_source, DEFAULT_MEMORY_CAP);
+    }
+
+    /**
+     * Constructs a ViewportLoader.
+     *
+     * @param _source the data source to load from.
+     * @param _memoryCap the upper bound for the estimated size of the loaded data in bytes.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ViewportLoader(IGeoDataSource _source, long _memoryCap) {
+        mSource = _source;
+        mLayers = _source.getLayers();
+        mMemoryCap = _memoryCap;
+        mEntries = new LinkedHashMap[mLayers.size()];
+        for (int i = 0; i < mEntries.length; i++) {
+            mEntries[i] = new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * Gets the data source of this loader.
+     *
+     * @return the data source.
+     */
+    public IGeoDataSource getSource() {
+        return mSource;
+    }
+
+    /**
+     * Enables the clip mode: large geometries are cut at the bounds of each run instead of being loaded in full.
+     * The pieces of a geometry loaded by different runs are kept side by side and drawn without seams.
+     *
+     * @param _clipping true to clip large geometries.
+     */
+    public void setClipping(boolean _clipping) {
+        mClipping = _clipping;
+    }
+
+    /**
+     * Loads everything needed to display a viewport and evicts far-away data if the memory cap is exceeded.
+     *
+     * @param _viewport the visible area in world coordinates.
+     * @return true if the loaded data changed.
+     * @throws GeoDataException if a query fails; the runs loaded before the failure are kept.
+     */
+    public boolean update(Rectangle2D _viewport) throws GeoDataException {
+        return update(_viewport, new QueryMonitor());
+    }
+
+    /**
+     * Loads everything needed to display a viewport under the control of a monitor, so a newer viewport
+     * can abort the update. Runs loaded before the update was cancelled are kept.
+     *
+     * @param _viewport the visible area in world coordinates.
+     * @param _monitor the monitor controlling the queries.
+     * @return true if the loaded data changed.
+     * @throws GeoQueryCancelledException if the monitor was cancelled.
+     * @throws GeoDataException if a query fails; the runs loaded before the failure are kept.
+     */
+    public boolean update(Rectangle2D _viewport, QueryMonitor _monitor) throws GeoDataException {
+        return update(_viewport, 0, _monitor);
+    }
+
+    /**
+     * Loads everything needed to display a viewport at a map scale under the control of a monitor.
+     * The tiles are queried with the most detailed scale their level is displayed at, so they stay valid
+     * while zooming within the level.
+     *
+     * @param _viewport the visible area in world coordinates.
+     * @param _scale the current map scale denominator, or 0 to load all details.
+     * @param _monitor the monitor controlling the queries.
+     * @return true if the loaded data changed.
+     * @throws GeoQueryCancelledException if the monitor was cancelled.
+     * @throws GeoDataException if a query fails; the runs loaded before the failure are kept.
+     */
+    public boolean update(Rectangle2D _viewport, int _scale, QueryMonitor _monitor) throws GeoDataException {
+        List<TileRun> runs;
+        synchronized (this) {
+            mViewport = (Rectangle2D) _viewport.clone();
+            int level = levelFor(_viewport);
+            if (_scale > 0) {
+                // a level is displayed down to a viewport about 1.5 tiles wide, below that the next level is used
+                double finest = _scale * 1.5 * tileSize(level) / _viewport.getWidth();
+                mLevelScales[level] = Math.max(1, (int) Math.min(_scale, finest));
+            } else {
+                mLevelScales[level] = 0;
+            }
+            runs = getMissingRuns(_viewport, level);
+        }
+        boolean changed = false;
+        for (TileRun run : runs) {
+            merge(run, fetch(run, _monitor));
+            changed = true;
+        }
+        synchronized (this) {
+            return evict() || changed;
+        }
+    }
+
+    /**
+     * Calculates the runs of tiles of a level intersecting an area that are not loaded yet.
+     *
+     * @param _area the area in world coordinates.
+     * @param _level the tile level.
+     * @return the missing runs, row by row.
+     */
+    public synchronized List<TileRun> getMissingRuns(Rectangle2D _area, int _level) {
+        return getMissingRuns(_area, null, _level);
+    }
+
+    /**
+     * Calculates the runs of tiles of a level intersecting an area that are not loaded yet, leaving out the tiles
+     * intersecting a second area, e.g. the viewport that is loaded by {@link #update} at the same time.
+     *
+     * @param _area the area in world coordinates.
+     * @param _exclude the area whose tiles are left out, or null.
+     * @param _level the tile level.
+     * @return the missing runs, row by row.
+     */
+    public synchronized List<TileRun> getMissingRuns(Rectangle2D _area, Rectangle2D _exclude, int _level) {
+        double size = tileSize(_level);
+        long minCol = (long) Math.floor((_area.getMinX() - WORLD_ORIGIN) / size);
+        long maxCol = (long) Math.floor((_area.getMaxX() - WORLD_ORIGIN) / size);
+        long minRow = (long) Math.floor((_area.getMinY() - WORLD_ORIGIN) / size);
+        long maxRow = (long) Math.floor((_area.getMaxY() - WORLD_ORIGIN) / size);
+        long exMinCol = Long.MAX_VALUE;
+        long exMaxCol = Long.MIN_VALUE;
+        long exMinRow = Long.MAX_VALUE;
+        long exMaxRow = Long.MIN_VALUE;
+        if (_exclude != null) {
+            exMinCol = (long) Math.floor((_exclude.getMinX() - WORLD_ORIGIN) / size);
+            exMaxCol = (long) Math.floor((_exclude.getMaxX() - WORLD_ORIGIN) / size);
+            exMinRow = (long) Math.floor((_exclude.getMinY() - WORLD_ORIGIN) / size);
+            exMaxRow = (long) Math.floor((_exclude.getMaxY() - WORLD_ORIGIN) / size);
+        }
+        List<TileRun> runs = new ArrayList<>();
+        for (long row = minRow; row <= maxRow; row++) {
+            boolean excludedRow = row >= exMinRow && row <= exMaxRow;
+            long start = Long.MIN_VALUE;
+            for (long col = minCol; col <= maxCol + 1; col++) {
+                boolean excluded = excludedRow && col >= exMinCol && col <= exMaxCol;
+                boolean missing = col <= maxCol && !excluded && !isCovered(_level, col, row);
+                if (missing && start == Long.MIN_VALUE) {
+                    start = col;
+                } else if (!missing && start != Long.MIN_VALUE) {
+                    runs.add(new TileRun(_level, row, start, col - 1));
+                    start = Long.MIN_VALUE;
+                }
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Queries all layers for the area of a run. This does not change the loader and runs without holding its lock.
+     *
+     * @param _run the run to load.
+     * @return the geo objects of each layer.
+     * @throws GeoDataException if a query fails.
+     */
+    public List<GeoObject>[] fetch(TileRun _run) throws GeoDataException {
+        return fetch(_run, new QueryMonitor());
+    }
+
+    /**
+     * Queries all layers for the area of a run under the control of a monitor, at the scale of its level
+     * determined by the last {@link #update(Rectangle2D, int, QueryMonitor)}.
+     *
+     * @param _run the run to load.
+     * @param _monitor the monitor controlling the queries.
+     * @return the geo objects of each layer.
+     * @throws GeoQueryCancelledException if the monitor was cancelled.
+     * @throws GeoDataException if a query fails or times out.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<GeoObject>[] fetch(TileRun _run, QueryMonitor _monitor) throws GeoDataException {
+        int scale;
+        synchronized (this) {
+            scale = mLevelScales[_run.mLevel];
+        }
+        GeoQuery query = new GeoQuery(_run.getBounds(), scale, mClipping);
+        List<GeoObject>[] result = new List[mLayers.size()];
+        for (int i = 0; i < result.length; i++) {
+            List<GeoObject> objects = new ArrayList<>();
+            mSource.query(mLayers.get(i), query, objects::add, _monitor);
+            result[i] = objects;
+        }
+        return result;
+    }
+
+    /**
+     * Merges the result of a run into the loaded data. Every object is referenced by all tiles of the run its
+     * bounds intersect; tiles that were loaded in the meantime are skipped, and finer tiles covered by the
+     * run are replaced by it.
+     *
+     * @param _run the loaded run.
+     * @param _result the geo objects of each layer, as returned by {@link #fetch(TileRun)}.
+     */
+    public synchronized void merge(TileRun _run, List<GeoObject>[] _result) {
+        int count = _run.getTileCount();
+        Tile[] tiles = new Tile[count];
+        for (int i = 0; i < count; i++) {
+            long col = _run.mFirstColumn + i;
+            if (!isCovered(_run.mLevel, col, _run.mRow)) {
+                tiles[i] = new Tile(_run.mLevel, col, _run.mRow);
+            }
+        }
+
+        double size = tileSize(_run.mLevel);
+        for (int layer = 0; layer < _result.length; layer++) {
+            for (GeoObject obj : _result[layer]) {
+                Rectangle2D b = obj.getBounds();
+                long first = Math.max(0, (long) Math.floor((b.getMinX() - WORLD_ORIGIN) / size) - _run.mFirstColumn);
+                long last = Math.min(count - 1, (long) Math.floor((b.getMaxX() - WORLD_ORIGIN) / size) - _run.mFirstColumn);
+                first = Math.min(first, count - 1);
+                last = Math.max(last, first);
+                for (long i = first; i <= last; i++) {
+                    Tile tile = tiles[(int) i];
+                    if (tile != null) {
+                        tile.mEntries.add(acquire(layer, obj));
+                    }
+                }
+            }
+        }
+
+        for (Tile tile : tiles) {
+            if (tile != null) {
+                removeDescendants(tile);
+                mTiles.put(new TileKey(tile.mLevel, tile.mColumn, tile.mRow), tile);
+            }
+        }
+        mObjects = null;
+        mVersion++;
+    }
+
+    /**
+     * Gets all loaded geo objects in drawing order, i.e. layer by layer.
+     *
+     * @return a snapshot of the loaded geo objects.
+     */
+    public synchronized List<GeoObject> getObjects() {
+        if (mObjects == null) {
+            int size = 0;
+            for (LinkedHashMap<String, LoadedObject> layer : mEntries) {
+                size += layer.size();
+            }
+            List<GeoObject> objects = new ArrayList<>(size);
+            for (LinkedHashMap<String, LoadedObject> layer : mEntries) {
+                for (LoadedObject loaded : layer.values()) {
+                    objects.add(loaded.mObject);
+                }
+            }
+            mObjects = objects;
+        }
+        return new ArrayList<>(mObjects);
+    }
+
+    /**
+     * Gets the version of the loaded data, which changes whenever data is merged or evicted,
+     * e.g. by a prefetch running in the background.
+     *
+     * @return the current version.
+     */
+    public synchronized long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Gets the estimated size of the loaded data.
+     *
+     * @return the estimated size in bytes.
+     */
+    public synchronized long getEstimatedBytes() {
+        return mEstimatedBytes;
+    }
+
+    /**
+     * Gets the number of loaded tiles.
+     *
+     * @return the number of tiles.
+     */
+    public synchronized int getTileCount() {
+        return mTiles.size();
+    }
+
+    /**
+     * Chooses the finest tile level that covers an area with at most {@link #MAX_TILES_PER_VIEW} tiles.
+     *
+     * @param _area the area in world coordinates.
+     * @return the tile level.
+     */
+    public static int levelFor(Rectangle2D _area) {
+        for (int level = MAX_LEVEL; level > 0; level--) {
+            double size = tileSize(level);
+            long cols = (long) Math.floor((_area.getMaxX() - WORLD_ORIGIN) / size) - (long) Math.floor((_area.getMinX() - WORLD_ORIGIN) / size) + 1;
+            long rows = (long) Math.floor((_area.getMaxY() - WORLD_ORIGIN) / size) - (long) Math.floor((_area.getMinY() - WORLD_ORIGIN) / size) + 1;
+            if (cols * rows <= MAX_TILES_PER_VIEW) {
+                return level;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the edge length of the tiles of a level.
+     *
+     * @param _level the tile level.
+     * @return the edge length in world units.
+     */
+    public static double tileSize(int _level) {
+        return WORLD_SIZE / (1L << _level);
+    }
+
+    /**
+     * Checks whether a tile or one of its ancestors is loaded.
+     */
+    private boolean isCovered(int _level, long _column, long _row) {
+        for (int level = _level; level >= 0; level--) {
+            int shift = _level - level;
+            if (mTiles.containsKey(new TileKey(level, _column >> shift, _row >> shift))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a reference to an object, inserting it into the index if it is not loaded yet.
+     */
+    private LoadedObject acquire(int _layer, GeoObject _obj) {
+        String key = keyOf(_obj);
+        LoadedObject loaded = mEntries[_layer].get(key);
+        if (loaded == null) {
+            loaded = new LoadedObject(_obj);
+            mEntries[_layer].put(key, loaded);
+            mEstimatedBytes += loaded.mBytes;
+        }
+        loaded.mRefs++;
+        return loaded;
+    }
+
+    /**
+     * Builds the key identifying an object in the index. Clipped pieces of the same object cut at different
+     * rectangles are distinct objects, while a piece loaded again for the same rectangle is the same.
+     */
+    private static String keyOf(GeoObject _obj) {
+        Rectangle2D clip = _obj.getClipBounds();
+        if (clip == null) {
+            return _obj.getmId() + "#" + _obj.getmType();
+        }
+        return _obj.getmId() + "#" + _obj.getmType() + "@" + clip.getMinX() + "," + clip.getMinY() + "," + clip.getMaxX() + "," + clip.getMaxY();
+    }
+
+    /**
+     * Removes a tile and drops all objects no other tile references.
+     */
+    private void release(Tile _tile) {
+        for (LoadedObject loaded : _tile.mEntries) {
+            if (--loaded.mRefs == 0) {
+                for (LinkedHashMap<String, LoadedObject> layer : mEntries) {
+                    if (layer.remove(keyOf(loaded.mObject), loaded)) {
+                        break;
+                    }
+                }
+                mEstimatedBytes -= loaded.mBytes;
+            }
+        }
+        _tile.mEntries.clear();
+        mObjects = null;
+        mVersion++;
+    }
+
+    /**
+     * Removes all loaded tiles lying inside a coarser tile.
+     */
+    private void removeDescendants(Tile _tile) {
+        Iterator<Tile> it = mTiles.values().iterator();
+        while (it.hasNext()) {
+            Tile t = it.next();
+            int shift = t.mLevel - _tile.mLevel;
+            if (shift > 0 && (t.mColumn >> shift) == _tile.mColumn && (t.mRow >> shift) == _tile.mRow) {
+                it.remove();
+                release(t);
+            }
+        }
+    }
+
+    /**
+     * Evicts the tiles farthest away from the viewport until the memory cap is met.
+     * Tiles intersecting the viewport are never evicted.
+     *
+     * @return true if any tile was evicted.
+     */
+    private boolean evict() {
+        boolean evicted = false;
+        while (mEstimatedBytes > mMemoryCap && mViewport != null) {
+            TileKey farthest = null;
+            double maxDistance = -1;
+            for (Map.Entry<TileKey, Tile> e : mTiles.entrySet()) {
+                Tile t = e.getValue();
+                double size = tileSize(t.mLevel);
+                Rectangle2D bounds = new Rectangle2D.Double(WORLD_ORIGIN + t.mColumn * size, WORLD_ORIGIN + t.mRow * size, size, size);
+                if (bounds.intersects(mViewport)) {
+                    continue;
+                }
+                double distance = Math.hypot(bounds.getCenterX() - mViewport.getCenterX(), bounds.getCenterY() - mViewport.getCenterY());
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = e.getKey();
+                }
+            }
+            if (farthest == null) {
+                break;
+            }
+            release(mTiles.remove(farthest));
+            evicted = true;
+        }
+        return evicted;
+    }
+
+    /** Identifies a tile by level, column and row. */
+    private static final class TileKey {
+        final int mLevel;
+        final long mColumn;
+        final long mRow;
+
+        TileKey(int _level, long _column, long _row) {
+            mLevel = _level;
+            mColumn = _column;
+            mRow = _row;
+        }
+
+        @Override
+        public boolean equals(Object _o) {
+            if (!(_o instanceof TileKey)) {
+                return false;
+            }
+            TileKey k = (TileKey) _o;
+            return mLevel == k.mLevel && mColumn == k.mColumn && mRow == k.mRow;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (31 * (31 * mLevel + mColumn * 0x9E3779B97F4A7C15L) + mRow);
+        }
+    }
+}
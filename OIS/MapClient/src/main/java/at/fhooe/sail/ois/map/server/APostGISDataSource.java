@@ -0,0 +1,465 @@
+package at.fhooe.sail.ois.map.server;
+
+import at.fhooe.sail.ois.map.server.cache.FeatureCache;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+import at.fhooe.sail.ois.map.server.transform.ICoordinateTransform;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyOut;
+
+import java.awt.geom.Rectangle2D;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import java.util.function.Consumer;
+
+/**
+ * Abstract base class of all data sources backed by a PostGIS database.
+ *
+ * Every layer is stored in its own table with the columns {@code id}, {@code type} and {@code geom}.
+ * Geometries are fetched as WKB and decoded by the shared {@link WKBDecoder}, and the results of every
+ * layer and bounding box are kept in the local {@link FeatureCache}. Each query opens its own connection,
+ * so one data source can serve several queries at the same time. Queries run under a {@link QueryMonitor}
+ * use its timeout as statement timeout and are aborted with {@link Statement#cancel()} when it is cancelled.
+ * Full-extent queries are streamed with {@code COPY ... TO STDOUT (FORMAT binary)} instead of a result set,
+ * which avoids the per-row overhead of the result protocol; see {@link PGCopyDecoder}.
+ */
+public abstract class APostGISDataSource implements IGeoDataSource {
+    private static final String HOST = "jdbc:postgresql://localhost:5432/";
+    /** SQLSTATE reported by PostgreSQL when a statement was cancelled or hit its timeout. */
+    private static final String QUERY_CANCELED = "57014";
+    /** Geometries with more points than this are clipped in clip mode, smaller ones are returned in full. */
+    public static final int CLIP_MIN_POINTS = 256;
+    /** Margin added around the bounding box before clipping, relative to its larger side. */
+    public static final double CLIP_MARGIN = 0.05;
+
+    private final String mName;
+    private final String mDatabase;
+    private final List<GeoLayer> mLayers;
+    private final ICoordinateTransform mTransform;
+    private final FeatureCache mCache = new FeatureCache();
+    private final String mUser = "admin";
+    private final String mPassword = "admin";
+    private Rectangle2D mExtent;
+
+    /**
+     * Constructs a PostGIS data source.
+     *
+     * @param _name the name of the data source.
+     * @param _database the name of the database to connect to.
+     * @param _transform the transform converting the stored coordinates into world coordinates.
+     * @param _layers the layers of the source in drawing order.
+     */
+    protected APostGISDataSource(String _name, String _database, ICoordinateTransform _transform, List<GeoLayer> _layers) {
+        mName = _name;
+        mDatabase = _database;
+        mTransform = _transform;
+        mLayers = Collections.unmodifiableList(_layers);
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public List<GeoLayer> getLayers() {
+        return mLayers;
+    }
+
+    /**
+     * Gets the transform converting the stored coordinates into world coordinates.
+     *
+     * @return the coordinate transform.
+     */
+    public ICoordinateTransform getCoordinateTransform() {
+        return mTransform;
+    }
+
+    /**
+     * Opens a new connection to the database.
+     *
+     * @return the connection; the caller has to close it.
+     * @throws SQLException if the database is not reachable.
+     */
+    protected Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(HOST + mDatabase, mUser, mPassword);
+    }
+
+    @Override
+    public void query(GeoQuery _query, Consumer<? super GeoObject> _sink) throws GeoDataException {
+        QueryMonitor monitor = new QueryMonitor();
+        try (Connection connection = openConnectionOrNull()) {
+            long stamp = FeatureCache.readVersion(connection);
+            for (GeoLayer layer : mLayers) {
+                query(connection, stamp, layer, _query, _sink, monitor);
+            }
+        } catch (SQLException e) {
+            throw translate(e, monitor);
+        }
+    }
+
+    @Override
+    public void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink) throws GeoDataException {
+        query(_layer, _query, _sink, new QueryMonitor());
+    }
+
+    @Override
+    public void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink, QueryMonitor _monitor)
+            throws GeoDataException {
+        _monitor.checkCancelled();
+        try (Connection connection = openConnectionOrNull()) {
+            query(connection, FeatureCache.readVersion(connection), _layer, _query, _sink, _monitor);
+        } catch (SQLException e) {
+            throw translate(e, _monitor);
+        }
+    }
+
+    /**
+     * Queries one layer, served from the feature cache as long as the database reports the same version stamp
+     * as when it was cached. If the database is not reachable at all, any cached result is used.
+     *
+     * @param _connection the connection to use, or null if the database is not reachable.
+     * @param _stamp the current version stamp of the database.
+     * @param _layer the layer to query.
+     * @param _query the query restricting the result.
+     * @param _sink receives every matching geo object.
+     * @param _monitor the monitor controlling the query.
+     * @throws SQLException if the query fails, times out or is cancelled.
+     * @throws GeoDataException if the database is not reachable and nothing is cached.
+     */
+    private void query(Connection _connection, long _stamp, GeoLayer _layer, GeoQuery _query,
+                       Consumer<? super GeoObject> _sink, QueryMonitor _monitor) throws SQLException, GeoDataException {
+        int[] types = resolveTypes(_layer, _query);
+        if (types != null && types.length == 0) {
+            return;
+        }
+        String key = _layer.getName() + "|" + FeatureCache.keyFor(_query.getBBox()) + "@" + mTransform.getClass().getSimpleName()
+                + (_query.getScale() > 0 ? "/" + _query.getScale() : "") + (_query.isClipped() ? "/clip" : "");
+        Vector<GeoObject> cached = mCache.load(mDatabase, key, _stamp);
+        if (cached != null) {
+            for (int i = 0; i < cached.size(); i++) {
+                _sink.accept(cached.get(i));
+            }
+            return;
+        }
+        if (_connection == null) {
+            throw new GeoDataException("Database " + mDatabase + " is not reachable and layer " + _layer + " is not cached");
+        }
+
+        Rectangle2D clip = clipBoundsFor(_query);
+        Vector<GeoObject> result = new Vector<>();
+        WKBDecoder decoder = new WKBDecoder(mTransform);
+        if (_query.getBBox() == null && _connection.isWrapperFor(PGConnection.class)) {
+            copyRows(_connection, _layer, _query, (_id, _type, _wkb) -> {
+                GeoObject obj = decoder.decode(_id, _type, _wkb);
+                if (obj != null) {
+                    result.add(obj);
+                    _sink.accept(obj);
+                }
+            }, _monitor);
+            mCache.store(mDatabase, key, _stamp, null, result);
+            return;
+        }
+        try (Statement s = _connection.createStatement()) {
+            s.setQueryTimeout(_monitor.getTimeoutSeconds());
+            _monitor.setCancelAction(() -> cancel(s));
+            try (ResultSet r = s.executeQuery(buildQuery(_layer, _query))) {
+                while (r.next()) {
+                    _monitor.checkCancelled();
+                    GeoObject obj = decoder.decode(r.getString(1), r.getInt(2), r.getBytes(3));
+                    if (obj != null) {
+                        if (clip != null && r.getBoolean(4)) {
+                            obj.setClipBounds(clip);
+                        }
+                        result.add(obj);
+                        _sink.accept(obj);
+                    }
+                }
+            } finally {
+                _monitor.setCancelAction(null);
+            }
+        }
+        mCache.store(mDatabase, key, _stamp, _query.getBBox(), result);
+    }
+
+    /**
+     * Receives the raw rows of a layer query.
+     */
+    public interface IRowConsumer {
+        /**
+         * Called for every row of the result.
+         *
+         * @param _id the id of the geo object.
+         * @param _type the type of the geo object.
+         * @param _wkb the geometry in well-known binary format, in the coordinates of the database.
+         */
+        void accept(String _id, int _type, byte[] _wkb);
+    }
+
+    /**
+     * Streams the undecoded rows of a layer query, bypassing the feature cache. This is used to record
+     * result sets for replay without a database, see {@link at.fhooe.sail.ois.map.server.replay.ReplayRecorder}.
+     * Clipping is not applied.
+     *
+     * @param _layer the layer to query.
+     * @param _query the query restricting the result.
+     * @param _consumer receives every row.
+     * @throws GeoDataException if the database is not reachable or the query fails.
+     */
+    public void queryRows(GeoLayer _layer, GeoQuery _query, IRowConsumer _consumer) throws GeoDataException {
+        GeoQuery query = new GeoQuery(_query.getBBox(), _query.getScale());
+        int[] types = resolveTypes(_layer, query);
+        if (types != null && types.length == 0) {
+            return;
+        }
+        QueryMonitor monitor = new QueryMonitor();
+        try (Connection connection = openConnection()) {
+            if (query.getBBox() == null && connection.isWrapperFor(PGConnection.class)) {
+                copyRows(connection, _layer, query, _consumer, monitor);
+                return;
+            }
+            try (Statement s = connection.createStatement();
+                 ResultSet r = s.executeQuery(buildQuery(_layer, query))) {
+                while (r.next()) {
+                    _consumer.accept(r.getString(1), r.getInt(2), r.getBytes(3));
+                }
+            }
+        } catch (SQLException e) {
+            throw translate(e, monitor);
+        }
+    }
+
+    /**
+     * Streams the rows of a layer query with a binary {@code COPY}. The timeout of the monitor is applied as
+     * statement timeout of the connection, and cancelling the monitor aborts the copy.
+     *
+     * @param _connection the connection to use, which has to be a PostgreSQL connection.
+     * @param _layer the layer to query.
+     * @param _query the query restricting the result; clipping is not supported.
+     * @param _consumer receives every row.
+     * @param _monitor the monitor controlling the query.
+     * @throws SQLException if the copy fails, times out or is cancelled.
+     * @throws GeoDataException if the copy was cancelled or returned data in an unexpected format.
+     */
+    private void copyRows(Connection _connection, GeoLayer _layer, GeoQuery _query, IRowConsumer _consumer,
+                          QueryMonitor _monitor) throws SQLException, GeoDataException {
+        try (Statement s = _connection.createStatement()) {
+            s.execute("SET statement_timeout = " + _monitor.getTimeoutSeconds() * 1000);
+        }
+        PGCopyDecoder decoder = new PGCopyDecoder(_consumer);
+        CopyOut copy = _connection.unwrap(PGConnection.class).getCopyAPI().copyOut(
+                "COPY (SELECT id::text, type::int4, ST_AsBinary(geom) FROM " + _layer.getTable()
+                        + whereClause(_layer, _query) + ") TO STDOUT (FORMAT binary)");
+        _monitor.setCancelAction(() -> cancel(copy));
+        try {
+            byte[] chunk;
+            while ((chunk = copy.readFromCopy()) != null) {
+                _monitor.checkCancelled();
+                decoder.feed(chunk);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new GeoDataException("Copy from " + mDatabase + " failed: " + e.getMessage(), e);
+        } finally {
+            _monitor.setCancelAction(null);
+            if (copy.isActive()) {
+                cancel(copy);
+            }
+        }
+    }
+
+    /**
+     * Aborts a running statement from another thread.
+     *
+     * @param _statement the statement to cancel.
+     */
+    protected static void cancel(Statement _statement) {
+        try {
+            _statement.cancel();
+        } catch (SQLException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Aborts a running copy from another thread.
+     *
+     * @param _copy the copy to cancel.
+     */
+    private static void cancel(CopyOut _copy) {
+        try {
+            _copy.cancelCopy();
+        } catch (SQLException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Converts a failed query into the matching exception of the data source interface.
+     *
+     * @param _e the exception thrown by the driver.
+     * @param _monitor the monitor of the failed query.
+     * @return a {@link GeoQueryCancelledException} if the monitor was cancelled, otherwise a {@link GeoDataException}
+     * telling whether the query timed out.
+     */
+    protected GeoDataException translate(SQLException _e, QueryMonitor _monitor) {
+        if (_monitor.isCancelled()) {
+            return new GeoQueryCancelledException("Query on " + mDatabase + " was cancelled");
+        }
+        if (QUERY_CANCELED.equals(_e.getSQLState())) {
+            return new GeoDataException("Query on " + mDatabase + " timed out after " + _monitor.getTimeoutSeconds() + " s", _e);
+        }
+        return new GeoDataException("Query on " + mDatabase + " failed: " + _e.getMessage(), _e);
+    }
+
+    /**
+     * Determines the types of a layer that have to be loaded: the types stored in the layer that are drawn
+     * at the scale of the query, according to the drawing context.
+     *
+     * @param _layer the layer to query.
+     * @param _query the query restricting the result.
+     * @return the types to load in ascending order, an empty array if nothing is drawn, or null for all types.
+     */
+    protected int[] resolveTypes(GeoLayer _layer, GeoQuery _query) {
+        int[] layerTypes = _layer.getTypes();
+        int[] visibleTypes = getDrawingContext().getVisibleTypes(_query.getScale());
+        if (visibleTypes == null) {
+            return layerTypes;
+        }
+        if (layerTypes == null) {
+            return visibleTypes;
+        }
+        return Arrays.stream(layerTypes).filter(_t -> Arrays.binarySearch(visibleTypes, _t) >= 0).sorted().toArray();
+    }
+
+    /**
+     * Builds the SQL query for one layer. Only the id, the type and the geometry as WKB are selected,
+     * and only the types that are drawn at the scale of the query; see {@link #resolveTypes(GeoLayer, GeoQuery)}.
+     * In clip mode, geometries with more than {@link #CLIP_MIN_POINTS} points that reach out of the bounding box
+     * are cut at the box plus a margin, and a fourth column tells whether a geometry was clipped.
+     *
+     * @param _layer the layer to query.
+     * @param _query the query restricting the result.
+     * @return the SQL query string.
+     */
+    protected String buildQuery(GeoLayer _layer, GeoQuery _query) {
+        String where = whereClause(_layer, _query);
+        Rectangle2D clip = clipBoundsFor(_query);
+        if (clip == null) {
+            return "SELECT id, type, ST_AsBinary(geom) FROM " + _layer.getTable() + where + ";";
+        }
+        String clipBox = envelope(clip);
+        return "SELECT id, type, ST_AsBinary(CASE WHEN clipped THEN ST_ClipByBox2D(geom, " + clipBox + "::box2d) ELSE geom END), clipped"
+                + " FROM (SELECT id, type, geom, ST_NPoints(geom) > " + CLIP_MIN_POINTS + " AND NOT ST_CoveredBy(geom, " + clipBox + ") AS clipped"
+                + " FROM " + _layer.getTable() + where + ") AS q;";
+    }
+
+    /**
+     * Builds the WHERE clause restricting a layer to the bounding box and the visible types of a query.
+     *
+     * @param _layer the layer to query.
+     * @param _query the query restricting the result.
+     * @return the clause including a leading space, or an empty string if all rows match.
+     */
+    private String whereClause(GeoLayer _layer, GeoQuery _query) {
+        StringBuilder where = new StringBuilder();
+        Rectangle2D bbox = _query.getBBox();
+        if (bbox != null) {
+            where.append(" WHERE ST_Intersects(geom, ").append(envelope(bbox)).append(")");
+        }
+        int[] types = resolveTypes(_layer, _query);
+        if (types != null) {
+            where.append(where.length() == 0 ? " WHERE " : " AND ").append("type IN (");
+            for (int i = 0; i < types.length; i++) {
+                where.append(i == 0 ? "" : ", ").append(types[i]);
+            }
+            where.append(")");
+        }
+        return where.toString();
+    }
+
+    /**
+     * Calculates the rectangle geometries are clipped at: the bounding box of the query plus {@link #CLIP_MARGIN},
+     * so the strokes along the cut stay outside of the box.
+     *
+     * @param _query the query.
+     * @return the clip rectangle in world coordinates, or null if the query is not in clip mode.
+     */
+    private static Rectangle2D clipBoundsFor(GeoQuery _query) {
+        Rectangle2D bbox = _query.getBBox();
+        if (!_query.isClipped() || bbox == null) {
+            return null;
+        }
+        double margin = CLIP_MARGIN * Math.max(bbox.getWidth(), bbox.getHeight());
+        return new Rectangle2D.Double(bbox.getX() - margin, bbox.getY() - margin,
+                bbox.getWidth() + 2 * margin, bbox.getHeight() + 2 * margin);
+    }
+
+    /**
+     * Creates the SQL expression of a rectangle in the coordinates of the database.
+     *
+     * @param _rect the rectangle in world coordinates.
+     * @return the ST_MakeEnvelope expression.
+     */
+    private String envelope(Rectangle2D _rect) {
+        double[] corners = {_rect.getMinX(), _rect.getMinY(), _rect.getMaxX(), _rect.getMaxY()};
+        mTransform.inverse().transform(corners, 0, 2);
+        return "ST_MakeEnvelope(" + corners[0] + ", " + corners[1] + ", " + corners[2] + ", " + corners[3] + ")";
+    }
+
+    /**
+     * Gets the bounding box of all layers in world coordinates. It is queried once and cached afterwards.
+     *
+     * @return the full extent, or null if all layers are empty.
+     * @throws GeoDataException if the database is not reachable.
+     */
+    @Override
+    public synchronized Rectangle2D getExtent() throws GeoDataException {
+        if (mExtent != null) {
+            return mExtent;
+        }
+        try (Connection connection = openConnection();
+             Statement s = connection.createStatement()) {
+            Rectangle2D extent = null;
+            for (GeoLayer layer : mLayers) {
+                try (ResultSet r = s.executeQuery("SELECT ST_XMin(e), ST_YMin(e), ST_XMax(e), ST_YMax(e) FROM (SELECT ST_Extent(geom) AS e FROM "
+                        + layer.getTable() + ") AS x;")) {
+                    if (!r.next() || r.getObject(1) == null) {
+                        continue;
+                    }
+                    double[] corners = {r.getDouble(1), r.getDouble(2), r.getDouble(3), r.getDouble(4)};
+                    mTransform.transform(corners, 0, 2);
+                    Rectangle2D rect = new Rectangle2D.Double(corners[0], corners[1], corners[2] - corners[0], corners[3] - corners[1]);
+                    if (extent == null) {
+                        extent = rect;
+                    } else {
+                        extent.add(rect);
+                    }
+                }
+            }
+            mExtent = extent;
+            return extent;
+        } catch (SQLException e) {
+            throw new GeoDataException("Extent of " + mDatabase + " could not be determined: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens a connection, or returns null if the database is not reachable so cached data can still be served.
+     *
+     * @return the connection, or null.
+     */
+    private Connection openConnectionOrNull() {
+        try {
+            return openConnection();
+        } catch (SQLException e) {
+            System.out.println("Error: " + e.getMessage());
+            return null;
+        }
+    }
+}
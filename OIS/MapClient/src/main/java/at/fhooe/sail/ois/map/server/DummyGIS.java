@@ -1,8 +1,10 @@
 package at.fhooe.sail.ois.map.server;
 
-import java.awt.Polygon;
-
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.List;
 import java.util.Vector;
+import java.util.function.Consumer;
 
 import at.fhooe.sail.ois.map.client.ADrawingContext;
 import at.fhooe.sail.ois.map.client.DummyDrawingContext;
@@ -24,7 +26,13 @@ import de.intergis.JavaClient.gui.IgcConnection;
  * This class provides methods to initialize the connection to the server, retrieve the drawing context,
  * and extract geo-objects from the server based on SQL statements.
  */
-public class DummyGIS {
+public class DummyGIS implements IGeoDataSource {
+    /** Name of the data source. */
+    public static final String NAME = "DummyGIS";
+
+    private static final List<GeoLayer> LAYERS = Collections.singletonList(
+            new GeoLayer("data", "data", 233, 931, 932, 933, 934, 1101));
+
     // die Verbindung zum Geo-Server
     CgGeoConnection m_geoConnection = null;
     // das Anfrage-Interface des Geo-Servers
@@ -58,15 +66,70 @@ public class DummyGIS {
         return false;
     }
 
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
     /**
      * Retrieves the drawing context.
      *
      * @return the drawing context.
      */
+    @Override
     public ADrawingContext getDrawingContext() {
         return new DummyDrawingContext();
     }
 
+    @Override
+    public List<GeoLayer> getLayers() {
+        return LAYERS;
+    }
+
+    /**
+     * The Geo-server offers no extent query.
+     *
+     * @return always null.
+     */
+    @Override
+    public Rectangle2D getExtent() {
+        return null;
+    }
+
+    /**
+     * Queries a layer from the Geo-server. The server connection is initialized on the first query.
+     * The query language of the server has no spatial predicate, so the bounding box is applied to the result.
+     *
+     * @param _layer the layer to query.
+     * @param _query the query restricting the result.
+     * @param _sink receives every matching geo object.
+     * @throws GeoDataException if the server is not reachable or the query fails.
+     */
+    @Override
+    public synchronized void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink) throws GeoDataException {
+        if (m_geoInterface == null && !init()) {
+            throw new GeoDataException("Geo-server is not reachable");
+        }
+        StringBuilder stmt = new StringBuilder("SELECT * FROM ").append(_layer.getTable());
+        int[] types = _layer.getTypes();
+        if (types != null) {
+            stmt.append(" WHERE type in (");
+            for (int i = 0; i < types.length; i++) {
+                stmt.append(i == 0 ? "" : ", ").append(types[i]);
+            }
+            stmt.append(")");
+        }
+        Vector<GeoObject> objects = extractData(stmt.toString());
+        if (objects == null) {
+            throw new GeoDataException("Query on Geo-server failed: " + stmt);
+        }
+        for (GeoObject obj : objects) {
+            if (_query.intersects(obj.getBounds())) {
+                _sink.accept(obj);
+            }
+        }
+    }
+
     /**
      * Extracts geo-objects from the server based on a SQL statement.
      *
@@ -85,8 +148,12 @@ public class DummyGIS {
                     int pointCount = parts[i].getPointCount();
                     int[] xArray = parts[i].getX();
                     int[] yArray = parts[i].getY();
-                    Polygon poly = new Polygon(xArray, yArray, pointCount);
-                    Area area = new Area(poly);
+                    double[] coords = new double[pointCount * 2];
+                    for (int j = 0; j < pointCount; j++) {
+                        coords[2 * j] = xArray[j];
+                        coords[2 * j + 1] = yArray[j];
+                    }
+                    Area area = new Area(coords);
                     Vector<GeoObjectPart> geoObjectParts = new Vector<>();
                     geoObjectParts.add(area);
                     GeoObject geoObject = new GeoObject(obj.getName(), Integer.parseInt(String.valueOf(obj.getCategory())), geoObjectParts);
@@ -0,0 +1,28 @@
+package at.fhooe.sail.ois.map.server;
+
+/**
+ * Signals that a data source could not deliver the requested geo objects.
+ */
+public class GeoDataException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a GeoDataException with a message.
+     *
+     * @param _message the detail message.
+     */
+    public GeoDataException(String _message) {
+        super(_message);
+    }
+
+    /**
+     * Constructs a GeoDataException with a message and a cause.
+     *
+     * @param _message the detail message.
+     * @param _cause the cause of the failure.
+     */
+    public GeoDataException(String _message, Throwable _cause) {
+        super(_message, _cause);
+    }
+}
@@ -0,0 +1,67 @@
+package at.fhooe.sail.ois.map.server;
+
+import at.fhooe.sail.ois.map.server.cache.CachingGeoDataSource;
+import at.fhooe.sail.ois.map.server.cache.QueryCache;
+import at.fhooe.sail.ois.map.server.snapshot.SnapshotServer;
+import at.fhooe.sail.ois.map.server.transform.CoordinateTransforms;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Keeps all data sources known to the client, in the order they are offered to the user.
+ * New sources are plugged in by registering them here; the model and the view resolve them by name.
+ */
+public class GeoDataSourceRegistry {
+    private final LinkedHashMap<String, IGeoDataSource> mSources = new LinkedHashMap<>();
+
+    /**
+     * Creates a registry containing all data sources shipped with the client.
+     * The remote sources share one query cache; the snapshot is local and needs none.
+     *
+     * @return the default registry.
+     */
+    public static GeoDataSourceRegistry createDefault() {
+        GeoDataSourceRegistry registry = new GeoDataSourceRegistry();
+        QueryCache cache = new QueryCache();
+        registry.register(new CachingGeoDataSource(new DummyGIS(), cache));
+        registry.register(new CachingGeoDataSource(new VerwaltungsgrenzenServer(), cache));
+        registry.register(new CachingGeoDataSource(new OSMServer(), cache));
+        registry.register(new CachingGeoDataSource(new MVTDataSource(OSMServer.NAME + "-MVT", new OSMServer()), cache));
+        registry.register(new CachingGeoDataSource(new VerwaltungsgrenzenServer(VerwaltungsgrenzenServer.NAME_4326,
+                "osm_verwaltungsgrenzen_4326", CoordinateTransforms.EPSG_4326), cache));
+        registry.register(new SnapshotServer("OSM-Snapshot",
+                new File(System.getProperty("user.dir"), "snapshots/osm_hagenberg_3857.snapshot")));
+        return registry;
+    }
+
+    /**
+     * Registers a data source, replacing any source with the same name.
+     *
+     * @param _source the data source to register.
+     */
+    public synchronized void register(IGeoDataSource _source) {
+        mSources.put(_source.getName(), _source);
+    }
+
+    /**
+     * Resolves a data source by name.
+     *
+     * @param _name the name of the data source.
+     * @return the data source, or null if no source with that name is registered.
+     */
+    public synchronized IGeoDataSource get(String _name) {
+        return mSources.get(_name);
+    }
+
+    /**
+     * Gets the names of all registered data sources in registration order.
+     *
+     * @return the names of the data sources.
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(mSources.keySet());
+    }
+}
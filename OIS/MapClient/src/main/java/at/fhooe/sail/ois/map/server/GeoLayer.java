@@ -0,0 +1,59 @@
+package at.fhooe.sail.ois.map.server;
+
+/**
+ * Describes a layer of a data source, i.e. a set of geo objects that is stored and queried together.
+ */
+public class GeoLayer {
+    private final String mName;
+    private final String mTable;
+    private final int[] mTypes;
+
+    /**
+     * Constructs a GeoLayer.
+     *
+     * @param _name the name of the layer.
+     * @param _table the table (or collection) the layer is stored in.
+     * @param _types the object types contained in the layer, or null if the layer is not restricted to certain types.
+     */
+    public GeoLayer(String _name, String _table, int... _types) {
+        mName = _name;
+        mTable = _table;
+        mTypes = _types != null && _types.length > 0 ? _types.clone() : null;
+    }
+
+    /**
+     * Gets the name of the layer.
+     *
+     * @return the name of the layer.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Gets the table the layer is stored in.
+     *
+     * @return the table name.
+     */
+    public String getTable() {
+        return mTable;
+    }
+
+    /**
+     * Gets the object types contained in the layer.
+     *
+     * @return the object types, or null if the layer is not restricted to certain types.
+     */
+    public int[] getTypes() {
+        return mTypes == null ? null : mTypes.clone();
+    }
+
+    /**
+     * Returns the name of the layer.
+     *
+     * @return the name of the layer.
+     */
+    public String toString() {
+        return mName;
+    }
+}
@@ -0,0 +1,136 @@
+package at.fhooe.sail.ois.map.server;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Describes which geo objects a data source should deliver.
+ */
+public class GeoQuery {
+
+    /** Query for all objects of a layer. */
+    public static final GeoQuery ALL = new GeoQuery(null);
+
+    private final Rectangle2D mBBox;
+    private final int mScale;
+    private final boolean mClip;
+
+    /**
+     * Constructs a GeoQuery for all objects intersecting a bounding box, in full detail.
+     *
+     * @param _bbox the bounding box in world coordinates, or null for the full extent.
+     */
+    public GeoQuery(Rectangle2D _bbox) {
+        this(_bbox, 0);
+    }
+
+    /**
+     * Constructs a GeoQuery for the objects intersecting a bounding box that are needed at a map scale.
+     *
+     * @param _bbox the bounding box in world coordinates, or null for the full extent.
+     * @param _scale the scale denominator the data is displayed at (level of detail), or 0 for full detail.
+     */
+    public GeoQuery(Rectangle2D _bbox, int _scale) {
+        this(_bbox, _scale, false);
+    }
+
+    /**
+     * Constructs a GeoQuery for the objects intersecting a bounding box that are needed at a map scale,
+     * optionally clipped to the bounding box.
+     *
+     * @param _bbox the bounding box in world coordinates, or null for the full extent.
+     * @param _scale the scale denominator the data is displayed at (level of detail), or 0 for full detail.
+     * @param _clip true to cut large geometries at the bounding box instead of returning them in full.
+     */
+    public GeoQuery(Rectangle2D _bbox, int _scale, boolean _clip) {
+        mBBox = _bbox == null ? null : (Rectangle2D) _bbox.clone();
+        mScale = _scale;
+        mClip = _clip;
+    }
+
+    /**
+     * Creates a query with the same level of detail for another bounding box.
+     *
+     * @param _bbox the bounding box in world coordinates, or null for the full extent.
+     * @return the new query.
+     */
+    public GeoQuery withBBox(Rectangle2D _bbox) {
+        return new GeoQuery(_bbox, mScale, mClip);
+    }
+
+    /**
+     * Gets the bounding box of the query.
+     *
+     * @return the bounding box in world coordinates, or null for the full extent.
+     */
+    public Rectangle2D getBBox() {
+        return mBBox;
+    }
+
+    /**
+     * Gets the level of detail of the query.
+     *
+     * @return the scale denominator the data is displayed at, or 0 for full detail.
+     */
+    public int getScale() {
+        return mScale;
+    }
+
+    /**
+     * Checks whether large geometries should be cut at the bounding box. Sources that cannot clip
+     * may ignore this and return the geometries in full.
+     *
+     * @return true if the geometries may be clipped to the bounding box.
+     */
+    public boolean isClipped() {
+        return mClip;
+    }
+
+    /**
+     * Checks whether another query asks for the same level of detail, i.e. differs at most in its bounding box.
+     *
+     * @param _other the query to compare with.
+     * @return true if both queries have the same level of detail.
+     */
+    public boolean hasSameDetail(GeoQuery _other) {
+        return mScale == _other.mScale && mClip == _other.mClip;
+    }
+
+    /**
+     * Checks whether the bounding box of this query contains the bounding box of another query,
+     * so the result of this query is a superset of the other one at the same level of detail.
+     *
+     * @param _other the query to compare with.
+     * @return true if this query covers the other query.
+     */
+    public boolean covers(GeoQuery _other) {
+        if (!hasSameDetail(_other)) {
+            return false;
+        }
+        if (mBBox == null) {
+            return true;
+        }
+        return _other.mBBox != null && mBBox.getMinX() <= _other.mBBox.getMinX() && mBBox.getMinY() <= _other.mBBox.getMinY()
+                && mBBox.getMaxX() >= _other.mBBox.getMaxX() && mBBox.getMaxY() >= _other.mBBox.getMaxY();
+    }
+
+    /**
+     * Checks whether bounds intersect the bounding box of the query. Unlike {@link Rectangle2D#intersects},
+     * bounds with zero width or height (points, straight lines) are handled as well.
+     *
+     * @param _bounds the bounds to check in world coordinates.
+     * @return true if the query has no bounding box or the bounds intersect it.
+     */
+    public boolean intersects(Rectangle2D _bounds) {
+        return mBBox == null || (_bounds.getMinX() <= mBBox.getMaxX() && _bounds.getMaxX() >= mBBox.getMinX()
+                && _bounds.getMinY() <= mBBox.getMaxY() && _bounds.getMaxY() >= mBBox.getMinY());
+    }
+
+    /**
+     * Returns the content of the query as a string.
+     *
+     * @return the query as a string.
+     */
+    public String toString() {
+        return "GeoQuery{bbox=" + mBBox + ", scale=" + mScale + ", clip=" + mClip + "}";
+    }
+}
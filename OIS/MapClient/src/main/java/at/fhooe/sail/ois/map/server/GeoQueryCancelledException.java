@@ -0,0 +1,18 @@
+package at.fhooe.sail.ois.map.server;
+
+/**
+ * Signals that a query was aborted through its {@link QueryMonitor} before it completed.
+ */
+public class GeoQueryCancelledException extends GeoDataException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a GeoQueryCancelledException with a message.
+     *
+     * @param _message the detail message.
+     */
+    public GeoQueryCancelledException(String _message) {
+        super(_message);
+    }
+}
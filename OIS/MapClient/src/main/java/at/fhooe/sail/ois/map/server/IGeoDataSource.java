@@ -0,0 +1,141 @@
+package at.fhooe.sail.ois.map.server;
+
+import at.fhooe.sail.ois.map.client.ADrawingContext;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.function.Consumer;
+
+/**
+ * Common interface of all sources of geographic data the client can display.
+ *
+ * A data source offers a catalog of layers and streams the geo objects of a layer that match a query
+ * into a sink. The layers are listed in drawing order, so querying them one after the other yields the
+ * objects in the order they have to be painted. Implementations are registered in the
+ * {@link GeoDataSourceRegistry} and resolved by name.
+ */
+public interface IGeoDataSource {
+
+    /**
+     * Gets the unique name of the data source, as shown in the user interface.
+     *
+     * @return the name of the data source.
+     */
+    String getName();
+
+    /**
+     * Retrieves the drawing context used to present the data of this source.
+     *
+     * @return the drawing context.
+     */
+    ADrawingContext getDrawingContext();
+
+    /**
+     * Gets the layers offered by this source, in drawing order.
+     *
+     * @return the layer catalog.
+     */
+    List<GeoLayer> getLayers();
+
+    /**
+     * Gets the bounding box of all data of this source in world coordinates.
+     *
+     * @return the full extent, or null if it is not known.
+     * @throws GeoDataException if the extent cannot be determined.
+     */
+    Rectangle2D getExtent() throws GeoDataException;
+
+    /**
+     * Streams the geo objects of one layer that match a query into a sink.
+     *
+     * @param _layer the layer to query, one of {@link #getLayers()}.
+     * @param _query the query restricting the result.
+     * @param _sink receives every matching geo object as soon as it is decoded.
+     * @throws GeoDataException if the data cannot be loaded.
+     */
+    void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink) throws GeoDataException;
+
+    /**
+     * Streams the geo objects of one layer that match a query into a sink, under the control of a monitor.
+     * Sources that block in a query should override this to honour the timeout of the monitor and to abort
+     * the blocking call when the monitor is cancelled; by default cancellation is only checked up front.
+     *
+     * @param _layer the layer to query, one of {@link #getLayers()}.
+     * @param _query the query restricting the result.
+     * @param _sink receives every matching geo object as soon as it is decoded.
+     * @param _monitor the monitor controlling the query.
+     * @throws GeoQueryCancelledException if the monitor was cancelled.
+     * @throws GeoDataException if the data cannot be loaded or the query timed out.
+     */
+    default void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink, QueryMonitor _monitor)
+            throws GeoDataException {
+        _monitor.checkCancelled();
+        query(_layer, _query, _sink);
+    }
+
+    /**
+     * Streams the geo objects of all layers that match a query into a sink, layer by layer in drawing order.
+     *
+     * @param _query the query restricting the result.
+     * @param _sink receives every matching geo object as soon as it is decoded.
+     * @throws GeoDataException if the data cannot be loaded.
+     */
+    default void query(GeoQuery _query, Consumer<? super GeoObject> _sink) throws GeoDataException {
+        for (GeoLayer layer : getLayers()) {
+            query(layer, _query, _sink);
+        }
+    }
+
+    /**
+     * Streams the geo objects of all layers that match a query into a sink, under the control of a monitor.
+     * Unlike {@link #query(GeoQuery, Consumer)} a failing layer does not abort the query: it is reported to
+     * the monitor and skipped, so the layers that finished are still delivered. The objects of a layer are
+     * only passed on once the layer is complete.
+     *
+     * @param _query the query restricting the result.
+     * @param _sink receives the geo objects of every completed layer, in drawing order.
+     * @param _monitor the monitor controlling the query.
+     * @return the layers that could not be loaded, empty if all layers were loaded.
+     * @throws GeoQueryCancelledException if the monitor was cancelled.
+     */
+    default List<GeoLayer> query(GeoQuery _query, Consumer<? super GeoObject> _sink, QueryMonitor _monitor)
+            throws GeoQueryCancelledException {
+        List<GeoLayer> failed = new ArrayList<>();
+        List<GeoObject> layerObjects = new ArrayList<>();
+        for (GeoLayer layer : getLayers()) {
+            _monitor.checkCancelled();
+            _monitor.layerStarted(layer);
+            layerObjects.clear();
+            try {
+                query(layer, _query, layerObjects::add, _monitor);
+            } catch (GeoQueryCancelledException e) {
+                throw e;
+            } catch (GeoDataException e) {
+                failed.add(layer);
+                _monitor.layerFailed(layer, e);
+                continue;
+            }
+            for (int i = 0; i < layerObjects.size(); i++) {
+                _sink.accept(layerObjects.get(i));
+            }
+            _monitor.layerFinished(layer, layerObjects.size());
+        }
+        return failed;
+    }
+
+    /**
+     * Collects the geo objects of all layers that match a query.
+     *
+     * @param _query the query restricting the result.
+     * @return the matching geo objects in drawing order.
+     * @throws GeoDataException if the data cannot be loaded.
+     */
+    default Vector<GeoObject> query(GeoQuery _query) throws GeoDataException {
+        Vector<GeoObject> result = new Vector<>();
+        query(_query, result::add);
+        return result;
+    }
+}
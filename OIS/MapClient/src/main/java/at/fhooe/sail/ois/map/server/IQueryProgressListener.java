@@ -0,0 +1,32 @@
+package at.fhooe.sail.ois.map.server;
+
+/**
+ * Receives the progress of a query running over several layers.
+ * The methods are called on the thread running the query.
+ */
+public interface IQueryProgressListener {
+
+    /**
+     * Called before a layer is queried.
+     *
+     * @param _layer the layer.
+     */
+    void layerStarted(GeoLayer _layer);
+
+    /**
+     * Called after all objects of a layer were loaded.
+     *
+     * @param _layer the layer.
+     * @param _count the number of objects loaded.
+     */
+    void layerFinished(GeoLayer _layer, int _count);
+
+    /**
+     * Called if a layer could not be loaded, e.g. because its query timed out.
+     * The query continues with the next layer.
+     *
+     * @param _layer the layer.
+     * @param _e the reason of the failure.
+     */
+    void layerFailed(GeoLayer _layer, GeoDataException _e);
+}
@@ -0,0 +1,205 @@
+package at.fhooe.sail.ois.map.server;
+
+import at.fhooe.sail.ois.map.client.ADrawingContext;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+import at.fhooe.sail.ois.map.server.transform.WebMercatorTransform;
+
+import java.awt.geom.Rectangle2D;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Data source loading the data of a PostGIS source as Mapbox vector tiles.
+ *
+ * Instead of one row per geometry, the database encodes the objects of a layer intersecting a tile with
+ * {@code ST_AsMVT} into one compact binary tile: the geometries are clipped to the tile, quantized to
+ * {@link #EXTENT} units and stripped of redundant points on the server. The tiles follow the z/x/y scheme of
+ * the WebMercator world; the zoom level of a query is chosen so its bounding box is covered by at most
+ * four tiles. The layers, types and drawing context are those of the underlying source.
+ */
+public class MVTDataSource implements IGeoDataSource {
+    /** Resolution of a tile in both directions. */
+    public static final int EXTENT = 4096;
+    /** Margin around a tile in tile units, so strokes along the tile edges are not cut off. */
+    public static final int BUFFER = 64;
+    /** Finest zoom level requested. */
+    public static final int MAX_ZOOM = 22;
+    /** Additional zoom levels used when the full extent is queried, so the data stays usable when zooming in. */
+    public static final int FULL_EXTENT_EXTRA_ZOOM = 3;
+
+    private static final double ORIGIN_SHIFT = WebMercatorTransform.ORIGIN_SHIFT;
+    private static final double WORLD_SIZE = 2 * ORIGIN_SHIFT;
+
+    private final String mName;
+    private final APostGISDataSource mSource;
+
+    /**
+     * Constructs an MVTDataSource.
+     *
+     * @param _name the name of the data source.
+     * @param _source the PostGIS source whose tables are loaded as tiles.
+     */
+    public MVTDataSource(String _name, APostGISDataSource _source) {
+        mName = _name;
+        mSource = _source;
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public ADrawingContext getDrawingContext() {
+        return mSource.getDrawingContext();
+    }
+
+    @Override
+    public List<GeoLayer> getLayers() {
+        return mSource.getLayers();
+    }
+
+    @Override
+    public Rectangle2D getExtent() throws GeoDataException {
+        return mSource.getExtent();
+    }
+
+    @Override
+    public void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink) throws GeoDataException {
+        query(_layer, _query, _sink, new QueryMonitor());
+    }
+
+    @Override
+    public void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink, QueryMonitor _monitor)
+            throws GeoDataException {
+        _monitor.checkCancelled();
+        int[] types = mSource.resolveTypes(_layer, _query);
+        if (types != null && types.length == 0) {
+            return;
+        }
+        Rectangle2D area = _query.getBBox();
+        int zoom;
+        if (area != null) {
+            zoom = zoomFor(area);
+        } else {
+            area = getExtent();
+            if (area == null) {
+                return;
+            }
+            zoom = Math.min(MAX_ZOOM, zoomFor(area) + FULL_EXTENT_EXTRA_ZOOM);
+        }
+
+        double size = WORLD_SIZE / (1L << zoom);
+        long maxIndex = (1L << zoom) - 1;
+        long minCol = clamp((long) Math.floor((area.getMinX() + ORIGIN_SHIFT) / size), maxIndex);
+        long maxCol = clamp((long) Math.floor((area.getMaxX() + ORIGIN_SHIFT) / size), maxIndex);
+        long minRow = clamp((long) Math.floor((area.getMinY() + ORIGIN_SHIFT) / size), maxIndex);
+        long maxRow = clamp((long) Math.floor((area.getMaxY() + ORIGIN_SHIFT) / size), maxIndex);
+
+        MVTDecoder decoder = new MVTDecoder(mSource.getCoordinateTransform());
+        Consumer<GeoObject> filter = _obj -> {
+            if (_query.intersects(_obj.getBounds())) {
+                _sink.accept(_obj);
+            }
+        };
+        try (Connection connection = mSource.openConnection()) {
+            for (long row = maxRow; row >= minRow; row--) {
+                for (long col = minCol; col <= maxCol; col++) {
+                    _monitor.checkCancelled();
+                    Rectangle2D world = new Rectangle2D.Double(col * size - ORIGIN_SHIFT, row * size - ORIGIN_SHIFT, size, size);
+                    Rectangle2D bounds = toDatabase(world);
+                    double bx = bounds.getWidth() * BUFFER / EXTENT;
+                    double by = bounds.getHeight() * BUFFER / EXTENT;
+                    Rectangle2D buffered = new Rectangle2D.Double(bounds.getX() - bx, bounds.getY() - by,
+                            bounds.getWidth() + 2 * bx, bounds.getHeight() + 2 * by);
+                    byte[] tile = loadTile(connection, buildQuery(_layer, types, bounds, buffered), _monitor);
+                    if (tile != null && tile.length > 0) {
+                        decoder.decode(tile, bounds, toWorld(buffered), filter);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw mSource.translate(e, _monitor);
+        }
+    }
+
+    /**
+     * Builds the SQL query encoding the objects of a layer within one tile.
+     *
+     * @param _layer the layer to query.
+     * @param _types the types to load, or null for all types.
+     * @param _bounds the bounds of the tile in the coordinates of the database.
+     * @param _buffered the bounds of the tile including its buffer.
+     * @return the SQL query string.
+     */
+    protected String buildQuery(GeoLayer _layer, int[] _types, Rectangle2D _bounds, Rectangle2D _buffered) {
+        StringBuilder sql = new StringBuilder("SELECT ST_AsMVT(t, '").append(_layer.getName()).append("', ")
+                .append(EXTENT).append(", 'geom') FROM (SELECT id::text AS id, type, ST_AsMVTGeom(geom, ST_MakeBox2D(ST_Point(")
+                .append(_bounds.getMinX()).append(", ").append(_bounds.getMinY()).append("), ST_Point(")
+                .append(_bounds.getMaxX()).append(", ").append(_bounds.getMaxY()).append(")), ")
+                .append(EXTENT).append(", ").append(BUFFER).append(", true) AS geom FROM ").append(_layer.getTable())
+                .append(" WHERE geom && ST_MakeEnvelope(")
+                .append(_buffered.getMinX()).append(", ").append(_buffered.getMinY()).append(", ")
+                .append(_buffered.getMaxX()).append(", ").append(_buffered.getMaxY()).append(")");
+        if (_types != null) {
+            sql.append(" AND type IN (");
+            for (int i = 0; i < _types.length; i++) {
+                sql.append(i == 0 ? "" : ", ").append(_types[i]);
+            }
+            sql.append(")");
+        }
+        return sql.append(") AS t WHERE geom IS NOT NULL;").toString();
+    }
+
+    /**
+     * Runs the query of one tile, honouring the timeout and cancellation of the monitor.
+     *
+     * @return the encoded tile, or null if the layer has no objects in the tile.
+     */
+    private byte[] loadTile(Connection _connection, String _sql, QueryMonitor _monitor) throws SQLException {
+        try (Statement s = _connection.createStatement()) {
+            s.setQueryTimeout(_monitor.getTimeoutSeconds());
+            _monitor.setCancelAction(() -> APostGISDataSource.cancel(s));
+            try (ResultSet r = s.executeQuery(_sql)) {
+                return r.next() ? r.getBytes(1) : null;
+            } finally {
+                _monitor.setCancelAction(null);
+            }
+        }
+    }
+
+    /**
+     * Chooses the zoom level at which an area is covered by at most two tiles in each direction.
+     *
+     * @param _area the area in world coordinates.
+     * @return the zoom level.
+     */
+    static int zoomFor(Rectangle2D _area) {
+        double size = Math.max(_area.getWidth(), _area.getHeight());
+        if (size <= 0) {
+            return MAX_ZOOM;
+        }
+        int zoom = (int) Math.floor(Math.log(WORLD_SIZE / size) / Math.log(2));
+        return Math.max(0, Math.min(MAX_ZOOM, zoom));
+    }
+
+    private Rectangle2D toDatabase(Rectangle2D _world) {
+        double[] corners = {_world.getMinX(), _world.getMinY(), _world.getMaxX(), _world.getMaxY()};
+        mSource.getCoordinateTransform().inverse().transform(corners, 0, 2);
+        return new Rectangle2D.Double(corners[0], corners[1], corners[2] - corners[0], corners[3] - corners[1]);
+    }
+
+    private Rectangle2D toWorld(Rectangle2D _database) {
+        double[] corners = {_database.getMinX(), _database.getMinY(), _database.getMaxX(), _database.getMaxY()};
+        mSource.getCoordinateTransform().transform(corners, 0, 2);
+        return new Rectangle2D.Double(corners[0], corners[1], corners[2] - corners[0], corners[3] - corners[1]);
+    }
+
+    private static long clamp(long _index, long _max) {
+        return Math.max(0, Math.min(_max, _index));
+    }
+}
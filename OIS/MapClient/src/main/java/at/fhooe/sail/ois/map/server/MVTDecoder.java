@@ -0,0 +1,349 @@
+package at.fhooe.sail.ois.map.server;
+
+import at.fhooe.sail.ois.map.server.feature.Area;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+import at.fhooe.sail.ois.map.server.feature.GeoObjectPart;
+import at.fhooe.sail.ois.map.server.feature.Line;
+import at.fhooe.sail.ois.map.server.feature.Point;
+import at.fhooe.sail.ois.map.server.transform.ICoordinateTransform;
+
+import java.awt.geom.Rectangle2D;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.function.Consumer;
+
+/**
+ * Decodes Mapbox vector tiles (MVT), as produced by {@code ST_AsMVT}, into geo objects.
+ *
+ * Only the parts of the protobuf encoding used by vector tiles are implemented. The id and the type of
+ * every feature are read from its {@code id} and {@code type} attributes. Tile coordinates are mapped
+ * linearly onto the tile bounds in the coordinates of the database, the same way {@code ST_AsMVTGeom}
+ * mapped them, and then transformed into world coordinates. Features reaching the edge of the tile
+ * (including its buffer) were cut there and are marked as clipped.
+ */
+public class MVTDecoder {
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_BYTES = 2;
+    private static final int WIRE_FIXED32 = 5;
+
+    private static final int GEOM_POINT = 1;
+    private static final int GEOM_LINESTRING = 2;
+    private static final int GEOM_POLYGON = 3;
+
+    private static final int CMD_MOVE_TO = 1;
+    private static final int CMD_LINE_TO = 2;
+    private static final int CMD_CLOSE_PATH = 7;
+
+    private final ICoordinateTransform mTransform;
+    private byte[] mData;
+    private int mPos;
+
+    /**
+     * Constructs an MVTDecoder.
+     *
+     * @param _transform the transform converting the coordinates of the database into world coordinates.
+     */
+    public MVTDecoder(ICoordinateTransform _transform) {
+        mTransform = _transform;
+    }
+
+    /**
+     * Decodes all features of all layers of a tile.
+     *
+     * @param _tile the encoded tile.
+     * @param _bounds the bounds of the tile in the coordinates of the database, as passed to {@code ST_AsMVTGeom}.
+     * @param _clip the rectangle the features were clipped at in world coordinates, i.e. the tile plus its buffer.
+     * @param _sink receives every decoded geo object.
+     */
+    public void decode(byte[] _tile, Rectangle2D _bounds, Rectangle2D _clip, Consumer<? super GeoObject> _sink) {
+        mData = _tile;
+        mPos = 0;
+        try {
+            while (mPos < mData.length) {
+                int key = (int) readVarint();
+                if (key >>> 3 == 3 && (key & 7) == WIRE_BYTES) {
+                    int length = (int) readVarint();
+                    decodeLayer(mPos + length, _bounds, _clip, _sink);
+                } else {
+                    skip(key & 7);
+                }
+            }
+        } finally {
+            mData = null;
+        }
+    }
+
+    /**
+     * Decodes one layer message ending at the given position.
+     */
+    private void decodeLayer(int _end, Rectangle2D _bounds, Rectangle2D _clip, Consumer<? super GeoObject> _sink) {
+        List<String> keys = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        List<int[]> features = new ArrayList<>();
+        int extent = 4096;
+        // keys and values may follow the features, so the features are only located in a first pass
+        while (mPos < _end) {
+            int key = (int) readVarint();
+            int field = key >>> 3;
+            if (field == 2 && (key & 7) == WIRE_BYTES) {
+                int length = (int) readVarint();
+                features.add(new int[]{mPos, mPos + length});
+                mPos += length;
+            } else if (field == 3 && (key & 7) == WIRE_BYTES) {
+                int length = (int) readVarint();
+                keys.add(new String(mData, mPos, length, StandardCharsets.UTF_8));
+                mPos += length;
+            } else if (field == 4 && (key & 7) == WIRE_BYTES) {
+                int length = (int) readVarint();
+                values.add(readValue(mPos + length));
+            } else if (field == 5 && (key & 7) == WIRE_VARINT) {
+                extent = (int) readVarint();
+            } else {
+                skip(key & 7);
+            }
+        }
+        int idKey = keys.indexOf("id");
+        int typeKey = keys.indexOf("type");
+        double eps = 1e-6 * Math.max(_clip.getWidth(), _clip.getHeight());
+        for (int[] feature : features) {
+            mPos = feature[0];
+            GeoObject obj = decodeFeature(feature[1], idKey, typeKey, values, extent, _bounds);
+            if (obj != null) {
+                Rectangle2D b = obj.getBounds();
+                if (b.getMinX() <= _clip.getMinX() + eps || b.getMinY() <= _clip.getMinY() + eps
+                        || b.getMaxX() >= _clip.getMaxX() - eps || b.getMaxY() >= _clip.getMaxY() - eps) {
+                    obj.setClipBounds(_clip);
+                }
+                _sink.accept(obj);
+            }
+        }
+        mPos = _end;
+    }
+
+    /**
+     * Decodes one feature message ending at the given position.
+     *
+     * @return the geo object, or null if the geometry is empty.
+     */
+    private GeoObject decodeFeature(int _end, int _idKey, int _typeKey, List<Object> _values, int _extent, Rectangle2D _bounds) {
+        String id = null;
+        int type = 0;
+        int geomType = 0;
+        int[] commands = null;
+        while (mPos < _end) {
+            int key = (int) readVarint();
+            int field = key >>> 3;
+            if (field == 1 && (key & 7) == WIRE_VARINT) {
+                id = Long.toUnsignedString(readVarint());
+            } else if (field == 2 && (key & 7) == WIRE_BYTES) {
+                int tagsEnd = (int) readVarint() + mPos;
+                while (mPos < tagsEnd) {
+                    int k = (int) readVarint();
+                    int index = (int) readVarint();
+                    Object v = index < _values.size() ? _values.get(index) : null;
+                    if (k == _idKey) {
+                        id = String.valueOf(v);
+                    } else if (k == _typeKey && v instanceof Number) {
+                        type = ((Number) v).intValue();
+                    }
+                }
+            } else if (field == 3 && (key & 7) == WIRE_VARINT) {
+                geomType = (int) readVarint();
+            } else if (field == 4 && (key & 7) == WIRE_BYTES) {
+                int geomEnd = (int) readVarint() + mPos;
+                int[] buffer = new int[16];
+                int n = 0;
+                while (mPos < geomEnd) {
+                    if (n == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, n * 2);
+                    }
+                    buffer[n++] = (int) readVarint();
+                }
+                commands = Arrays.copyOf(buffer, n);
+            } else {
+                skip(key & 7);
+            }
+        }
+        if (commands == null) {
+            return null;
+        }
+        Vector<GeoObjectPart> parts = decodeGeometry(geomType, commands, _extent, _bounds);
+        return parts.isEmpty() ? null : new GeoObject(id, type, parts);
+    }
+
+    /**
+     * Decodes the command sequence of a feature into parts in world coordinates.
+     */
+    private Vector<GeoObjectPart> decodeGeometry(int _geomType, int[] _commands, int _extent, Rectangle2D _bounds) {
+        Vector<GeoObjectPart> parts = new Vector<>(1);
+        List<double[]> rings = new ArrayList<>();
+        double[] ring = new double[16];
+        int n = 0;
+        int x = 0;
+        int y = 0;
+        int i = 0;
+        while (i < _commands.length) {
+            int id = _commands[i] & 7;
+            int count = _commands[i++] >>> 3;
+            if (id == CMD_CLOSE_PATH) {
+                if (n >= 2) {
+                    ring = ensure(ring, n + 2);
+                    ring[n++] = ring[0];
+                    ring[n++] = ring[1];
+                }
+                continue;
+            }
+            if (id == CMD_MOVE_TO && n > 0) {
+                rings.add(Arrays.copyOf(ring, n));
+                n = 0;
+            }
+            for (int c = 0; c < count && i + 1 < _commands.length; c++) {
+                x += zigzag(_commands[i++]);
+                y += zigzag(_commands[i++]);
+                if (_geomType == GEOM_POINT) {
+                    double[] xy = toWorld(new double[]{x, y}, _extent, _bounds);
+                    parts.add(new Point(xy[0], xy[1]));
+                } else {
+                    ring = ensure(ring, n + 2);
+                    ring[n++] = x;
+                    ring[n++] = y;
+                }
+            }
+        }
+        if (n > 0) {
+            rings.add(Arrays.copyOf(ring, n));
+        }
+
+        Area current = null;
+        for (double[] r : rings) {
+            if (_geomType == GEOM_LINESTRING) {
+                parts.add(new Line(toWorld(r, _extent, _bounds)));
+            } else if (_geomType == GEOM_POLYGON) {
+                // exterior rings have a positive area in tile coordinates, interior rings a negative one
+                if (signedArea(r) > 0 || current == null) {
+                    current = new Area(toWorld(r, _extent, _bounds));
+                    parts.add(current);
+                } else {
+                    current.addHole(toWorld(r, _extent, _bounds));
+                }
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Maps tile coordinates onto the tile bounds and transforms them into world coordinates in place.
+     * The y axis of a tile points down.
+     */
+    private double[] toWorld(double[] _coords, int _extent, Rectangle2D _bounds) {
+        double sx = _bounds.getWidth() / _extent;
+        double sy = _bounds.getHeight() / _extent;
+        for (int i = 0; i < _coords.length; i += 2) {
+            _coords[i] = _bounds.getMinX() + _coords[i] * sx;
+            _coords[i + 1] = _bounds.getMaxY() - _coords[i + 1] * sy;
+        }
+        mTransform.transform(_coords, 0, _coords.length / 2);
+        return _coords;
+    }
+
+    /**
+     * Reads a value message ending at the given position.
+     */
+    private Object readValue(int _end) {
+        Object value = null;
+        while (mPos < _end) {
+            int key = (int) readVarint();
+            switch (key >>> 3) {
+                case 1: {
+                    int length = (int) readVarint();
+                    value = new String(mData, mPos, length, StandardCharsets.UTF_8);
+                    mPos += length;
+                    break;
+                }
+                case 2:
+                    value = Float.intBitsToFloat((int) readFixed(4));
+                    break;
+                case 3:
+                    value = Double.longBitsToDouble(readFixed(8));
+                    break;
+                case 4:
+                case 5:
+                    value = readVarint();
+                    break;
+                case 6: {
+                    long v = readVarint();
+                    value = (v >>> 1) ^ -(v & 1);
+                    break;
+                }
+                case 7:
+                    value = readVarint() != 0;
+                    break;
+                default:
+                    skip(key & 7);
+            }
+        }
+        mPos = _end;
+        return value;
+    }
+
+    private long readVarint() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = mData[mPos++];
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at " + mPos);
+    }
+
+    private long readFixed(int _bytes) {
+        long result = 0;
+        for (int i = 0; i < _bytes; i++) {
+            result |= (long) (mData[mPos++] & 0xFF) << (8 * i);
+        }
+        return result;
+    }
+
+    private void skip(int _wireType) {
+        switch (_wireType) {
+            case WIRE_VARINT:
+                readVarint();
+                break;
+            case WIRE_FIXED64:
+                mPos += 8;
+                break;
+            case WIRE_BYTES: {
+                int length = (int) readVarint();
+                mPos += length;
+                break;
+            }
+            case WIRE_FIXED32:
+                mPos += 4;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported wire type " + _wireType + " at " + mPos);
+        }
+    }
+
+    private static int zigzag(int _v) {
+        return (_v >>> 1) ^ -(_v & 1);
+    }
+
+    private static double[] ensure(double[] _array, int _size) {
+        return _array.length >= _size ? _array : Arrays.copyOf(_array, Math.max(_size, _array.length * 2));
+    }
+
+    private static double signedArea(double[] _ring) {
+        double area = 0;
+        for (int i = 2; i < _ring.length; i += 2) {
+            area += _ring[i - 2] * _ring[i + 1] - _ring[i] * _ring[i - 1];
+        }
+        return area;
+    }
+}
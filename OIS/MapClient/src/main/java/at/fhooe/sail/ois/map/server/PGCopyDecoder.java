@@ -0,0 +1,163 @@
+package at.fhooe.sail.ois.map.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes the binary format of PostgreSQL's {@code COPY ... TO STDOUT (FORMAT binary)} into rows of
+ * id, type and WKB geometry.
+ *
+ * The stream starts with the signature {@code PGCOPY\n\377\r\n\0}, a flags word and a header extension,
+ * followed by one tuple per row: the number of fields as 16 bit integer, then every field as its length
+ * (-1 for NULL) and its bytes, and finally a field count of -1. All values are big-endian. The columns
+ * have to be selected as {@code text}, {@code int4} and {@code bytea}, whose binary representations are the
+ * UTF-8 bytes, the integer and the raw bytes. The data may arrive in chunks of any size, so incomplete
+ * tuples are kept until the rest arrives.
+ */
+public class PGCopyDecoder {
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int HEADER_SIZE = SIGNATURE.length + 4 + 4;
+    private static final int FIELDS = 3;
+
+    private final APostGISDataSource.IRowConsumer mConsumer;
+    private byte[] mPending = new byte[1 << 16];
+    private int mLength = 0;
+    private boolean mHeaderRead = false;
+    private boolean mFinished = false;
+    private long mRows = 0;
+
+    /**
+     * Constructs a PGCopyDecoder.
+     *
+     * @param _consumer receives every decoded row.
+     */
+    public PGCopyDecoder(APostGISDataSource.IRowConsumer _consumer) {
+        mConsumer = _consumer;
+    }
+
+    /**
+     * Decodes the next chunk of the stream and passes all rows it completes to the consumer.
+     *
+     * @param _data the chunk, e.g. as returned by {@code CopyOut.readFromCopy()}.
+     * @throws IllegalArgumentException if the data is not in binary copy format or has an unexpected number of columns.
+     */
+    public void feed(byte[] _data) {
+        if (mFinished) {
+            return;
+        }
+        if (mLength + _data.length > mPending.length) {
+            mPending = Arrays.copyOf(mPending, Math.max(mLength + _data.length, mPending.length * 2));
+        }
+        System.arraycopy(_data, 0, mPending, mLength, _data.length);
+        mLength += _data.length;
+
+        int pos = 0;
+        if (!mHeaderRead) {
+            if (mLength < HEADER_SIZE) {
+                return;
+            }
+            for (int i = 0; i < SIGNATURE.length; i++) {
+                if (mPending[i] != SIGNATURE[i]) {
+                    throw new IllegalArgumentException("Not a binary copy stream");
+                }
+            }
+            int extension = getInt(SIGNATURE.length + 4);
+            if (mLength < HEADER_SIZE + extension) {
+                return;
+            }
+            pos = HEADER_SIZE + extension;
+            mHeaderRead = true;
+        }
+
+        while (mLength - pos >= 2) {
+            short fields = (short) ((mPending[pos] & 0xFF) << 8 | mPending[pos + 1] & 0xFF);
+            if (fields == -1) {
+                mFinished = true;
+                pos += 2;
+                break;
+            }
+            if (fields != FIELDS) {
+                throw new IllegalArgumentException("Expected " + FIELDS + " columns but got " + fields);
+            }
+            int end = tupleEnd(pos + 2, fields);
+            if (end < 0) {
+                break;
+            }
+            decodeTuple(pos + 2);
+            pos = end;
+        }
+        System.arraycopy(mPending, pos, mPending, 0, mLength - pos);
+        mLength -= pos;
+    }
+
+    /**
+     * Tells whether the end of the stream was reached.
+     *
+     * @return true if the trailer was decoded.
+     */
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Gets the number of rows decoded so far.
+     *
+     * @return the number of rows.
+     */
+    public long getRowCount() {
+        return mRows;
+    }
+
+    /**
+     * Determines where a tuple ends, if it is complete.
+     *
+     * @param _pos the position of the first field.
+     * @param _fields the number of fields.
+     * @return the position after the tuple, or -1 if not all of it arrived yet.
+     */
+    private int tupleEnd(int _pos, int _fields) {
+        int pos = _pos;
+        for (int f = 0; f < _fields; f++) {
+            if (mLength - pos < 4) {
+                return -1;
+            }
+            int length = getInt(pos);
+            pos += 4;
+            if (length > 0) {
+                if (mLength - pos < length) {
+                    return -1;
+                }
+                pos += length;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Decodes a complete tuple of id, type and geometry.
+     */
+    private void decodeTuple(int _pos) {
+        int pos = _pos;
+        int length = getInt(pos);
+        pos += 4;
+        String id = length < 0 ? null : new String(mPending, pos, length, StandardCharsets.UTF_8);
+        pos += Math.max(length, 0);
+
+        length = getInt(pos);
+        pos += 4;
+        int type = length == 4 ? getInt(pos) : 0;
+        pos += Math.max(length, 0);
+
+        length = getInt(pos);
+        pos += 4;
+        byte[] wkb = length < 0 ? null : Arrays.copyOfRange(mPending, pos, pos + length);
+
+        mRows++;
+        mConsumer.accept(id, type, wkb);
+    }
+
+    private int getInt(int _pos) {
+        return (mPending[_pos] & 0xFF) << 24 | (mPending[_pos + 1] & 0xFF) << 16
+                | (mPending[_pos + 2] & 0xFF) << 8 | mPending[_pos + 3] & 0xFF;
+    }
+}
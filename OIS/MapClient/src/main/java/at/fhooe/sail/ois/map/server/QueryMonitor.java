@@ -0,0 +1,130 @@
+package at.fhooe.sail.ois.map.server;
+
+/**
+ * Controls a running query: it limits the time a single layer query may take, reports the progress
+ * of each layer and allows to abort the query from another thread.
+ *
+ * Data sources register a cancel action while they are blocked, e.g. in a database call, so
+ * {@link #cancel()} interrupts the query right away instead of waiting until it returns.
+ */
+public class QueryMonitor {
+    private final int mTimeoutSeconds;
+    private final IQueryProgressListener mListener;
+    private volatile boolean mCancelled = false;
+    private Runnable mCancelAction = null;
+
+    /**
+     * Constructs a QueryMonitor without timeout and listener.
+     */
+    public QueryMonitor() {
+        this(0, null);
+    }
+
+    /**
+     * Constructs a QueryMonitor.
+     *
+     * @param _timeoutSeconds the maximum duration of a single layer query in seconds, 0 for no limit.
+     * @param _listener receives the progress of each layer, may be null.
+     */
+    public QueryMonitor(int _timeoutSeconds, IQueryProgressListener _listener) {
+        mTimeoutSeconds = _timeoutSeconds;
+        mListener = _listener;
+    }
+
+    /**
+     * Gets the maximum duration of a single layer query.
+     *
+     * @return the timeout in seconds, 0 for no limit.
+     */
+    public int getTimeoutSeconds() {
+        return mTimeoutSeconds;
+    }
+
+    /**
+     * Aborts the query. The registered cancel action is run on the calling thread.
+     */
+    public void cancel() {
+        Runnable action;
+        synchronized (this) {
+            if (mCancelled) {
+                return;
+            }
+            mCancelled = true;
+            action = mCancelAction;
+        }
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    /**
+     * Checks if the query was aborted.
+     *
+     * @return true if {@link #cancel()} was called.
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Throws if the query was aborted. Data sources call this between expensive steps.
+     *
+     * @throws GeoQueryCancelledException if {@link #cancel()} was called.
+     */
+    public void checkCancelled() throws GeoQueryCancelledException {
+        if (mCancelled) {
+            throw new GeoQueryCancelledException("Query was cancelled");
+        }
+    }
+
+    /**
+     * Sets the action interrupting the blocking call the query currently waits for.
+     * If the query was cancelled already, the action is run immediately.
+     *
+     * @param _action the cancel action, or null once the blocking call returned.
+     */
+    public void setCancelAction(Runnable _action) {
+        synchronized (this) {
+            mCancelAction = _action;
+            if (!mCancelled || _action == null) {
+                return;
+            }
+        }
+        _action.run();
+    }
+
+    /**
+     * Reports that a layer is about to be queried.
+     *
+     * @param _layer the layer.
+     */
+    public void layerStarted(GeoLayer _layer) {
+        if (mListener != null) {
+            mListener.layerStarted(_layer);
+        }
+    }
+
+    /**
+     * Reports that a layer was loaded completely.
+     *
+     * @param _layer the layer.
+     * @param _count the number of objects loaded.
+     */
+    public void layerFinished(GeoLayer _layer, int _count) {
+        if (mListener != null) {
+            mListener.layerFinished(_layer, _count);
+        }
+    }
+
+    /**
+     * Reports that a layer could not be loaded.
+     *
+     * @param _layer the layer.
+     * @param _e the reason of the failure.
+     */
+    public void layerFailed(GeoLayer _layer, GeoDataException _e) {
+        if (mListener != null) {
+            mListener.layerFailed(_layer, _e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package at.fhooe.sail.ois.map.server;
+
+import at.fhooe.sail.ois.map.server.feature.Area;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+import at.fhooe.sail.ois.map.server.feature.GeoObjectPart;
+import at.fhooe.sail.ois.map.server.feature.Line;
+import at.fhooe.sail.ois.map.server.feature.Point;
+import at.fhooe.sail.ois.map.server.transform.ICoordinateTransform;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Vector;
+
+/**
+ * Decodes geometries in the well-known binary format (WKB, as returned by {@code ST_AsBinary}) into geo objects.
+ *
+ * The coordinates are read in bulk straight into packed coordinate arrays and transformed into world
+ * coordinates in place, without creating intermediate point objects or WKT strings. Extended WKB
+ * (SRID, Z and M flags) and ISO WKB with Z/M dimensions are accepted; Z and M values are skipped.
+ * A decoder keeps no state between calls but is not thread-safe; use one decoder per query.
+ */
+public class WKBDecoder {
+    private static final int POINT = 1;
+    private static final int LINESTRING = 2;
+    private static final int POLYGON = 3;
+    private static final int MULTIPOINT = 4;
+    private static final int MULTILINESTRING = 5;
+    private static final int MULTIPOLYGON = 6;
+    private static final int GEOMETRYCOLLECTION = 7;
+
+    private static final int EWKB_Z = 0x80000000;
+    private static final int EWKB_M = 0x40000000;
+    private static final int EWKB_SRID = 0x20000000;
+
+    private final ICoordinateTransform mTransform;
+    private ByteBuffer mBuffer;
+
+    /**
+     * Constructs a WKBDecoder.
+     *
+     * @param _transform the transform converting the stored coordinates into world coordinates.
+     */
+    public WKBDecoder(ICoordinateTransform _transform) {
+        mTransform = _transform;
+    }
+
+    /**
+     * Decodes a geometry into a geo object. Multi geometries and collections become one geo object with
+     * one part per member.
+     *
+     * @param _id the id of the geo object.
+     * @param _type the type of the geo object.
+     * @param _wkb the geometry in well-known binary format.
+     * @return the geo object, or null if the geometry is empty.
+     */
+    public GeoObject decode(String _id, int _type, byte[] _wkb) {
+        if (_wkb == null) {
+            return null;
+        }
+        mBuffer = ByteBuffer.wrap(_wkb);
+        Vector<GeoObjectPart> parts = new Vector<>(1);
+        readGeometry(parts);
+        mBuffer = null;
+        return parts.isEmpty() ? null : new GeoObject(_id, _type, parts);
+    }
+
+    /**
+     * Reads one geometry, including its header, and appends its parts.
+     *
+     * @param _parts the list receiving the decoded parts.
+     */
+    private void readGeometry(Vector<GeoObjectPart> _parts) {
+        mBuffer.order(mBuffer.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int typeWord = mBuffer.getInt();
+        int dims = 2;
+        if ((typeWord & EWKB_Z) != 0) dims++;
+        if ((typeWord & EWKB_M) != 0) dims++;
+        if ((typeWord & EWKB_SRID) != 0) {
+            mBuffer.getInt();
+        }
+        int type = typeWord & 0x0FFFFFFF;
+        // ISO WKB encodes the dimensions as 1000 (Z), 2000 (M) or 3000 (ZM) added to the type
+        switch (type / 1000) {
+            case 1:
+            case 2:
+                dims++;
+                break;
+            case 3:
+                dims += 2;
+                break;
+        }
+        type %= 1000;
+
+        switch (type) {
+            case POINT: {
+                double[] xy = readPoints(1, dims);
+                if (!Double.isNaN(xy[0])) {
+                    _parts.add(new Point(xy[0], xy[1]));
+                }
+                break;
+            }
+            case LINESTRING: {
+                int numPoints = mBuffer.getInt();
+                if (numPoints > 0) {
+                    _parts.add(new Line(readPoints(numPoints, dims)));
+                }
+                break;
+            }
+            case POLYGON: {
+                int numRings = mBuffer.getInt();
+                if (numRings > 0) {
+                    Area area = new Area(readPoints(mBuffer.getInt(), dims));
+                    for (int i = 1; i < numRings; i++) {
+                        area.addHole(readPoints(mBuffer.getInt(), dims));
+                    }
+                    _parts.add(area);
+                }
+                break;
+            }
+            case MULTIPOINT:
+            case MULTILINESTRING:
+            case MULTIPOLYGON:
+            case GEOMETRYCOLLECTION: {
+                int numGeometries = mBuffer.getInt();
+                for (int i = 0; i < numGeometries; i++) {
+                    readGeometry(_parts);
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported WKB geometry type: " + type);
+        }
+    }
+
+    /**
+     * Reads a sequence of points into a packed coordinate array and transforms it into world coordinates.
+     *
+     * @param _numPoints the number of points to read.
+     * @param _dims the number of ordinates per point; everything beyond x and y is skipped.
+     * @return the interleaved x/y world coordinates.
+     */
+    private double[] readPoints(int _numPoints, int _dims) {
+        double[] coords = new double[_numPoints * 2];
+        if (_dims == 2) {
+            mBuffer.asDoubleBuffer().get(coords);
+            mBuffer.position(mBuffer.position() + coords.length * Double.BYTES);
+        } else {
+            int skip = (_dims - 2) * Double.BYTES;
+            for (int i = 0; i < coords.length; i += 2) {
+                coords[i] = mBuffer.getDouble();
+                coords[i + 1] = mBuffer.getDouble();
+                mBuffer.position(mBuffer.position() + skip);
+            }
+        }
+        mTransform.transform(coords, 0, _numPoints);
+        return coords;
+    }
+}
@@ -0,0 +1,98 @@
+package at.fhooe.sail.ois.map.server.cache;
+
+import at.fhooe.sail.ois.map.client.ADrawingContext;
+import at.fhooe.sail.ois.map.server.GeoDataException;
+import at.fhooe.sail.ois.map.server.GeoLayer;
+import at.fhooe.sail.ois.map.server.GeoQuery;
+import at.fhooe.sail.ois.map.server.IGeoDataSource;
+import at.fhooe.sail.ois.map.server.QueryMonitor;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Decorator answering repeated queries of a data source from a {@link QueryCache}.
+ * Only complete results are cached; if the underlying query fails, nothing is stored.
+ */
+public class CachingGeoDataSource implements IGeoDataSource {
+    private final IGeoDataSource mSource;
+    private final QueryCache mCache;
+
+    /**
+     * Constructs a CachingGeoDataSource.
+     *
+     * @param _source the data source to cache.
+     * @param _cache the cache to store the results in; it may be shared with other sources.
+     */
+    public CachingGeoDataSource(IGeoDataSource _source, QueryCache _cache) {
+        mSource = _source;
+        mCache = _cache;
+    }
+
+    /**
+     * Gets the cached data source.
+     *
+     * @return the underlying data source.
+     */
+    public IGeoDataSource getSource() {
+        return mSource;
+    }
+
+    /**
+     * Gets the cache the results are stored in.
+     *
+     * @return the query cache.
+     */
+    public QueryCache getCache() {
+        return mCache;
+    }
+
+    @Override
+    public String getName() {
+        return mSource.getName();
+    }
+
+    @Override
+    public ADrawingContext getDrawingContext() {
+        return mSource.getDrawingContext();
+    }
+
+    @Override
+    public List<GeoLayer> getLayers() {
+        return mSource.getLayers();
+    }
+
+    @Override
+    public Rectangle2D getExtent() throws GeoDataException {
+        return mSource.getExtent();
+    }
+
+    @Override
+    public void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink) throws GeoDataException {
+        query(_layer, _query, _sink, new QueryMonitor());
+    }
+
+    @Override
+    public void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink, QueryMonitor _monitor)
+            throws GeoDataException {
+        List<GeoObject> cached = mCache.get(mSource.getName(), _layer.getName(), _query);
+        if (cached != null) {
+            for (int i = 0; i < cached.size(); i++) {
+                _sink.accept(cached.get(i));
+            }
+            return;
+        }
+
+        // a cancelled or failed query throws before anything is put into the cache
+        List<GeoObject> result = new ArrayList<>();
+        mSource.query(_layer, _query, _obj -> {
+            result.add(_obj);
+            _sink.accept(_obj);
+        }, _monitor);
+        mCache.put(mSource.getName(), _layer.getName(), _query, Collections.unmodifiableList(result));
+    }
+}
@@ -0,0 +1,241 @@
+package at.fhooe.sail.ois.map.server.cache;
+
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Vector;
+
+/**
+ * Persistent local store for loaded geo objects.
+ *
+ * Every data source and bounding box gets its own file in the cache directory, encoded with the
+ * {@link FeatureCodec}. Files are read back through a memory-mapped buffer, so a cache hit neither
+ * touches the database nor parses any WKT. Each file carries the version stamp of the source it was
+ * loaded from and is discarded as soon as the source reports a different stamp.
+ *
+ * As every bounding box gets a file of its own, the directory is trimmed after each store: files not used
+ * for longer than the maximum age are deleted, then the least recently used ones until the files fit into
+ * the maximum size. Loading a file marks it as used.
+ */
+public class FeatureCache {
+
+    /** Stamp used when the version of the source is unknown, e.g. because the database is not reachable. */
+    public static final long UNKNOWN_VERSION = -1;
+
+    /** Query summing up the modification counters of all user tables, which changes whenever data is written. */
+    private static final String VERSION_QUERY =
+            "SELECT COALESCE(SUM(n_tup_ins + n_tup_upd + n_tup_del), 0) FROM pg_stat_user_tables;";
+
+    /** Default maximum size of all files in the cache directory. */
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+    /** Default time after which an unused file is deleted. */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    private static final String SUFFIX = ".feat";
+    private static final String TMP_SUFFIX = ".tmp";
+    /** Data sources of the same directory share it, so trimming is serialized across all instances. */
+    private static final Object sTrimLock = new Object();
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final long mMaxAgeMillis;
+
+    /**
+     * Constructs a FeatureCache storing its files in the "featureCache" directory of the working directory.
+     */
+    public FeatureCache() {
+        this(new File(System.getProperty("user.dir"), "featureCache"));
+    }
+
+    /**
+     * Constructs a FeatureCache storing its files in the given directory, with the default limits.
+     *
+     * @param _directory the directory holding the cache files; it is created on the first store.
+     */
+    public FeatureCache(File _directory) {
+        this(_directory, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Constructs a FeatureCache storing its files in the given directory.
+     *
+     * @param _directory the directory holding the cache files; it is created on the first store.
+     * @param _maxBytes the maximum size of all files in the directory.
+     * @param _maxAgeMillis the time after which a file that was not used is deleted.
+     */
+    public FeatureCache(File _directory, long _maxBytes, long _maxAgeMillis) {
+        mDirectory = _directory;
+        mMaxBytes = _maxBytes;
+        mMaxAgeMillis = _maxAgeMillis;
+    }
+
+    /**
+     * Loads cached geo objects.
+     *
+     * @param _source the name of the data source, e.g. the database name.
+     * @param _key the key identifying the request within the source, e.g. the bounding box or the query.
+     * @param _stamp the current version stamp of the source, or {@link #UNKNOWN_VERSION} to accept any cached version.
+     * @return the cached geo objects, or null if nothing valid is cached. Outdated files are overwritten by the next
+     * store of the same key, or deleted once they exceed the limits of the cache.
+     */
+    public Vector<GeoObject> load(String _source, String _key, long _stamp) {
+        File file = getFile(_source, _key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!FeatureCodec.checkHeader(buffer, _key, _stamp)) {
+                return null;
+            }
+            Vector<GeoObject> objects = FeatureCodec.decodeFeatures(buffer);
+            file.setLastModified(System.currentTimeMillis());
+            return objects;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error: could not read feature cache " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores geo objects in the cache, replacing any previous file for the same source and key.
+     * The file is written next to its final location first and then moved, so readers never see a partial file.
+     * Afterwards the directory is trimmed to the maximum size and age.
+     *
+     * @param _source the name of the data source, e.g. the database name.
+     * @param _key the key identifying the request within the source, e.g. the bounding box or the query.
+     * @param _stamp the version stamp of the source the objects were loaded from.
+     * @param _bbox the bounding box the objects were loaded for, or null for the full extent.
+     * @param _objects the geo objects to store.
+     */
+    public void store(String _source, String _key, long _stamp, Rectangle2D _bbox, Collection<? extends GeoObject> _objects) {
+        if (_stamp == UNKNOWN_VERSION) {
+            return;
+        }
+        File file = getFile(_source, _key);
+        Path tmp = null;
+        try {
+            Files.createDirectories(mDirectory.toPath());
+            tmp = Files.createTempFile(mDirectory.toPath(), file.getName(), TMP_SUFFIX);
+            ByteBuffer buffer = ByteBuffer.allocate(FeatureCodec.encodedSize(_key, _objects));
+            FeatureCodec.encode(buffer, _stamp, _key, _bbox, _objects);
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error: could not write feature cache " + file + ": " + e.getMessage());
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    System.out.println("Error: could not delete " + tmp + ": " + e.getMessage());
+                }
+            }
+        }
+        trim();
+    }
+
+    /**
+     * Deletes the files that were not used for longer than the maximum age, then the least recently used
+     * files until all files fit into the maximum size. Temporary files are only deleted once they are older
+     * than the maximum age, as another store may still be writing them.
+     */
+    public void trim() {
+        synchronized (sTrimLock) {
+            File[] files = mDirectory.listFiles((dir, name) -> name.endsWith(SUFFIX) || name.endsWith(TMP_SUFFIX));
+            if (files == null) {
+                return;
+            }
+            long oldest = System.currentTimeMillis() - mMaxAgeMillis;
+            long[] modified = new long[files.length];
+            for (int i = 0; i < files.length; i++) {
+                modified[i] = files[i].lastModified();
+            }
+            Integer[] order = new Integer[files.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> -modified[i]));
+
+            long total = 0;
+            for (int i : order) {
+                File file = files[i];
+                boolean tmp = file.getName().endsWith(TMP_SUFFIX);
+                long length = file.length();
+                if (modified[i] < oldest || (!tmp && total + length > mMaxBytes)) {
+                    file.delete();
+                } else {
+                    total += length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the version stamp of a PostgreSQL database.
+     * The stamp is derived from the statistics counters of all user tables and changes whenever rows are
+     * inserted, updated or deleted.
+     *
+     * @param _connection an open connection to the database, may be null.
+     * @return the version stamp, or {@link #UNKNOWN_VERSION} if it could not be determined.
+     */
+    public static long readVersion(Connection _connection) {
+        if (_connection == null) {
+            return UNKNOWN_VERSION;
+        }
+        try (Statement s = _connection.createStatement();
+             ResultSet r = s.executeQuery(VERSION_QUERY)) {
+            return r.next() ? r.getLong(1) : UNKNOWN_VERSION;
+        } catch (SQLException e) {
+            return UNKNOWN_VERSION;
+        }
+    }
+
+    /**
+     * Formats a bounding box as a cache key.
+     *
+     * @param _bbox the bounding box, or null for the full extent.
+     * @return the cache key.
+     */
+    public static String keyFor(Rectangle2D _bbox) {
+        if (_bbox == null) {
+            return "full";
+        }
+        return _bbox.getMinX() + "," + _bbox.getMinY() + "," + _bbox.getMaxX() + "," + _bbox.getMaxY();
+    }
+
+    /**
+     * Gets the file used for a source and key. The key is stored in the file header as well,
+     * so hash collisions in the file name are detected on load.
+     *
+     * @param _source the name of the data source.
+     * @param _key the key identifying the request within the source.
+     * @return the cache file.
+     */
+    private File getFile(String _source, String _key) {
+        String name = _source.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + Integer.toHexString(_key.hashCode()) + SUFFIX;
+        return new File(mDirectory, name);
+    }
+}
@@ -0,0 +1,304 @@
+package at.fhooe.sail.ois.map.server.cache;
+
+import at.fhooe.sail.ois.map.server.feature.Area;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+import at.fhooe.sail.ois.map.server.feature.GeoObjectPart;
+import at.fhooe.sail.ois.map.server.feature.Line;
+import at.fhooe.sail.ois.map.server.feature.Point;
+
+import java.awt.geom.Rectangle2D;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Vector;
+
+/**
+ * Encodes and decodes geo objects in a compact binary layout.
+ *
+ * A file starts with a header (magic number, format version, source version stamp, cache key and
+ * the bounding box the data was loaded for), followed by the features. Each feature stores its id,
+ * type, bounds and clip rectangle (NaN if it is complete), then its parts as a type code and the packed
+ * x/y coordinates of every ring.
+ * All values are little-endian, so the layout can be read straight from a memory-mapped file.
+ */
+public final class FeatureCodec {
+
+    /** Magic number at the start of every feature file ("OISF"). */
+    public static final int MAGIC = 0x4F495346;
+    /** Version of the binary layout, increased whenever the layout changes. */
+    public static final short FORMAT_VERSION = 2;
+
+    /** Type code of an area part. */
+    public static final byte PART_AREA = 1;
+    /** Type code of a line part. */
+    public static final byte PART_LINE = 2;
+    /** Type code of a point part. */
+    public static final byte PART_POINT = 3;
+
+    private FeatureCodec() {}
+
+    /**
+     * Calculates the number of bytes needed to encode the given geo objects.
+     *
+     * @param _key the cache key stored in the header.
+     * @param _objects the geo objects to encode.
+     * @return the encoded size in bytes.
+     */
+    public static int encodedSize(String _key, Collection<? extends GeoObject> _objects) {
+        long size = headerSize(_key);
+        for (GeoObject obj : _objects) {
+            size += featureSize(obj);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many features for one feature file: " + size + " bytes");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Writes the header and all geo objects into a buffer.
+     *
+     * @param _buffer the buffer to write to; it must have {@link #encodedSize} bytes remaining.
+     * @param _stamp the version stamp of the data source the objects were loaded from.
+     * @param _key the cache key stored in the header.
+     * @param _bbox the bounding box the objects were loaded for, or null for the full extent.
+     * @param _objects the geo objects to encode.
+     */
+    public static void encode(ByteBuffer _buffer, long _stamp, String _key, Rectangle2D _bbox, Collection<? extends GeoObject> _objects) {
+        _buffer.order(ByteOrder.LITTLE_ENDIAN);
+        _buffer.putInt(MAGIC);
+        _buffer.putShort(FORMAT_VERSION);
+        _buffer.putLong(_stamp);
+        putString(_buffer, _key);
+        putRect(_buffer, _bbox);
+        _buffer.putInt(_objects.size());
+        for (GeoObject obj : _objects) {
+            encodeFeature(_buffer, obj);
+        }
+    }
+
+    /**
+     * Reads only the header of a feature file and checks that it matches the expected key and stamp.
+     * The buffer is positioned after the header afterwards.
+     *
+     * @param _buffer the buffer to read from.
+     * @param _key the expected cache key.
+     * @param _stamp the expected version stamp, or a negative value to accept any stamp.
+     * @return true if the header is valid for the given key and stamp, false otherwise.
+     */
+    public static boolean checkHeader(ByteBuffer _buffer, String _key, long _stamp) {
+        try {
+            _buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (_buffer.getInt() != MAGIC || _buffer.getShort() != FORMAT_VERSION) {
+                return false;
+            }
+            long stamp = _buffer.getLong();
+            if (_stamp >= 0 && stamp != _stamp) {
+                return false;
+            }
+            if (!_key.equals(getString(_buffer, new byte[256]))) {
+                return false;
+            }
+            _buffer.position(_buffer.position() + 4 * Double.BYTES);
+            return true;
+        } catch (BufferUnderflowException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Decodes all geo objects following the header.
+     *
+     * @param _buffer the buffer positioned after the header.
+     * @return the decoded geo objects.
+     */
+    public static Vector<GeoObject> decodeFeatures(ByteBuffer _buffer) {
+        _buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int count = _buffer.getInt();
+        Vector<GeoObject> objects = new Vector<>(count);
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < count; i++) {
+            objects.add(decodeFeature(_buffer, scratch));
+        }
+        return objects;
+    }
+
+    /**
+     * Calculates the number of bytes needed to encode a single geo object.
+     *
+     * @param _obj the geo object.
+     * @return the encoded size in bytes.
+     */
+    public static int featureSize(GeoObject _obj) {
+        int size = stringSize(_obj.getmId()) + Integer.BYTES + 8 * Double.BYTES + Integer.BYTES;
+        for (GeoObjectPart part : _obj.getGeoObjectParts()) {
+            size += 1 + Integer.BYTES;
+            if (part instanceof Area) {
+                size += ringSize(((Area) part).getGeometry());
+                for (GeoObjectPart hole : part.mHoles) {
+                    size += ringSize(((Area) hole).getGeometry());
+                }
+            } else if (part instanceof Line) {
+                size += ringSize(((Line) part).getGeometry());
+            } else if (part instanceof Point) {
+                size += Integer.BYTES + 2 * Double.BYTES;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes a single geo object into a buffer.
+     *
+     * @param _buffer the little-endian buffer to write to.
+     * @param _obj the geo object to write.
+     */
+    public static void encodeFeature(ByteBuffer _buffer, GeoObject _obj) {
+        putString(_buffer, _obj.getmId());
+        _buffer.putInt(_obj.getmType());
+        putRect(_buffer, _obj.getBounds());
+        putRect(_buffer, _obj.getClipBounds());
+        Vector<GeoObjectPart> parts = _obj.getGeoObjectParts();
+        _buffer.putInt(parts.size());
+        for (GeoObjectPart part : parts) {
+            if (part instanceof Area) {
+                _buffer.put(PART_AREA);
+                _buffer.putInt(1 + part.mHoles.size());
+                putRing(_buffer, ((Area) part).getGeometry());
+                for (GeoObjectPart hole : part.mHoles) {
+                    putRing(_buffer, ((Area) hole).getGeometry());
+                }
+            } else if (part instanceof Line) {
+                _buffer.put(PART_LINE);
+                _buffer.putInt(1);
+                putRing(_buffer, ((Line) part).getGeometry());
+            } else if (part instanceof Point) {
+                _buffer.put(PART_POINT);
+                _buffer.putInt(1);
+                _buffer.putInt(1);
+                _buffer.putDouble(((Point) part).getX());
+                _buffer.putDouble(((Point) part).getY());
+            } else {
+                _buffer.put((byte) 0);
+                _buffer.putInt(0);
+            }
+        }
+    }
+
+    /**
+     * Reads a single geo object from a buffer.
+     *
+     * @param _buffer the little-endian buffer positioned at the start of a feature.
+     * @param _scratch a reusable buffer for decoding the id.
+     * @return the decoded geo object.
+     */
+    public static GeoObject decodeFeature(ByteBuffer _buffer, byte[] _scratch) {
+        String id = getString(_buffer, _scratch);
+        int type = _buffer.getInt();
+        _buffer.position(_buffer.position() + 4 * Double.BYTES);
+        double clipMinX = _buffer.getDouble();
+        double clipMinY = _buffer.getDouble();
+        double clipMaxX = _buffer.getDouble();
+        double clipMaxY = _buffer.getDouble();
+        int numParts = _buffer.getInt();
+        Vector<GeoObjectPart> parts = new Vector<>(numParts);
+        for (int i = 0; i < numParts; i++) {
+            byte kind = _buffer.get();
+            int numRings = _buffer.getInt();
+            switch (kind) {
+                case PART_AREA:
+                    Area area = new Area(getRing(_buffer));
+                    for (int r = 1; r < numRings; r++) {
+                        area.addHole(getRing(_buffer));
+                    }
+                    parts.add(area);
+                    break;
+                case PART_LINE:
+                    parts.add(new Line(getRing(_buffer)));
+                    break;
+                case PART_POINT:
+                    double[] xy = getRing(_buffer);
+                    parts.add(new Point(xy[0], xy[1]));
+                    break;
+                default:
+                    for (int r = 0; r < numRings; r++) {
+                        getRing(_buffer);
+                    }
+            }
+        }
+        GeoObject obj = new GeoObject(id, type, parts);
+        if (!Double.isNaN(clipMinX)) {
+            obj.setClipBounds(new Rectangle2D.Double(clipMinX, clipMinY, clipMaxX - clipMinX, clipMaxY - clipMinY));
+        }
+        return obj;
+    }
+
+    /**
+     * Reads the bounding box stored with the feature at the current buffer position without decoding it.
+     *
+     * @param _buffer the little-endian buffer positioned at the start of a feature.
+     * @param _dst the rectangle receiving the bounds.
+     */
+    public static void peekBounds(ByteBuffer _buffer, Rectangle2D _dst) {
+        int pos = _buffer.position();
+        int idLength = _buffer.getShort(pos) & 0xFFFF;
+        int boundsPos = pos + Short.BYTES + idLength + Integer.BYTES;
+        double minX = _buffer.getDouble(boundsPos);
+        double minY = _buffer.getDouble(boundsPos + Double.BYTES);
+        double maxX = _buffer.getDouble(boundsPos + 2 * Double.BYTES);
+        double maxY = _buffer.getDouble(boundsPos + 3 * Double.BYTES);
+        _dst.setRect(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    private static int headerSize(String _key) {
+        return Integer.BYTES + Short.BYTES + Long.BYTES + stringSize(_key) + 4 * Double.BYTES + Integer.BYTES;
+    }
+
+    private static int ringSize(double[] _coords) {
+        return Integer.BYTES + _coords.length * Double.BYTES;
+    }
+
+    private static int stringSize(String _s) {
+        return Short.BYTES + (_s == null ? 0 : _s.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static void putString(ByteBuffer _buffer, String _s) {
+        byte[] bytes = _s == null ? new byte[0] : _s.getBytes(StandardCharsets.UTF_8);
+        _buffer.putShort((short) bytes.length);
+        _buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer _buffer, byte[] _scratch) {
+        int length = _buffer.getShort() & 0xFFFF;
+        byte[] bytes = length <= _scratch.length ? _scratch : new byte[length];
+        _buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void putRect(ByteBuffer _buffer, Rectangle2D _rect) {
+        if (_rect == null) {
+            _buffer.putDouble(Double.NaN).putDouble(Double.NaN).putDouble(Double.NaN).putDouble(Double.NaN);
+            return;
+        }
+        _buffer.putDouble(_rect.getMinX());
+        _buffer.putDouble(_rect.getMinY());
+        _buffer.putDouble(_rect.getMaxX());
+        _buffer.putDouble(_rect.getMaxY());
+    }
+
+    private static void putRing(ByteBuffer _buffer, double[] _coords) {
+        _buffer.putInt(_coords.length / 2);
+        _buffer.asDoubleBuffer().put(_coords);
+        _buffer.position(_buffer.position() + _coords.length * Double.BYTES);
+    }
+
+    private static double[] getRing(ByteBuffer _buffer) {
+        int numPoints = _buffer.getInt();
+        double[] coords = new double[numPoints * 2];
+        _buffer.asDoubleBuffer().get(coords);
+        _buffer.position(_buffer.position() + coords.length * Double.BYTES);
+        return coords;
+    }
+}
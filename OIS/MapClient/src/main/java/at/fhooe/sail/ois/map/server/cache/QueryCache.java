@@ -0,0 +1,258 @@
+package at.fhooe.sail.ois.map.server.cache;
+
+import at.fhooe.sail.ois.map.server.GeoQuery;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded in-memory cache for query results, shared by all {@link CachingGeoDataSource}s.
+ *
+ * Results are stored per source, layer and query. A lookup is answered by an exact match, or by any
+ * cached result of the same source, layer and level of detail whose bounding box contains the requested
+ * one; that result is then filtered in memory. Entries are evicted in least-recently-used order once the
+ * estimated size of all results exceeds the capacity, and expire after a maximum age so changes in the
+ * database become visible eventually.
+ */
+public class QueryCache {
+
+    /** Default capacity of the cache. */
+    public static final long DEFAULT_CAPACITY = 128L * 1024 * 1024;
+    /** Default maximum age of a cached result. */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 10 * 60 * 1000;
+
+    /** Key of a cached result. */
+    private static final class Key {
+        final String mSource;
+        final String mLayer;
+        final GeoQuery mQuery;
+
+        Key(String _source, String _layer, GeoQuery _query) {
+            mSource = _source;
+            mLayer = _layer;
+            mQuery = _query;
+        }
+
+        boolean sameGroup(Key _other) {
+            return mSource.equals(_other.mSource) && mLayer.equals(_other.mLayer);
+        }
+
+        @Override
+        public boolean equals(Object _o) {
+            if (!(_o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) _o;
+            return sameGroup(k) && mQuery.hasSameDetail(k.mQuery)
+                    && (mQuery.getBBox() == null ? k.mQuery.getBBox() == null : mQuery.getBBox().equals(k.mQuery.getBBox()));
+        }
+
+        @Override
+        public int hashCode() {
+            return (mSource.hashCode() * 31 + mLayer.hashCode()) * 31
+                    + mQuery.getScale() * 17 + (mQuery.getBBox() == null ? 0 : mQuery.getBBox().hashCode());
+        }
+    }
+
+    /** A cached result. */
+    private static final class Entry {
+        final List<GeoObject> mObjects;
+        final long mBytes;
+        final long mCreated;
+
+        Entry(List<GeoObject> _objects, long _bytes) {
+            mObjects = _objects;
+            mBytes = _bytes;
+            mCreated = System.currentTimeMillis();
+        }
+    }
+
+    private final long mCapacity;
+    private final long mMaxAgeMillis;
+    private final LinkedHashMap<Key, Entry> mEntries = new LinkedHashMap<>(64, 0.75f, true);
+    private long mBytes = 0;
+    private long mHits = 0;
+    private long mContainmentHits = 0;
+    private long mMisses = 0;
+    private long mEvictions = 0;
+
+    /**
+     * Constructs a QueryCache with the default capacity and maximum age.
+     */
+    public QueryCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Constructs a QueryCache.
+     *
+     * @param _capacity the maximum estimated size of all cached results in bytes.
+     * @param _maxAgeMillis the time after which a cached result is discarded.
+     */
+    public QueryCache(long _capacity, long _maxAgeMillis) {
+        mCapacity = _capacity;
+        mMaxAgeMillis = _maxAgeMillis;
+    }
+
+    /**
+     * Looks up the result of a query.
+     *
+     * @param _source the name of the data source.
+     * @param _layer the name of the layer.
+     * @param _query the query.
+     * @return the matching geo objects, or null on a cache miss.
+     */
+    public synchronized List<GeoObject> get(String _source, String _layer, GeoQuery _query) {
+        Key key = new Key(_source, _layer, _query);
+        Entry exact = mEntries.get(key);
+        if (exact != null && !isExpired(exact)) {
+            mHits++;
+            return exact.mObjects;
+        }
+
+        Key containing = null;
+        for (Iterator<Map.Entry<Key, Entry>> it = mEntries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (isExpired(e.getValue())) {
+                mBytes -= e.getValue().mBytes;
+                it.remove();
+            } else if (containing == null && key.sameGroup(e.getKey()) && e.getKey().mQuery.covers(_query)) {
+                containing = e.getKey();
+            }
+        }
+        if (containing == null) {
+            mMisses++;
+            return null;
+        }
+
+        mContainmentHits++;
+        List<GeoObject> all = mEntries.get(containing).mObjects;
+        List<GeoObject> result = new ArrayList<>();
+        for (int i = 0; i < all.size(); i++) {
+            GeoObject obj = all.get(i);
+            if (_query.intersects(obj.getBounds())) {
+                result.add(obj);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores the complete result of a query and evicts the least recently used results if the capacity is exceeded.
+     *
+     * @param _source the name of the data source.
+     * @param _layer the name of the layer.
+     * @param _query the query.
+     * @param _objects the geo objects returned by the query.
+     */
+    public synchronized void put(String _source, String _layer, GeoQuery _query, List<GeoObject> _objects) {
+        long bytes = 64;
+        for (int i = 0; i < _objects.size(); i++) {
+            bytes += 8 + _objects.get(i).getEstimatedBytes();
+        }
+        if (bytes > mCapacity) {
+            return;
+        }
+        Entry previous = mEntries.put(new Key(_source, _layer, _query), new Entry(_objects, bytes));
+        if (previous != null) {
+            mBytes -= previous.mBytes;
+        }
+        mBytes += bytes;
+
+        Iterator<Entry> it = mEntries.values().iterator();
+        while (mBytes > mCapacity && it.hasNext()) {
+            mBytes -= it.next().mBytes;
+            it.remove();
+            mEvictions++;
+        }
+    }
+
+    /**
+     * Removes all cached results of a data source.
+     *
+     * @param _source the name of the data source.
+     */
+    public synchronized void invalidate(String _source) {
+        Iterator<Map.Entry<Key, Entry>> it = mEntries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().mSource.equals(_source)) {
+                mBytes -= e.getValue().mBytes;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of lookups answered by an exact match.
+     *
+     * @return the number of exact hits.
+     */
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    /**
+     * Gets the number of lookups answered by filtering a result with a containing bounding box.
+     *
+     * @return the number of containment hits.
+     */
+    public synchronized long getContainmentHitCount() {
+        return mContainmentHits;
+    }
+
+    /**
+     * Gets the number of lookups that had to query the data source.
+     *
+     * @return the number of misses.
+     */
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    /**
+     * Gets the number of results evicted because the capacity was exceeded.
+     *
+     * @return the number of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return mEvictions;
+    }
+
+    /**
+     * Gets the estimated size of all cached results.
+     *
+     * @return the size in bytes.
+     */
+    public synchronized long getWeightedBytes() {
+        return mBytes;
+    }
+
+    /**
+     * Gets the share of lookups answered from the cache.
+     *
+     * @return the hit rate between 0 and 1.
+     */
+    public synchronized double getHitRate() {
+        long lookups = mHits + mContainmentHits + mMisses;
+        return lookups == 0 ? 0 : (double) (mHits + mContainmentHits) / lookups;
+    }
+
+    /**
+     * Returns the metrics of the cache as a string.
+     *
+     * @return the metrics of the cache.
+     */
+    public synchronized String toString() {
+        return "QueryCache{entries=" + mEntries.size() + ", bytes=" + mBytes + "/" + mCapacity + ", hits=" + mHits
+                + ", containmentHits=" + mContainmentHits + ", misses=" + mMisses + ", evictions=" + mEvictions + "}";
+    }
+
+    private boolean isExpired(Entry _entry) {
+        return System.currentTimeMillis() - _entry.mCreated > mMaxAgeMillis;
+    }
+}
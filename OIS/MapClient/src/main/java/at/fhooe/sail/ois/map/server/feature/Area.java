@@ -4,39 +4,65 @@ import at.fhooe.sail.ois.map.client.Matrix;
 import at.fhooe.sail.ois.map.client.PresentationSchema;
 
 import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
 
 /**
  * Represents an area as a part of a geographic object.
  * This class holds the geometry of the area and provides methods to access its bounds and draw it onto a graphics context.
  */
 public class Area extends GeoObjectPart{
-    private Polygon mGeometry;
+    /** Path reused for areas with holes, filled with the even-odd rule instead of subtracting shapes. */
+    private static final Path2D.Double sPath = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+
+    private final double[] mGeometry;
+    private final Rectangle2D.Double mBounds;
 
     /**
      * Constructs an Area object with the specified geometry.
      *
-     * @param _geometry the polygon representing the geometry of the area.
+     * @param _geometry the interleaved x/y world coordinates of the outer ring.
      */
-    public Area(Polygon _geometry){
+    public Area(double[] _geometry){
         this.mGeometry = _geometry;
+        this.mBounds = calculateBounds(_geometry);
     }
 
     /**
      * Gets the geometry of the area.
      *
-     * @return the polygon representing the geometry of the area.
+     * @return the interleaved x/y world coordinates of the outer ring.
      */
-    public Polygon getGeometry(){
+    public double[] getGeometry(){
         return mGeometry;
     }
 
+    /**
+     * Gets the number of points of the outer ring.
+     *
+     * @return the number of points.
+     */
+    public int getNumPoints(){
+        return mGeometry.length / 2;
+    }
+
+    /**
+     * Estimates the heap memory used by the area, including its coordinates.
+     *
+     * @return the estimated size in bytes.
+     */
+    @Override
+    public long getEstimatedBytes(){
+        return super.getEstimatedBytes() + 16 + mGeometry.length * 8L;
+    }
+
     /**
      * Gets the bounding rectangle of the area's geometry.
      *
      * @return the bounding rectangle of the geometry.
      */
-    public Rectangle getBounds(){
-        return mGeometry.getBounds();
+    public Rectangle2D getBounds(){
+        return mBounds;
     }
 
     /**
@@ -48,20 +74,121 @@ public class Area extends GeoObjectPart{
      */
     @Override
     public void draw(Graphics2D _g, Matrix _m, PresentationSchema _schema){
-        Polygon transformed = _m.multiply(mGeometry);
-        java.awt.geom.Area area = new java.awt.geom.Area(transformed);
-        for(GeoObjectPart hole : mHoles){
-            if(hole instanceof Area){
-                Polygon poly = _m.multiply(((Area) hole).getGeometry());
-                area.subtract(new java.awt.geom.Area(poly));
+        if (mClipBounds != null) {
+            drawClipped(_g, _m, _schema);
+            return;
+        }
+        if (mHoles.isEmpty()) {
+            int numPoints = getNumPoints();
+            ensureDeviceCapacity(numPoints);
+            _m.transform(mGeometry, numPoints, sDeviceX, sDeviceY);
+            if (_schema.getFillColor() != null) {
+                _g.setColor(_schema.getFillColor());
+                _g.fillPolygon(sDeviceX, sDeviceY, numPoints);
+            }
+            _g.setColor(_schema.getLineColor());
+            _g.setStroke(_schema.getStroke());
+            _g.drawPolygon(sDeviceX, sDeviceY, numPoints);
+            return;
+        }
+
+        sPath.reset();
+        appendRing(sPath, mGeometry, _m);
+        for (int i = 0; i < mHoles.size(); i++) {
+            GeoObjectPart hole = mHoles.get(i);
+            if (hole instanceof Area) {
+                appendRing(sPath, ((Area) hole).getGeometry(), _m);
             }
         }
 
-        _g.setColor(_schema.getFillColor());
-        _g.fill(area);
+        if (_schema.getFillColor() != null) {
+            _g.setColor(_schema.getFillColor());
+            _g.fill(sPath);
+        }
         _g.setColor(_schema.getLineColor());
-        _g.setStroke(new BasicStroke(_schema.getLineWidth()));
-        _g.draw(area);
+        _g.setStroke(_schema.getStroke());
+        _g.draw(sPath);
+    }
 
+    /**
+     * Draws a clipped area. It is filled as usual, but the outline leaves out the segments along the clip rectangle,
+     * so the pieces of an area loaded for adjacent regions look like one area.
+     *
+     * @param _g the Graphics2D context to draw on.
+     * @param _m the transformation matrix to apply to the geometry.
+     * @param _schema the presentation schema defining the colors and line width.
+     */
+    private void drawClipped(Graphics2D _g, Matrix _m, PresentationSchema _schema) {
+        if (_schema.getFillColor() != null) {
+            sPath.reset();
+            appendRing(sPath, mGeometry, _m);
+            for (int i = 0; i < mHoles.size(); i++) {
+                GeoObjectPart hole = mHoles.get(i);
+                if (hole instanceof Area) {
+                    appendRing(sPath, ((Area) hole).getGeometry(), _m);
+                }
+            }
+            _g.setColor(_schema.getFillColor());
+            _g.fill(sPath);
+        }
+
+        sPath.reset();
+        appendOutline(sPath, mGeometry, _m, mClipBounds);
+        for (int i = 0; i < mHoles.size(); i++) {
+            GeoObjectPart hole = mHoles.get(i);
+            if (hole instanceof Area) {
+                appendOutline(sPath, ((Area) hole).getGeometry(), _m, mClipBounds);
+            }
+        }
+        _g.setColor(_schema.getLineColor());
+        _g.setStroke(_schema.getStroke());
+        _g.draw(sPath);
+    }
+
+    /**
+     * Appends the outline of a ring to a path in device coordinates, leaving out the segments along a clip rectangle.
+     *
+     * @param _path the path to append the outline to.
+     * @param _ring the interleaved x/y world coordinates of the closed ring.
+     * @param _m the transformation matrix to apply to the ring.
+     * @param _clip the clip rectangle in world coordinates.
+     */
+    private static void appendOutline(Path2D.Double _path, double[] _ring, Matrix _m, Rectangle2D _clip) {
+        boolean penDown = false;
+        for (int i = 2; i < _ring.length; i += 2) {
+            double x1 = _ring[i - 2];
+            double y1 = _ring[i - 1];
+            double x2 = _ring[i];
+            double y2 = _ring[i + 1];
+            if (isClipEdge(_clip, x1, y1, x2, y2)) {
+                penDown = false;
+                continue;
+            }
+            if (!penDown) {
+                _path.moveTo(Math.round(_m.transformX(x1, y1)), Math.round(_m.transformY(x1, y1)));
+                penDown = true;
+            }
+            _path.lineTo(Math.round(_m.transformX(x2, y2)), Math.round(_m.transformY(x2, y2)));
+        }
+    }
+
+    /**
+     * Appends a ring of world coordinates to a path in device coordinates.
+     *
+     * @param _path the path to append the ring to.
+     * @param _ring the interleaved x/y world coordinates of the ring.
+     * @param _m the transformation matrix to apply to the ring.
+     */
+    private static void appendRing(Path2D.Double _path, double[] _ring, Matrix _m) {
+        for (int i = 0; i < _ring.length; i += 2) {
+            double x = Math.round(_m.transformX(_ring[i], _ring[i + 1]));
+            double y = Math.round(_m.transformY(_ring[i], _ring[i + 1]));
+            if (i == 0) {
+                _path.moveTo(x, y);
+            } else {
+                _path.lineTo(x, y);
+            }
+        }
+        _path.closePath();
     }
 }
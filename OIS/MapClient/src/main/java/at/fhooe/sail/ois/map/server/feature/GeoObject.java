@@ -1,6 +1,6 @@
 package at.fhooe.sail.ois.map.server.feature;
 
-import java.awt.*;
+import java.awt.geom.Rectangle2D;
 import java.util.Vector;
 
 /**
@@ -11,6 +11,8 @@ public class GeoObject {
     private String mId;
     private int mType;
     private Vector<GeoObjectPart> mGeoObjectParts;
+    private Rectangle2D.Double mBounds;
+    private Rectangle2D mClipBounds;
 
     /**
      * Constructs a GeoObject with the specified id, type, and parts.
@@ -26,6 +28,15 @@ public class GeoObject {
         this.mGeoObjectParts = _geoObjectParts;
     }
 
+    /**
+     * Gets the id of the GeoObject.
+     *
+     * @return The id of the object.
+     */
+    public String getmId() {
+        return mId;
+    }
+
     /**
      * Gets the type of the GeoObject.
      *
@@ -36,18 +47,57 @@ public class GeoObject {
     }
 
     /**
-     * Gets the bounding box of the geometry.
+     * Gets the bounding box of the geometry in world coordinates.
+     * The bounds are calculated once and cached afterwards.
+     *
+     * @return The bounding box of the geometry as a Rectangle2D object.
+     * @see java.awt.geom.Rectangle2D
+     */
+    public Rectangle2D getBounds() {
+        if (mBounds == null) {
+            Rectangle2D.Double bounds = new Rectangle2D.Double();
+            bounds.setRect(mGeoObjectParts.get(0).getBounds());
+            for (int i = 1; i < mGeoObjectParts.size(); i++) {
+                bounds.add(mGeoObjectParts.get(i).getBounds());
+            }
+            mBounds = bounds;
+        }
+        return mBounds;
+    }
+
+    /**
+     * Marks the GeoObject as a piece cut out of a larger geometry at a clip rectangle.
+     * The outline of its areas is not drawn along the rectangle, so adjacent pieces join without seams.
+     *
+     * @param _clipBounds the clip rectangle in world coordinates, or null if the object is complete.
+     */
+    public void setClipBounds(Rectangle2D _clipBounds) {
+        mClipBounds = _clipBounds;
+        for (int i = 0; i < mGeoObjectParts.size(); i++) {
+            mGeoObjectParts.get(i).setClipBounds(_clipBounds);
+        }
+    }
+
+    /**
+     * Gets the clip rectangle the GeoObject was cut at.
+     *
+     * @return the clip rectangle in world coordinates, or null if the object is complete.
+     */
+    public Rectangle2D getClipBounds() {
+        return mClipBounds;
+    }
+
+    /**
+     * Estimates the heap memory used by the GeoObject and all its parts.
      *
-     * @return The bounding box of the geometry as a Rectangle object.
-     * @see java.awt.Rectangle
+     * @return The estimated size in bytes.
      */
-    public Rectangle getBounds() {
-        //return mPoly.getBounds();
-        Rectangle bounds = mGeoObjectParts.get(0).getBounds();
-        for (int i = 1; i < mGeoObjectParts.size(); i++) {
-            bounds = bounds.union(mGeoObjectParts.get(i).getBounds());
+    public long getEstimatedBytes() {
+        long bytes = 96 + (mId == null ? 0 : 40 + mId.length());
+        for (int i = 0; i < mGeoObjectParts.size(); i++) {
+            bytes += mGeoObjectParts.get(i).getEstimatedBytes();
         }
-        return bounds;
+        return bytes;
     }
 
     /**
@@ -4,6 +4,7 @@ import at.fhooe.sail.ois.map.client.Matrix;
 import at.fhooe.sail.ois.map.client.PresentationSchema;
 
 import java.awt.*;
+import java.awt.geom.Rectangle2D;
 import java.util.Vector;
 
 /**
@@ -14,6 +15,16 @@ import java.util.Vector;
 public abstract class GeoObjectPart {
     public Vector<GeoObjectPart> mHoles = new Vector<>();
 
+    /** The rectangle the geometry was clipped at, or null if it is complete. */
+    protected Rectangle2D mClipBounds = null;
+
+    /**
+     * Device coordinate buffers shared by all parts. Drawing only happens on the rendering thread,
+     * so the buffers are reused for every part instead of being allocated per draw call.
+     */
+    protected static int[] sDeviceX = new int[256];
+    protected static int[] sDeviceY = new int[256];
+
     /**
      * Abstract method to draw the geometric object part onto a Graphics2D context using a transformation matrix and presentation schema.
      *
@@ -26,18 +37,94 @@ public abstract class GeoObjectPart {
     /**
      * Abstract method to get the bounding rectangle of the geometric object part.
      *
-     * @return the bounding rectangle of the geometry.
+     * @return the bounding rectangle of the geometry in world coordinates.
      */
-    public abstract Rectangle getBounds();
+    public abstract Rectangle2D getBounds();
 
     /**
      * Adds a hole to the geometric object part.
-     * The hole is represented as a polygon and will be subtracted from the main geometry when drawn.
+     * The hole is represented as a ring of interleaved world coordinates and will be subtracted
+     * from the main geometry when drawn.
      *
-     * @param _poly the polygon representing the hole.
+     * @param _coords the interleaved x/y coordinates of the hole ring.
      */
-    public void addHole(Polygon _poly){
-        Area a = new Area(_poly);
+    public void addHole(double[] _coords){
+        Area a = new Area(_coords);
         mHoles.add(a);
     }
+
+    /**
+     * Sets the rectangle the geometry was clipped at.
+     *
+     * @param _clipBounds the clip rectangle in world coordinates, or null if the geometry is complete.
+     */
+    public void setClipBounds(Rectangle2D _clipBounds) {
+        mClipBounds = _clipBounds;
+    }
+
+    /**
+     * Estimates the heap memory used by this part, including its holes.
+     *
+     * @return the estimated size in bytes.
+     */
+    public long getEstimatedBytes() {
+        long bytes = 64;
+        for (int i = 0; i < mHoles.size(); i++) {
+            bytes += mHoles.get(i).getEstimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Makes sure the shared device buffers can hold the given number of points.
+     *
+     * @param _numPoints the number of points that have to fit into the buffers.
+     */
+    protected static void ensureDeviceCapacity(int _numPoints) {
+        if (sDeviceX.length < _numPoints) {
+            int size = Math.max(_numPoints, sDeviceX.length * 2);
+            sDeviceX = new int[size];
+            sDeviceY = new int[size];
+        }
+    }
+
+    /**
+     * Checks whether a segment runs along one of the edges of a clip rectangle, i.e. was introduced by clipping.
+     *
+     * @param _clip the clip rectangle.
+     * @param _x1 the x coordinate of the first point.
+     * @param _y1 the y coordinate of the first point.
+     * @param _x2 the x coordinate of the second point.
+     * @param _y2 the y coordinate of the second point.
+     * @return true if both points lie on the same edge of the rectangle.
+     */
+    protected static boolean isClipEdge(Rectangle2D _clip, double _x1, double _y1, double _x2, double _y2) {
+        double eps = 1e-6 * Math.max(_clip.getWidth(), _clip.getHeight());
+        return (Math.abs(_x1 - _clip.getMinX()) <= eps && Math.abs(_x2 - _clip.getMinX()) <= eps)
+                || (Math.abs(_x1 - _clip.getMaxX()) <= eps && Math.abs(_x2 - _clip.getMaxX()) <= eps)
+                || (Math.abs(_y1 - _clip.getMinY()) <= eps && Math.abs(_y2 - _clip.getMinY()) <= eps)
+                || (Math.abs(_y1 - _clip.getMaxY()) <= eps && Math.abs(_y2 - _clip.getMaxY()) <= eps);
+    }
+
+    /**
+     * Calculates the bounding box of interleaved x/y coordinates.
+     *
+     * @param _coords the interleaved coordinates.
+     * @return the bounding box of the coordinates.
+     */
+    protected static Rectangle2D.Double calculateBounds(double[] _coords) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < _coords.length; i += 2) {
+            double x = _coords[i];
+            double y = _coords[i + 1];
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
 }
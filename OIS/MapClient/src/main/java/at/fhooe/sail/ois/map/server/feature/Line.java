@@ -4,37 +4,62 @@ import at.fhooe.sail.ois.map.client.Matrix;
 import at.fhooe.sail.ois.map.client.PresentationSchema;
 
 import java.awt.*;
-import java.util.Vector;
-import java.awt.Point;
+import java.awt.geom.Rectangle2D;
 
 /**
  * Represents a line as a part of a geographic object.
  * This class holds the geometry of the line and provides methods to access its bounds and draw it onto a graphics context.
  */
 public class Line extends GeoObjectPart{
-    private Vector<Point> mGeometry;
+    private final double[] mGeometry;
+    private final Rectangle2D.Double mBounds;
 
     /**
      * Constructs a Line object with the specified geometry.
      *
-     * @param _geometry the vector of points representing the geometry of the line.
+     * @param _geometry the interleaved x/y world coordinates of the line.
      */
-    public Line(Vector<Point> _geometry){
+    public Line(double[] _geometry){
         this.mGeometry = _geometry;
+        this.mBounds = calculateBounds(_geometry);
+    }
+
+    /**
+     * Gets the geometry of the line.
+     *
+     * @return the interleaved x/y world coordinates of the line.
+     */
+    public double[] getGeometry(){
+        return mGeometry;
+    }
+
+    /**
+     * Gets the number of points of the line.
+     *
+     * @return the number of points.
+     */
+    public int getNumPoints(){
+        return mGeometry.length / 2;
+    }
+
+    /**
+     * Estimates the heap memory used by the line, including its coordinates.
+     *
+     * @return the estimated size in bytes.
+     */
+    @Override
+    public long getEstimatedBytes(){
+        return super.getEstimatedBytes() + 16 + mGeometry.length * 8L;
     }
 
     /**
      * Gets the bounding box of the line's geometry.
      *
-     * @return the bounding box of the geometry as a Rectangle object.
+     * @return the bounding box of the geometry as a Rectangle2D object.
      */
     @Override
-    public Rectangle getBounds(){
-        Rectangle fullBounds = new Rectangle(mGeometry.get(0));
-        for (int i = 1; i < mGeometry.size(); i++) {
-            fullBounds = fullBounds.union(new Rectangle(mGeometry.get(i)));
-        }
-        return fullBounds;
+    public Rectangle2D getBounds(){
+        return mBounds;
     }
 
     /**
@@ -46,18 +71,12 @@ public class Line extends GeoObjectPart{
      */
     @Override
     public void draw(Graphics2D _g, Matrix _m, PresentationSchema _schema){
-        int numPoints = mGeometry.size();
-        int[] xPoints = new int[numPoints];
-        int[] yPoints = new int[numPoints];
-
-        for (int i = 0; i < numPoints; i++) {
-            Point transformed = _m.multiply(mGeometry.get(i));
-            xPoints[i] = transformed.x;
-            yPoints[i] = transformed.y;
-        }
+        int numPoints = getNumPoints();
+        ensureDeviceCapacity(numPoints);
+        _m.transform(mGeometry, numPoints, sDeviceX, sDeviceY);
 
-        _g.setStroke(new BasicStroke(_schema.getLineWidth()));
+        _g.setStroke(_schema.getStroke());
         _g.setColor(_schema.getLineColor());
-        _g.drawPolyline(xPoints, yPoints, numPoints);
+        _g.drawPolyline(sDeviceX, sDeviceY, numPoints);
     }
 }
@@ -5,6 +5,7 @@ import at.fhooe.sail.ois.map.client.PresentationSchema;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -15,44 +16,67 @@ import java.io.IOException;
  */
 public class POIObject extends GeoObjectPart {
 
-    private java.awt.Point mGeometry;
+    private final double mX;
+    private final double mY;
     private String mFilename;
+    private BufferedImage mImage;
+    private boolean mImageLoaded = false;
 
     /**
      * Constructs a POIObject with the specified filename and geometry.
      *
      * @param _filename the filename of the POI image.
-     * @param _geometry the point representing the geometry of the POI.
+     * @param _x the x world coordinate of the POI.
+     * @param _y the y world coordinate of the POI.
      */
-    public POIObject(String _filename, java.awt.Point _geometry) {
-        this.mGeometry = _geometry;
+    public POIObject(String _filename, double _x, double _y) {
+        this.mX = _x;
+        this.mY = _y;
         this.mFilename = _filename;
     }
 
 
     /**
      * Draws the POI onto the provided Graphics2D context using the specified transformation matrix and presentation schema.
+     * The image is read from disk on the first draw only.
      *
      * @param _g the Graphics2D context to draw on.
      * @param _m the transformation matrix to apply to the geometry.
      * @param _schema the presentation schema defining the colors and line width.
      */
     public void draw(Graphics2D _g, Matrix _m, PresentationSchema _schema) {
-        java.awt.Point p = _m.multiply(mGeometry);
-        try {
-            BufferedImage img = ImageIO.read(new File("/Users/benjamingolic/Documents/FH Hagenberg/2. & 4. Semester/OIS/OIS/MapClient/src/main/resources/" + mFilename));
-            _g.drawImage(img, p.x, p.y, 35, 35 * img.getHeight(null) / img.getWidth(null), null);
-        } catch (IOException e) {
-            e.printStackTrace();
+        BufferedImage img = getImage();
+        if (img == null) {
+            return;
         }
+        int x = (int) Math.round(_m.transformX(mX, mY));
+        int y = (int) Math.round(_m.transformY(mX, mY));
+        _g.drawImage(img, x, y, 35, 35 * img.getHeight(null) / img.getWidth(null), null);
+    }
+
+    /**
+     * Lazily loads the POI image.
+     *
+     * @return the POI image, or null if it could not be loaded.
+     */
+    private BufferedImage getImage() {
+        if (!mImageLoaded) {
+            mImageLoaded = true;
+            try {
+                mImage = ImageIO.read(new File("/Users/benjamingolic/Documents/FH Hagenberg/2. & 4. Semester/OIS/OIS/MapClient/src/main/resources/" + mFilename));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return mImage;
     }
 
     /**
      * Gets the bounding box of the POI's geometry.
      *
-     * @return the bounding box of the geometry as a Rectangle object.
+     * @return the bounding box of the geometry as a Rectangle2D object.
      */
-    public Rectangle getBounds() {
-        return new Rectangle(mGeometry.x, mGeometry.y, 1, 1);
+    public Rectangle2D getBounds() {
+        return new Rectangle2D.Double(mX, mY, 1, 1);
     }
 }
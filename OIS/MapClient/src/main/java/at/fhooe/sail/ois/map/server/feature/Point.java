@@ -5,25 +5,46 @@ package at.fhooe.sail.ois.map.server.feature;
  * This class holds the geometry of the point and provides methods to access its bounds and draw it onto a graphics context.
  */
 public class Point extends GeoObjectPart{
-    private java.awt.Point mGeometry;
+    private final double mX;
+    private final double mY;
 
     /**
      * Constructs a Point object with the specified geometry.
      *
-     * @param _geometry the Point representing the geometry of the point.
+     * @param _x the x world coordinate of the point.
+     * @param _y the y world coordinate of the point.
      */
-    public Point(java.awt.Point _geometry){
-        this.mGeometry = _geometry;
+    public Point(double _x, double _y){
+        this.mX = _x;
+        this.mY = _y;
+    }
+
+    /**
+     * Gets the x world coordinate of the point.
+     *
+     * @return the x coordinate.
+     */
+    public double getX(){
+        return mX;
+    }
+
+    /**
+     * Gets the y world coordinate of the point.
+     *
+     * @return the y coordinate.
+     */
+    public double getY(){
+        return mY;
     }
 
     /**
      * Gets the bounding box of the point's geometry.
      *
-     * @return the bounding box of the geometry as a Rectangle object.
+     * @return the bounding box of the geometry as a Rectangle2D object.
      */
     @Override
-    public java.awt.Rectangle getBounds(){
-        return new java.awt.Rectangle(mGeometry);
+    public java.awt.geom.Rectangle2D getBounds(){
+        return new java.awt.geom.Rectangle2D.Double(mX, mY, 0, 0);
     }
 
     /**
@@ -35,8 +56,9 @@ public class Point extends GeoObjectPart{
      */
     @Override
     public void draw(java.awt.Graphics2D _g, at.fhooe.sail.ois.map.client.Matrix _m, at.fhooe.sail.ois.map.client.PresentationSchema _schema){
-        java.awt.Point transformed = _m.multiply(mGeometry);
+        int x = (int) Math.round(_m.transformX(mX, mY));
+        int y = (int) Math.round(_m.transformY(mX, mY));
         _g.setColor(_schema.getLineColor());
-        _g.fillOval(transformed.x, transformed.y, 5, 5);
+        _g.fillOval(x, y, 5, 5);
     }
 }
@@ -0,0 +1,297 @@
+package at.fhooe.sail.ois.map.server.replay;
+
+import at.fhooe.sail.ois.map.client.ADrawingContext;
+import at.fhooe.sail.ois.map.client.DummyDrawingContext;
+import at.fhooe.sail.ois.map.client.OSMDrawingContext;
+import at.fhooe.sail.ois.map.client.VerwaltungsgrenzenDrawingContext;
+import at.fhooe.sail.ois.map.server.GeoDataException;
+import at.fhooe.sail.ois.map.server.GeoLayer;
+import at.fhooe.sail.ois.map.server.GeoQuery;
+import at.fhooe.sail.ois.map.server.IGeoDataSource;
+import at.fhooe.sail.ois.map.server.QueryMonitor;
+import at.fhooe.sail.ois.map.server.WKBDecoder;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+import at.fhooe.sail.ois.map.server.snapshot.SnapshotServer;
+import at.fhooe.sail.ois.map.server.transform.CoordinateTransforms;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Represents a data source that replays result sets recorded by the {@link ReplayRecorder} instead of
+ * querying a database, so the load path can be benchmarked and tested without PostGIS.
+ *
+ * The recorded rows go through the same {@link WKBDecoder} as rows read from the database. The network is
+ * simulated by a fixed latency before the first row of every layer query and by pacing the rows to a
+ * bandwidth limit. A query is answered by the recording of exactly the same layer, bounding box and scale;
+ * if there is none, the recording of the full extent is filtered by the bounding box and by the types
+ * visible at the scale of the query, the way the database would. Cancellation and timeouts of a
+ * {@link QueryMonitor} are honoured while waiting.
+ */
+public class ReplayDataSource implements IGeoDataSource {
+
+    private static final long MAX_PARK_NANOS = 10_000_000L;
+
+    private final String mName;
+    private final File mFile;
+    private final long mLatencyNanos;
+    private final long mBytesPerSecond;
+
+    private MappedByteBuffer mBuffer;
+    private String mContext;
+    private int mSrid;
+    private Rectangle2D mExtent;
+    private List<GeoLayer> mLayers;
+    private List<Recording> mRecordings;
+
+    /**
+     * Constructs a ReplayDataSource that replays as fast as possible. The file is opened on first use.
+     *
+     * @param _name the name of the data source.
+     * @param _file the replay file to read.
+     */
+    public ReplayDataSource(String _name, File _file) {
+        this(_name, _file, 0, 0);
+    }
+
+    /**
+     * Constructs a ReplayDataSource simulating a network connection. The file is opened on first use.
+     *
+     * @param _name the name of the data source.
+     * @param _file the replay file to read.
+     * @param _latencyMillis the delay before the first row of every layer query.
+     * @param _bytesPerSecond the rate the rows are delivered at, or 0 for no limit.
+     */
+    public ReplayDataSource(String _name, File _file, long _latencyMillis, long _bytesPerSecond) {
+        mName = _name;
+        mFile = _file;
+        mLatencyNanos = _latencyMillis * 1_000_000L;
+        mBytesPerSecond = _bytesPerSecond;
+    }
+
+    /**
+     * Maps the replay file into memory and indexes its recordings, unless this already happened.
+     *
+     * @throws GeoDataException if the file cannot be read or is not a replay file.
+     */
+    private synchronized void open() throws GeoDataException {
+        if (mBuffer != null) {
+            return;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(mFile.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new GeoDataException("Replay " + mFile + " cannot be read: " + e.getMessage(), e);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != ReplayRecorder.MAGIC || buffer.getShort() != ReplayRecorder.FORMAT_VERSION) {
+            throw new GeoDataException("Not a replay file: " + mFile);
+        }
+        mContext = getString(buffer);
+        mSrid = buffer.getInt();
+        mExtent = getRect(buffer);
+
+        int numLayers = buffer.getInt();
+        mLayers = new ArrayList<>(numLayers);
+        for (int i = 0; i < numLayers; i++) {
+            String name = getString(buffer);
+            String table = getString(buffer);
+            int[] types = new int[buffer.getInt()];
+            for (int t = 0; t < types.length; t++) {
+                types[t] = buffer.getInt();
+            }
+            mLayers.add(new GeoLayer(name, table, types));
+        }
+
+        int numRecordings = buffer.getInt();
+        mRecordings = new ArrayList<>(numRecordings);
+        for (int i = 0; i < numRecordings; i++) {
+            String layer = getString(buffer);
+            Rectangle2D bbox = getRect(buffer);
+            int scale = buffer.getInt();
+            int rows = buffer.getInt();
+            long size = buffer.getLong();
+            mRecordings.add(new Recording(layer, bbox, scale, rows, buffer.position()));
+            buffer.position((int) (buffer.position() + size));
+        }
+        mBuffer = buffer;
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Gets the layers of the recorded source.
+     *
+     * @return the recorded layers, or an empty list if the file cannot be read.
+     */
+    @Override
+    public List<GeoLayer> getLayers() {
+        try {
+            open();
+        } catch (GeoDataException e) {
+            return new ArrayList<>();
+        }
+        return mLayers;
+    }
+
+    @Override
+    public ADrawingContext getDrawingContext() {
+        try {
+            open();
+        } catch (GeoDataException e) {
+            return new DummyDrawingContext();
+        }
+        switch (mContext) {
+            case SnapshotServer.CONTEXT_OSM:
+                return new OSMDrawingContext();
+            case SnapshotServer.CONTEXT_VERWALTUNGSGRENZEN:
+                return new VerwaltungsgrenzenDrawingContext();
+            default:
+                return new DummyDrawingContext();
+        }
+    }
+
+    @Override
+    public Rectangle2D getExtent() throws GeoDataException {
+        open();
+        return mExtent;
+    }
+
+    @Override
+    public void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink) throws GeoDataException {
+        query(_layer, _query, _sink, new QueryMonitor());
+    }
+
+    @Override
+    public void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink, QueryMonitor _monitor)
+            throws GeoDataException {
+        _monitor.checkCancelled();
+        open();
+        Recording recording = find(_layer.getName(), _query.getBBox(), _query.getScale());
+        int[] types = null;
+        boolean filter = false;
+        if (recording == null) {
+            recording = find(_layer.getName(), null, 0);
+            if (recording == null) {
+                throw new GeoDataException("No recording of layer " + _layer.getName() + " for " + _query + " in " + mFile);
+            }
+            types = _query.getScale() > 0 ? getDrawingContext().getVisibleTypes(_query.getScale()) : null;
+            filter = true;
+        }
+
+        long start = System.nanoTime();
+        long deadline = _monitor.getTimeoutSeconds() > 0 ? start + _monitor.getTimeoutSeconds() * 1_000_000_000L : 0;
+        long first = start + mLatencyNanos;
+        pause(first, deadline, _monitor);
+
+        WKBDecoder decoder = new WKBDecoder(CoordinateTransforms.forSrid(mSrid));
+        ByteBuffer buffer = mBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(recording.mOffset);
+        long transferred = 0;
+        for (int i = 0; i < recording.mRows; i++) {
+            _monitor.checkCancelled();
+            String id = getString(buffer);
+            int type = buffer.getInt();
+            Rectangle2D bounds = getRect(buffer);
+            byte[] wkb = new byte[buffer.getInt()];
+            if (filter && (!_query.intersects(bounds) || (types != null && Arrays.binarySearch(types, type) < 0))) {
+                buffer.position(buffer.position() + wkb.length);
+                continue;
+            }
+            buffer.get(wkb);
+            if (mBytesPerSecond > 0) {
+                transferred += ReplayRecorder.rowSize(id, wkb.length);
+                pause(first + transferred * 1_000_000_000L / mBytesPerSecond, deadline, _monitor);
+            }
+            GeoObject obj = decoder.decode(id, type, wkb);
+            if (obj != null) {
+                _sink.accept(obj);
+            }
+        }
+    }
+
+    /**
+     * Finds the recording of a layer query.
+     *
+     * @return the recording, or null if the query was not recorded.
+     */
+    private Recording find(String _layer, Rectangle2D _bbox, int _scale) {
+        for (Recording recording : mRecordings) {
+            if (recording.mLayer.equals(_layer) && recording.mScale == _scale
+                    && (recording.mBBox == null ? _bbox == null : _bbox != null
+                    && recording.mBBox.getMinX() == _bbox.getMinX() && recording.mBBox.getMinY() == _bbox.getMinY()
+                    && recording.mBBox.getMaxX() == _bbox.getMaxX() && recording.mBBox.getMaxY() == _bbox.getMaxY())) {
+                return recording;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Waits until the given time, checking the monitor for cancellation and timeout in between.
+     *
+     * @param _until the time to wait for in the scale of {@link System#nanoTime()}.
+     * @param _deadline the time the query times out at, or 0 for no timeout.
+     * @param _monitor the monitor of the query.
+     */
+    private void pause(long _until, long _deadline, QueryMonitor _monitor) throws GeoDataException {
+        long now = System.nanoTime();
+        while (now < _until) {
+            _monitor.checkCancelled();
+            if (_deadline != 0 && now >= _deadline) {
+                throw new GeoDataException("Replay of " + mFile + " timed out after " + _monitor.getTimeoutSeconds() + " s");
+            }
+            LockSupport.parkNanos(Math.min(_until - now, MAX_PARK_NANOS));
+            now = System.nanoTime();
+        }
+    }
+
+    private static String getString(ByteBuffer _buffer) {
+        byte[] bytes = new byte[_buffer.getShort() & 0xFFFF];
+        _buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Rectangle2D getRect(ByteBuffer _buffer) {
+        double minX = _buffer.getDouble();
+        double minY = _buffer.getDouble();
+        double maxX = _buffer.getDouble();
+        double maxY = _buffer.getDouble();
+        return Double.isNaN(minX) ? null : new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * The position of one recorded layer query within the file.
+     */
+    private static final class Recording {
+        private final String mLayer;
+        private final Rectangle2D mBBox;
+        private final int mScale;
+        private final int mRows;
+        private final int mOffset;
+
+        Recording(String _layer, Rectangle2D _bbox, int _scale, int _rows, int _offset) {
+            mLayer = _layer;
+            mBBox = _bbox;
+            mScale = _scale;
+            mRows = _rows;
+            mOffset = _offset;
+        }
+    }
+}
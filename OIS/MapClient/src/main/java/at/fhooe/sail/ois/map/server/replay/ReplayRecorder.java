@@ -0,0 +1,221 @@
+package at.fhooe.sail.ois.map.server.replay;
+
+import at.fhooe.sail.ois.map.server.APostGISDataSource;
+import at.fhooe.sail.ois.map.server.GeoDataException;
+import at.fhooe.sail.ois.map.server.GeoLayer;
+import at.fhooe.sail.ois.map.server.GeoQuery;
+import at.fhooe.sail.ois.map.server.WKBDecoder;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+import at.fhooe.sail.ois.map.server.transform.CoordinateTransforms;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the raw result sets of a PostGIS source into a file that the {@link ReplayDataSource} plays back
+ * without a database.
+ *
+ * Every recording holds the rows one layer query returned, exactly as the database sent them: id, type and
+ * the undecoded WKB geometry. The world bounds of every row are stored as well, so the replay can answer
+ * bounding box queries from a recording of the full extent. The layout is
+ * <pre>
+ *   int    magic ("OISR")
+ *   short  format version
+ *   short + bytes  name of the drawing context
+ *   int    spatial reference id of the recorded geometries
+ *   double[4]      full extent in world coordinates (minX, minY, maxX, maxY), NaN if unknown
+ *   int    number of layers
+ *   per layer:     short + bytes name, short + bytes table, int number of types (0 if not restricted), int[] types
+ *   int    number of recordings
+ *   per recording: short + bytes layer name, double[4] bounding box (NaN for the full extent), int scale,
+ *                  int number of rows, long size of the rows in bytes, rows
+ *   per row:       short + bytes id, int type, double[4] world bounds, int length + bytes WKB
+ * </pre>
+ * All values are little-endian.
+ */
+public final class ReplayRecorder {
+
+    /** Magic number at the start of every replay file ("OISR"). */
+    public static final int MAGIC = 0x4F495352;
+    /** Version of the replay layout. */
+    public static final short FORMAT_VERSION = 1;
+
+    private ReplayRecorder() {}
+
+    /**
+     * Runs the given queries on every layer of a source and writes the results into a replay file.
+     * Clipping is not recorded; the scale of every query is.
+     *
+     * @param _file the file to write.
+     * @param _context the name of the drawing context used to present the data, see {@link ReplayDataSource#getDrawingContext()}.
+     * @param _source the source to record.
+     * @param _queries the queries to record, typically including {@link GeoQuery#ALL}.
+     * @return the number of recorded rows.
+     * @throws IOException if the file cannot be written.
+     * @throws GeoDataException if a query fails.
+     */
+    public static int record(File _file, String _context, APostGISDataSource _source, List<GeoQuery> _queries)
+            throws IOException, GeoDataException {
+        WKBDecoder decoder = new WKBDecoder(_source.getCoordinateTransform());
+        List<Recording> recordings = new ArrayList<>();
+        int rows = 0;
+        for (GeoQuery query : _queries) {
+            for (GeoLayer layer : _source.getLayers()) {
+                Recording recording = new Recording(layer.getName(), query);
+                _source.queryRows(layer, query, (_id, _type, _wkb) -> {
+                    GeoObject obj = decoder.decode(_id, _type, _wkb);
+                    if (obj != null) {
+                        recording.add(new Row(_id, _type, obj.getBounds(), _wkb));
+                    }
+                });
+                recordings.add(recording);
+                rows += recording.mRows.size();
+            }
+        }
+
+        byte[] context = _context.getBytes(StandardCharsets.UTF_8);
+        int headerSize = 4 + 2 + 2 + context.length + 4 + 4 * Double.BYTES + 4 + 4;
+        for (GeoLayer layer : _source.getLayers()) {
+            headerSize += stringSize(layer.getName()) + stringSize(layer.getTable()) + 4 + typesOf(layer).length * 4;
+        }
+        try (FileChannel channel = FileChannel.open(_file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putShort(FORMAT_VERSION);
+            header.putShort((short) context.length);
+            header.put(context);
+            header.putInt(CoordinateTransforms.sridOf(_source.getCoordinateTransform()));
+            putRect(header, _source.getExtent());
+            header.putInt(_source.getLayers().size());
+            for (GeoLayer layer : _source.getLayers()) {
+                putString(header, layer.getName());
+                putString(header, layer.getTable());
+                int[] types = typesOf(layer);
+                header.putInt(types.length);
+                for (int type : types) {
+                    header.putInt(type);
+                }
+            }
+            header.putInt(recordings.size());
+            header.flip();
+            writeFully(channel, header);
+
+            for (Recording recording : recordings) {
+                ByteBuffer buffer = ByteBuffer.allocate(stringSize(recording.mLayer) + 4 * Double.BYTES + 4 + 4 + 8
+                        + (int) recording.mSize).order(ByteOrder.LITTLE_ENDIAN);
+                putString(buffer, recording.mLayer);
+                putRect(buffer, recording.mQuery.getBBox());
+                buffer.putInt(recording.mQuery.getScale());
+                buffer.putInt(recording.mRows.size());
+                buffer.putLong(recording.mSize);
+                for (Row row : recording.mRows) {
+                    putString(buffer, row.mId);
+                    buffer.putInt(row.mType);
+                    putRect(buffer, row.mBounds);
+                    buffer.putInt(row.mWkb.length);
+                    buffer.put(row.mWkb);
+                }
+                buffer.flip();
+                writeFully(channel, buffer);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Calculates the size of a row in the file, which is also the number of bytes the replay transfers for it.
+     *
+     * @param _id the id of the row.
+     * @param _wkbLength the length of the WKB geometry.
+     * @return the size in bytes.
+     */
+    static int rowSize(String _id, int _wkbLength) {
+        return stringSize(_id) + 4 + 4 * Double.BYTES + 4 + _wkbLength;
+    }
+
+    /**
+     * Gets the types of a layer to record.
+     *
+     * @param _layer the layer.
+     * @return the types, empty if the layer is not restricted to certain types.
+     */
+    private static int[] typesOf(GeoLayer _layer) {
+        int[] types = _layer.getTypes();
+        return types == null ? new int[0] : types;
+    }
+
+    private static int stringSize(String _s) {
+        return 2 + (_s == null ? 0 : _s.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static void putString(ByteBuffer _buffer, String _s) {
+        byte[] bytes = _s == null ? new byte[0] : _s.getBytes(StandardCharsets.UTF_8);
+        _buffer.putShort((short) bytes.length);
+        _buffer.put(bytes);
+    }
+
+    private static void putRect(ByteBuffer _buffer, Rectangle2D _r) {
+        if (_r == null) {
+            for (int i = 0; i < 4; i++) {
+                _buffer.putDouble(Double.NaN);
+            }
+        } else {
+            _buffer.putDouble(_r.getMinX());
+            _buffer.putDouble(_r.getMinY());
+            _buffer.putDouble(_r.getMaxX());
+            _buffer.putDouble(_r.getMaxY());
+        }
+    }
+
+    private static void writeFully(FileChannel _channel, ByteBuffer _buffer) throws IOException {
+        while (_buffer.hasRemaining()) {
+            _channel.write(_buffer);
+        }
+    }
+
+    /**
+     * The rows of one layer query.
+     */
+    private static final class Recording {
+        private final String mLayer;
+        private final GeoQuery mQuery;
+        private final List<Row> mRows = new ArrayList<>();
+        private long mSize = 0;
+
+        Recording(String _layer, GeoQuery _query) {
+            mLayer = _layer;
+            mQuery = _query;
+        }
+
+        void add(Row _row) {
+            mRows.add(_row);
+            mSize += rowSize(_row.mId, _row.mWkb.length);
+        }
+    }
+
+    /**
+     * One recorded result row.
+     */
+    private static final class Row {
+        private final String mId;
+        private final int mType;
+        private final Rectangle2D mBounds;
+        private final byte[] mWkb;
+
+        Row(String _id, int _type, Rectangle2D _bounds, byte[] _wkb) {
+            mId = _id;
+            mType = _type;
+            mBounds = _bounds;
+            mWkb = _wkb;
+        }
+    }
+}
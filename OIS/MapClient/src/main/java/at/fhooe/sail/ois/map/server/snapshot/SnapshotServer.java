@@ -0,0 +1,283 @@
+package at.fhooe.sail.ois.map.server.snapshot;
+
+import at.fhooe.sail.ois.map.client.ADrawingContext;
+import at.fhooe.sail.ois.map.client.DummyDrawingContext;
+import at.fhooe.sail.ois.map.client.OSMDrawingContext;
+import at.fhooe.sail.ois.map.client.VerwaltungsgrenzenDrawingContext;
+import at.fhooe.sail.ois.map.server.GeoDataException;
+import at.fhooe.sail.ois.map.server.GeoLayer;
+import at.fhooe.sail.ois.map.server.GeoQuery;
+import at.fhooe.sail.ois.map.server.IGeoDataSource;
+import at.fhooe.sail.ois.map.server.cache.FeatureCodec;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Represents a server that serves geographic data from a local snapshot file instead of a database.
+ * The file is written by the {@link SnapshotWriter} and memory-mapped on the first query; bounding box queries
+ * walk the packed R-tree stored in the file and decode only the matching features.
+ */
+public class SnapshotServer implements IGeoDataSource {
+
+    /** Name of the drawing context for OSM data. */
+    public static final String CONTEXT_OSM = "OSM";
+    /** Name of the drawing context for administrative boundaries. */
+    public static final String CONTEXT_VERWALTUNGSGRENZEN = "Verwaltungsgrenzen";
+
+    private final String mName;
+    private final File mFile;
+    private final List<GeoLayer> mLayers;
+
+    private MappedByteBuffer mBuffer;
+    private String mContext;
+    private int mNodeSize;
+    private int mNumItems;
+    private int mNumNodes;
+    private int[] mLevelBounds;
+    private int mBoxesOffset;
+    private int mChildrenOffset;
+    private int mOffsetsOffset;
+    private int mOrderOffset;
+    private int mDataOffset;
+
+    /**
+     * Constructs a SnapshotServer for a snapshot file. The file is opened on the first query.
+     *
+     * @param _name the name of the data source.
+     * @param _file the snapshot file to read.
+     */
+    public SnapshotServer(String _name, File _file) {
+        mName = _name;
+        mFile = _file;
+        mLayers = Collections.singletonList(new GeoLayer("features", _file.getName()));
+    }
+
+    /**
+     * Maps the snapshot file into memory and reads its header, unless this already happened.
+     *
+     * @throws GeoDataException if the file cannot be read or is not a snapshot file.
+     */
+    private synchronized void open() throws GeoDataException {
+        if (mBuffer != null) {
+            return;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(mFile.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new GeoDataException("Snapshot " + mFile + " cannot be read: " + e.getMessage(), e);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != SnapshotWriter.MAGIC || buffer.getShort() != SnapshotWriter.FORMAT_VERSION) {
+            throw new GeoDataException("Not a snapshot file: " + mFile);
+        }
+        mNodeSize = buffer.getShort();
+        if (mNodeSize != SnapshotWriter.NODE_SIZE) {
+            throw new GeoDataException("Unsupported node size " + mNodeSize + " in snapshot file: " + mFile);
+        }
+        mNumItems = buffer.getInt();
+        mNumNodes = buffer.getInt();
+        byte[] context = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(context);
+        mContext = new String(context, StandardCharsets.UTF_8);
+
+        mBoxesOffset = buffer.position();
+        mChildrenOffset = mBoxesOffset + mNumNodes * 4 * Double.BYTES;
+        mOffsetsOffset = mChildrenOffset + (mNumNodes - mNumItems) * Integer.BYTES;
+        mOrderOffset = mOffsetsOffset + (mNumItems + 1) * Long.BYTES;
+        mDataOffset = mOrderOffset + mNumItems * Integer.BYTES;
+        mLevelBounds = SnapshotWriter.levelBounds(mNumItems);
+        mBuffer = buffer;
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public List<GeoLayer> getLayers() {
+        return mLayers;
+    }
+
+    /**
+     * Streams all features whose bounds intersect the bounding box of the query, in drawing order.
+     *
+     * @param _layer the layer to query; a snapshot has a single layer.
+     * @param _query the query restricting the result.
+     * @param _sink receives every matching geo object.
+     * @throws GeoDataException if the snapshot file cannot be read.
+     */
+    @Override
+    public void query(GeoLayer _layer, GeoQuery _query, Consumer<? super GeoObject> _sink) throws GeoDataException {
+        open();
+        if (_query.getBBox() == null) {
+            int[] all = new int[mNumItems];
+            for (int i = 0; i < mNumItems; i++) {
+                all[i] = i;
+            }
+            decode(all, mNumItems, _sink);
+        } else {
+            search(_query.getBBox(), _sink);
+        }
+    }
+
+    /**
+     * Searches the packed R-tree for all features whose bounds intersect a bounding box.
+     *
+     * @param _bbox the bounding box in world coordinates.
+     * @param _sink receives every matching geo object.
+     */
+    private void search(Rectangle2D _bbox, Consumer<? super GeoObject> _sink) {
+        if (mNumItems == 0) {
+            return;
+        }
+        int[] hits = new int[64];
+        int numHits = 0;
+        double minX = _bbox.getMinX();
+        double minY = _bbox.getMinY();
+        double maxX = _bbox.getMaxX();
+        double maxY = _bbox.getMaxY();
+
+        int[] stack = new int[64];
+        int top = 0;
+        int root = (mNumNodes - 1) * 4;
+        if (intersects(root, minX, minY, maxX, maxY)) {
+            stack[top++] = root;
+        }
+        int leafEnd = mNumItems * 4;
+        while (top > 0) {
+            int node = stack[--top];
+            int first = mBuffer.getInt(mChildrenOffset + (node / 4 - mNumItems) * Integer.BYTES);
+            int end = Math.min(first + mNodeSize * 4, upperBound(first));
+            for (int pos = first; pos < end; pos += 4) {
+                if (!intersects(pos, minX, minY, maxX, maxY)) {
+                    continue;
+                }
+                if (pos < leafEnd) {
+                    if (numHits == hits.length) {
+                        hits = Arrays.copyOf(hits, numHits * 2);
+                    }
+                    hits[numHits++] = pos / 4;
+                } else {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = pos;
+                }
+            }
+        }
+        decode(hits, numHits, _sink);
+    }
+
+    /**
+     * Gets the bounding box of all features in the snapshot.
+     *
+     * @return the extent of the snapshot, or null if it is empty.
+     * @throws GeoDataException if the snapshot file cannot be read.
+     */
+    @Override
+    public Rectangle2D getExtent() throws GeoDataException {
+        open();
+        if (mNumItems == 0) {
+            return null;
+        }
+        int root = mBoxesOffset + (mNumNodes - 1) * 4 * Double.BYTES;
+        double minX = mBuffer.getDouble(root);
+        double minY = mBuffer.getDouble(root + Double.BYTES);
+        return new Rectangle2D.Double(minX, minY,
+                mBuffer.getDouble(root + 2 * Double.BYTES) - minX, mBuffer.getDouble(root + 3 * Double.BYTES) - minY);
+    }
+
+    /**
+     * Gets the number of features in the snapshot.
+     *
+     * @return the number of features.
+     * @throws GeoDataException if the snapshot file cannot be read.
+     */
+    public int getFeatureCount() throws GeoDataException {
+        open();
+        return mNumItems;
+    }
+
+    /**
+     * Retrieves the drawing context matching the data stored in the snapshot.
+     *
+     * @return the drawing context, or the dummy context if the snapshot cannot be read.
+     */
+    @Override
+    public ADrawingContext getDrawingContext() {
+        try {
+            open();
+        } catch (GeoDataException e) {
+            return new DummyDrawingContext();
+        }
+        switch (mContext) {
+            case CONTEXT_OSM:
+                return new OSMDrawingContext();
+            case CONTEXT_VERWALTUNGSGRENZEN:
+                return new VerwaltungsgrenzenDrawingContext();
+            default:
+                return new DummyDrawingContext();
+        }
+    }
+
+    /**
+     * Decodes the given features in their original drawing order. A private view of the mapped buffer is used,
+     * so queries may run concurrently.
+     *
+     * @param _items the file positions of the features to decode.
+     * @param _count the number of valid positions.
+     * @param _sink receives the decoded geo objects.
+     */
+    private void decode(int[] _items, int _count, Consumer<? super GeoObject> _sink) {
+        long[] keys = new long[_count];
+        for (int i = 0; i < _count; i++) {
+            keys[i] = ((long) mBuffer.getInt(mOrderOffset + _items[i] * Integer.BYTES) << 32) | _items[i];
+        }
+        Arrays.sort(keys);
+
+        ByteBuffer view = mBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < _count; i++) {
+            int item = (int) keys[i];
+            long offset = mBuffer.getLong(mOffsetsOffset + item * Long.BYTES);
+            view.position((int) (mDataOffset + offset));
+            _sink.accept(FeatureCodec.decodeFeature(view, scratch));
+        }
+    }
+
+    private boolean intersects(int _pos, double _minX, double _minY, double _maxX, double _maxY) {
+        int p = mBoxesOffset + _pos * Double.BYTES;
+        return mBuffer.getDouble(p) <= _maxX && mBuffer.getDouble(p + Double.BYTES) <= _maxY
+                && mBuffer.getDouble(p + 2 * Double.BYTES) >= _minX && mBuffer.getDouble(p + 3 * Double.BYTES) >= _minY;
+    }
+
+    /**
+     * Finds the end of the tree level containing the given position.
+     *
+     * @param _pos a position in the bounds array.
+     * @return the end position of its level.
+     */
+    private int upperBound(int _pos) {
+        for (int bound : mLevelBounds) {
+            if (bound > _pos) {
+                return bound;
+            }
+        }
+        return mLevelBounds[mLevelBounds.length - 1];
+    }
+}
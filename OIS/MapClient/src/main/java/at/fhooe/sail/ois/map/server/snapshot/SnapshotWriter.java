@@ -0,0 +1,272 @@
+package at.fhooe.sail.ois.map.server.snapshot;
+
+import at.fhooe.sail.ois.map.server.cache.FeatureCodec;
+import at.fhooe.sail.ois.map.server.feature.GeoObject;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes a snapshot of a whole data set into a single file that can be queried without a database.
+ *
+ * The features are sorted along a Hilbert curve over their bounding box centers, so features that are
+ * close on the map are close in the file. On top of them a packed static R-tree is stored: the leaf level
+ * holds the bounds of every feature in file order, each level above holds the bounds of
+ * {@link #NODE_SIZE} children. The layout is
+ * <pre>
+ *   int    magic ("OISS")
+ *   short  format version
+ *   short  node size
+ *   int    number of features
+ *   int    number of tree nodes (features included)
+ *   short + bytes  name of the drawing context
+ *   double[4 * nodes]      node bounds (minX, minY, maxX, maxY), leaves first, root last
+ *   int[nodes - features]  first child position of every inner node
+ *   long[features + 1]     offset of every feature relative to the start of the feature data
+ *   int[features]          original position of every feature, i.e. its drawing order
+ *   ...                    the features, encoded by the {@link FeatureCodec}
+ * </pre>
+ * All values are little-endian.
+ */
+public final class SnapshotWriter {
+
+    /** Magic number at the start of every snapshot file ("OISS"). */
+    public static final int MAGIC = 0x4F495353;
+    /** Version of the snapshot layout. */
+    public static final short FORMAT_VERSION = 3;
+    /** Number of children per node of the packed R-tree. */
+    public static final int NODE_SIZE = 16;
+
+    private static final int HILBERT_MAX = 0xFFFF;
+
+    private SnapshotWriter() {}
+
+    /**
+     * Writes the given geo objects into a snapshot file.
+     *
+     * @param _file the file to write.
+     * @param _context the name of the drawing context used to present the data, see {@link SnapshotServer#getDrawingContext()}.
+     * @param _objects the geo objects to store, in drawing order.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(File _file, String _context, List<? extends GeoObject> _objects) throws IOException {
+        int numItems = _objects.size();
+        int[] order = sortByHilbert(_objects);
+        int[] levelBounds = levelBounds(numItems);
+        int numNodes = levelBounds[levelBounds.length - 1] / 4;
+
+        double[] boxes = new double[numNodes * 4];
+        int[] children = new int[numNodes - numItems];
+        long[] offsets = new long[numItems + 1];
+        for (int i = 0; i < numItems; i++) {
+            Rectangle2D b = _objects.get(order[i]).getBounds();
+            boxes[4 * i] = b.getMinX();
+            boxes[4 * i + 1] = b.getMinY();
+            boxes[4 * i + 2] = b.getMaxX();
+            boxes[4 * i + 3] = b.getMaxY();
+            offsets[i + 1] = offsets[i] + FeatureCodec.featureSize(_objects.get(order[i]));
+        }
+        buildTree(boxes, children, levelBounds, numItems);
+
+        byte[] context = _context.getBytes(StandardCharsets.UTF_8);
+        int headerSize = 4 + 2 + 2 + 4 + 4 + 2 + context.length
+                + boxes.length * Double.BYTES + children.length * Integer.BYTES + offsets.length * Long.BYTES
+                + order.length * Integer.BYTES;
+
+        try (FileChannel channel = FileChannel.open(_file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putShort(FORMAT_VERSION);
+            header.putShort((short) NODE_SIZE);
+            header.putInt(numItems);
+            header.putInt(numNodes);
+            header.putShort((short) context.length);
+            header.put(context);
+            for (double d : boxes) {
+                header.putDouble(d);
+            }
+            for (int c : children) {
+                header.putInt(c);
+            }
+            for (long o : offsets) {
+                header.putLong(o);
+            }
+            for (int o : order) {
+                header.putInt(o);
+            }
+            header.flip();
+            writeFully(channel, header);
+
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < numItems; i++) {
+                GeoObject obj = _objects.get(order[i]);
+                int size = (int) (offsets[i + 1] - offsets[i]);
+                if (chunk.remaining() < size) {
+                    chunk.flip();
+                    writeFully(channel, chunk);
+                    chunk.clear();
+                    if (chunk.capacity() < size) {
+                        chunk = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+                    }
+                }
+                FeatureCodec.encodeFeature(chunk, obj);
+            }
+            chunk.flip();
+            writeFully(channel, chunk);
+        }
+    }
+
+    /**
+     * Calculates the end positions (in doubles) of every tree level in the bounds array.
+     *
+     * @param _numItems the number of features.
+     * @return the end position of each level, the last entry is the size of the bounds array.
+     */
+    static int[] levelBounds(int _numItems) {
+        int n = _numItems;
+        int numNodes = n;
+        int[] bounds = new int[32];
+        int levels = 0;
+        bounds[levels++] = n * 4;
+        do {
+            n = (n + NODE_SIZE - 1) / NODE_SIZE;
+            numNodes += n;
+            bounds[levels++] = numNodes * 4;
+        } while (n > 1);
+        return Arrays.copyOf(bounds, levels);
+    }
+
+    /**
+     * Fills in the bounds of all inner nodes from the leaf bounds.
+     *
+     * @param _boxes the bounds array, leaves already filled in.
+     * @param _children receives the position of the first child of every inner node.
+     * @param _levelBounds the level end positions.
+     * @param _numItems the number of features.
+     */
+    private static void buildTree(double[] _boxes, int[] _children, int[] _levelBounds, int _numItems) {
+        int pos = 0;
+        int out = _numItems * 4;
+        for (int level = 0; level < _levelBounds.length - 1; level++) {
+            int end = _levelBounds[level];
+            while (pos < end) {
+                int first = pos;
+                double minX = Double.POSITIVE_INFINITY;
+                double minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY;
+                double maxY = Double.NEGATIVE_INFINITY;
+                for (int j = 0; j < NODE_SIZE && pos < end; j++, pos += 4) {
+                    minX = Math.min(minX, _boxes[pos]);
+                    minY = Math.min(minY, _boxes[pos + 1]);
+                    maxX = Math.max(maxX, _boxes[pos + 2]);
+                    maxY = Math.max(maxY, _boxes[pos + 3]);
+                }
+                _children[out / 4 - _numItems] = first;
+                _boxes[out] = minX;
+                _boxes[out + 1] = minY;
+                _boxes[out + 2] = maxX;
+                _boxes[out + 3] = maxY;
+                out += 4;
+            }
+        }
+    }
+
+    /**
+     * Sorts the geo objects along a Hilbert curve over the centers of their bounding boxes.
+     *
+     * @param _objects the geo objects to sort.
+     * @return the indices of the geo objects in sorted order.
+     */
+    private static int[] sortByHilbert(List<? extends GeoObject> _objects) {
+        int n = _objects.size();
+        Rectangle2D extent = null;
+        for (GeoObject obj : _objects) {
+            if (extent == null) {
+                extent = (Rectangle2D) obj.getBounds().clone();
+            } else {
+                extent.add(obj.getBounds());
+            }
+        }
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            Rectangle2D b = _objects.get(i).getBounds();
+            int x = scale(b.getCenterX(), extent.getMinX(), extent.getWidth());
+            int y = scale(b.getCenterY(), extent.getMinY(), extent.getHeight());
+            keys[i] = (Integer.toUnsignedLong(hilbert(x, y)) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    private static int scale(double _value, double _min, double _size) {
+        return _size > 0 ? (int) Math.floor(HILBERT_MAX * (_value - _min) / _size) : 0;
+    }
+
+    /**
+     * Calculates the position of a point on a Hilbert curve over a 2^16 x 2^16 grid.
+     *
+     * @param _x the x grid coordinate (0..65535).
+     * @param _y the y grid coordinate (0..65535).
+     * @return the Hilbert index as an unsigned 32 bit value.
+     */
+    static int hilbert(int _x, int _y) {
+        int a = _x ^ _y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (_x | _y);
+        int d = _x & (_y ^ 0xFFFF);
+
+        int A = a | (b >> 1);
+        int B = (a >> 1) ^ a;
+        int C = ((c >> 1) ^ (b & (d >> 1))) ^ c;
+        int D = ((a & (c >> 1)) ^ (d >> 1)) ^ d;
+
+        a = A; b = B; c = C; d = D;
+        A = (a & (a >> 2)) ^ (b & (b >> 2));
+        B = (a & (b >> 2)) ^ (b & ((a ^ b) >> 2));
+        C ^= (a & (c >> 2)) ^ (b & (d >> 2));
+        D ^= (b & (c >> 2)) ^ ((a ^ b) & (d >> 2));
+
+        a = A; b = B; c = C; d = D;
+        A = (a & (a >> 4)) ^ (b & (b >> 4));
+        B = (a & (b >> 4)) ^ (b & ((a ^ b) >> 4));
+        C ^= (a & (c >> 4)) ^ (b & (d >> 4));
+        D ^= (b & (c >> 4)) ^ ((a ^ b) & (d >> 4));
+
+        a = A; b = B; c = C; d = D;
+        C ^= (a & (c >> 8)) ^ (b & (d >> 8));
+        D ^= (b & (c >> 8)) ^ ((a ^ b) & (d >> 8));
+
+        a = C ^ (C >> 1);
+        b = D ^ (D >> 1);
+
+        int i0 = _x ^ _y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+        return (interleave(i1) << 1) | interleave(i0);
+    }
+
+    private static int interleave(int _v) {
+        _v = (_v | (_v << 8)) & 0x00FF00FF;
+        _v = (_v | (_v << 4)) & 0x0F0F0F0F;
+        _v = (_v | (_v << 2)) & 0x33333333;
+        return (_v | (_v << 1)) & 0x55555555;
+    }
+
+    private static void writeFully(FileChannel _channel, ByteBuffer _buffer) throws IOException {
+        while (_buffer.hasRemaining()) {
+            _channel.write(_buffer);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package at.fhooe.sail.ois.map.server.transform;
+
+/**
+ * Resolves the coordinate transform needed to bring data stored in a given
+ * spatial reference system into the world coordinate system of the client (EPSG:3857).
+ */
+public final class CoordinateTransforms {
+
+    /** Spatial reference id of geographic coordinates (WGS 84). */
+    public static final int EPSG_4326 = 4326;
+    /** Spatial reference id of Web Mercator coordinates. */
+    public static final int EPSG_3857 = 3857;
+
+    private static final ICoordinateTransform sIdentity = new IdentityTransform();
+    private static final ICoordinateTransform sWebMercator = new WebMercatorTransform();
+
+    private CoordinateTransforms() {}
+
+    /**
+     * Returns the transform from the given spatial reference system into EPSG:3857.
+     * The returned transforms are stateless and can be shared between data sources and threads.
+     *
+     * @param _srid the spatial reference id the data source stores its geometries in.
+     * @return the matching coordinate transform.
+     * @throws IllegalArgumentException if no transform exists for the given id.
+     */
+    public static ICoordinateTransform forSrid(int _srid) {
+        switch (_srid) {
+            case EPSG_3857:
+                return sIdentity;
+            case EPSG_4326:
+                return sWebMercator;
+            default:
+                throw new IllegalArgumentException("Unsupported spatial reference id: " + _srid);
+        }
+    }
+
+    /**
+     * Returns the spatial reference system a transform returned by {@link #forSrid(int)} converts from.
+     *
+     * @param _transform the coordinate transform.
+     * @return the spatial reference id.
+     * @throws IllegalArgumentException if the transform was not created by this class.
+     */
+    public static int sridOf(ICoordinateTransform _transform) {
+        if (_transform == sIdentity) {
+            return EPSG_3857;
+        }
+        if (_transform == sWebMercator) {
+            return EPSG_4326;
+        }
+        throw new IllegalArgumentException("Unknown coordinate transform: " + _transform);
+    }
+}
@@ -0,0 +1,44 @@
+package at.fhooe.sail.ois.map.server.transform;
+
+/**
+ * An interface for transforming coordinates from the reference system of a data source
+ * into the world coordinate system used by the client.
+ * Implementations work in place on packed coordinate arrays, so a whole ring or line
+ * is transformed in one call without allocating a point object per vertex.
+ */
+public interface ICoordinateTransform {
+
+    /**
+     * Transforms interleaved x/y coordinates in place.
+     *
+     * @param _coords the interleaved coordinates (x0, y0, x1, y1, ...).
+     * @param _offset the index of the first x-coordinate to transform.
+     * @param _numPoints the number of points to transform.
+     */
+    void transform(double[] _coords, int _offset, int _numPoints);
+
+    /**
+     * Transforms interleaved x/y coordinates from a source array into a destination array.
+     * Source and destination may be the same array.
+     *
+     * @param _src the interleaved source coordinates.
+     * @param _srcOffset the index of the first source x-coordinate.
+     * @param _dst the array receiving the transformed coordinates.
+     * @param _dstOffset the index of the first destination x-coordinate.
+     * @param _numPoints the number of points to transform.
+     */
+    default void transform(double[] _src, int _srcOffset, double[] _dst, int _dstOffset, int _numPoints) {
+        if (_src != _dst || _srcOffset != _dstOffset) {
+            System.arraycopy(_src, _srcOffset, _dst, _dstOffset, 2 * _numPoints);
+        }
+        transform(_dst, _dstOffset, _numPoints);
+    }
+
+    /**
+     * Returns the transform that converts world coordinates back into the reference system of the data source.
+     * Used to express world coordinate bounding boxes in the coordinates of the stored data.
+     *
+     * @return the inverse transform.
+     */
+    ICoordinateTransform inverse();
+}
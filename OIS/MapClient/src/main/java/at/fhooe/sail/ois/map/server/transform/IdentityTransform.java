@@ -0,0 +1,29 @@
+package at.fhooe.sail.ois.map.server.transform;
+
+/**
+ * A coordinate transform that leaves the coordinates unchanged.
+ * Used for data sources that already store their geometries in the world coordinate system (EPSG:3857).
+ */
+public class IdentityTransform implements ICoordinateTransform {
+
+    /**
+     * Leaves the coordinates unchanged.
+     *
+     * @param _coords the interleaved coordinates (x0, y0, x1, y1, ...).
+     * @param _offset the index of the first x-coordinate to transform.
+     * @param _numPoints the number of points to transform.
+     */
+    @Override
+    public void transform(double[] _coords, int _offset, int _numPoints) {
+    }
+
+    /**
+     * Returns this transform, as the identity is its own inverse.
+     *
+     * @return this transform.
+     */
+    @Override
+    public ICoordinateTransform inverse() {
+        return this;
+    }
+}
@@ -0,0 +1,46 @@
+package at.fhooe.sail.ois.map.server.transform;
+
+/**
+ * A coordinate transform from Web Mercator coordinates (EPSG:3857, metres)
+ * back into geographic coordinates (EPSG:4326, longitude/latitude in degrees).
+ */
+public class InverseWebMercatorTransform implements ICoordinateTransform {
+
+    private final ICoordinateTransform mInverse;
+
+    /**
+     * Constructs the inverse of the given Web Mercator transform.
+     *
+     * @param _forward the forward transform returned by {@link #inverse()}.
+     */
+    InverseWebMercatorTransform(WebMercatorTransform _forward) {
+        mInverse = _forward;
+    }
+
+    /**
+     * Transforms Web Mercator coordinates in place into longitude/latitude pairs.
+     *
+     * @param _coords the interleaved coordinates (x0, y0, x1, y1, ...).
+     * @param _offset the index of the first x-coordinate to transform.
+     * @param _numPoints the number of points to transform.
+     */
+    @Override
+    public void transform(double[] _coords, int _offset, int _numPoints) {
+        int end = _offset + 2 * _numPoints;
+        for (int i = _offset; i < end; i += 2) {
+            // lat = 2 * atan(exp(y / R)) - pi/2 = atan(sinh(y / R))
+            _coords[i] = _coords[i] * WebMercatorTransform.DEGREES_PER_METRE;
+            _coords[i + 1] = Math.atan(Math.sinh(_coords[i + 1] / WebMercatorTransform.RADIUS)) / WebMercatorTransform.RADIANS_PER_DEGREE;
+        }
+    }
+
+    /**
+     * Returns the forward Web Mercator transform.
+     *
+     * @return the inverse transform.
+     */
+    @Override
+    public ICoordinateTransform inverse() {
+        return mInverse;
+    }
+}
@@ -0,0 +1,59 @@
+package at.fhooe.sail.ois.map.server.transform;
+
+/**
+ * A coordinate transform from geographic coordinates (EPSG:4326, longitude/latitude in degrees)
+ * into Web Mercator coordinates (EPSG:3857, metres).
+ * All factors are precomputed, so a point costs one multiplication for x and one sine
+ * and one logarithm for y.
+ */
+public class WebMercatorTransform implements ICoordinateTransform {
+
+    /** Half the circumference of the Web Mercator sphere in metres. */
+    public static final double ORIGIN_SHIFT = 20037508.34;
+    /** Radius of the Web Mercator sphere in metres. */
+    public static final double RADIUS = ORIGIN_SHIFT / Math.PI;
+    /** Latitude at which the Web Mercator projection becomes a square. */
+    public static final double MAX_LATITUDE = 85.0511287798066;
+
+    static final double METRES_PER_DEGREE = ORIGIN_SHIFT / 180.0;
+    static final double DEGREES_PER_METRE = 180.0 / ORIGIN_SHIFT;
+    static final double RADIANS_PER_DEGREE = Math.PI / 180.0;
+    static final double HALF_RADIUS = RADIUS / 2.0;
+    private static final double MAX_SIN = Math.sin(MAX_LATITUDE * RADIANS_PER_DEGREE);
+
+    private final ICoordinateTransform mInverse = new InverseWebMercatorTransform(this);
+
+    /**
+     * Transforms longitude/latitude pairs in place into Web Mercator coordinates.
+     * Latitudes are clamped to the valid range of the projection.
+     *
+     * @param _coords the interleaved coordinates (lon0, lat0, lon1, lat1, ...).
+     * @param _offset the index of the first longitude to transform.
+     * @param _numPoints the number of points to transform.
+     */
+    @Override
+    public void transform(double[] _coords, int _offset, int _numPoints) {
+        int end = _offset + 2 * _numPoints;
+        for (int i = _offset; i < end; i += 2) {
+            // y = R * ln(tan(pi/4 + lat/2)) = R/2 * ln((1 + sin(lat)) / (1 - sin(lat)))
+            double sin = Math.sin(_coords[i + 1] * RADIANS_PER_DEGREE);
+            if (sin > MAX_SIN) {
+                sin = MAX_SIN;
+            } else if (sin < -MAX_SIN) {
+                sin = -MAX_SIN;
+            }
+            _coords[i] = _coords[i] * METRES_PER_DEGREE;
+            _coords[i + 1] = HALF_RADIUS * Math.log((1.0 + sin) / (1.0 - sin));
+        }
+    }
+
+    /**
+     * Returns the transform from Web Mercator back to longitude/latitude.
+     *
+     * @return the inverse transform.
+     */
+    @Override
+    public ICoordinateTransform inverse() {
+        return mInverse;
+    }
+}